@@ -0,0 +1,139 @@
+package edu.missouristate.aianalyzer.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.sqlite.SQLiteConfig;
+
+import javax.sql.DataSource;
+
+/**
+ * Spring configuration class that replaces the default single-pool SQLite datasource.
+ * <p>
+ * The database runs in WAL mode so readers never wait on writers. All writes go through one
+ * dedicated writer connection (SQLite only allows one writer at a time anyway, so a bigger pool
+ * just produces {@code SQLITE_BUSY} retries), while a small pool of read-only connections serves
+ * UI and metrics queries. Read-only transactions ({@code @Transactional(readOnly = true)}, which
+ * includes every Spring Data {@code find...} method) are routed to the reader pool automatically.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${sqlite.synchronous:NORMAL}")
+    private String synchronous;
+
+    @Value("${sqlite.cache-size-kib:65536}")
+    private int cacheSizeKib;
+
+    @Value("${sqlite.mmap-size-bytes:268435456}")
+    private long mmapSizeBytes;
+
+    @Value("${sqlite.busy-timeout-ms:10000}")
+    private int busyTimeoutMs;
+
+    @Value("${sqlite.reader-pool-size:4}")
+    private int readerPoolSize;
+
+    /**
+     * The single writer connection. It is the only connection allowed to change the journal mode,
+     * so it is also the one that switches a fresh database file over to WAL.
+     * @return A one-connection pool used for every write transaction.
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writerDataSource() {
+        SQLiteConfig sqlite = baseConfig();
+        sqlite.setJournalMode(SQLiteConfig.JournalMode.WAL);
+
+        HikariConfig hikari = hikariConfig("sqlite-writer", sqlite);
+        hikari.setMaximumPoolSize(1);
+        hikari.setMinimumIdle(1);
+        return new HikariDataSource(hikari);
+    }
+
+    /**
+     * A pool of read-only connections for UI and metrics queries. It depends on the writer so the
+     * database file (and its WAL) exists before any read-only connection tries to open it.
+     * @return A pool of connections opened with SQLite's read-only flag.
+     */
+    @Bean(destroyMethod = "close")
+    @DependsOn("writerDataSource")
+    public HikariDataSource readerDataSource() {
+        SQLiteConfig sqlite = baseConfig();
+        sqlite.setReadOnly(true);
+        // Lets Spring set the read-only flag on these connections without the driver rejecting it.
+        sqlite.setExplicitReadOnly(true);
+
+        HikariConfig hikari = hikariConfig("sqlite-reader", sqlite);
+        hikari.setMaximumPoolSize(readerPoolSize);
+        hikari.setMinimumIdle(1);
+        hikari.setReadOnly(true);
+        return new HikariDataSource(hikari);
+    }
+
+    /**
+     * The datasource JPA and everything else sees. Connections are fetched lazily, so by the time a
+     * real connection is needed the transaction's read-only flag is known and it can be routed.
+     * @return A proxy that hands out writer connections, or reader connections for read-only work.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writerDataSource") DataSource writer,
+                                 @Qualifier("readerDataSource") DataSource reader) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(writer);
+        proxy.setReadOnlyDataSource(reader);
+        return proxy;
+    }
+
+    /**
+     * Default JdbcTemplate over the routing datasource (declared here because defining the reader
+     * template below would otherwise make Spring Boot skip its own).
+     */
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * JdbcTemplate bound straight to the reader pool, for dashboard-style queries that must never
+     * queue behind bulk writes.
+     */
+    @Bean
+    public JdbcTemplate readerJdbcTemplate(@Qualifier("readerDataSource") DataSource reader) {
+        return new JdbcTemplate(reader);
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Pragmas shared by writer and readers. WAL itself is a property of the database file, so it
+     * only needs to be switched on from the writer.
+     */
+    private SQLiteConfig baseConfig() {
+        SQLiteConfig sqlite = new SQLiteConfig();
+        sqlite.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(synchronous.toUpperCase()));
+        sqlite.setCacheSize(-cacheSizeKib); // negative means KiB rather than pages
+        sqlite.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(mmapSizeBytes));
+        sqlite.setBusyTimeout(busyTimeoutMs);
+        return sqlite;
+    }
+
+    private HikariConfig hikariConfig(String poolName, SQLiteConfig sqlite) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(poolName);
+        hikari.setJdbcUrl(url);
+        hikari.setDriverClassName("org.sqlite.JDBC");
+        hikari.setDataSourceProperties(sqlite.toProperties());
+        return hikari;
+    }
+}
@@ -0,0 +1,36 @@
+package edu.missouristate.aianalyzer.config;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Spring configuration class responsible for creating the Google Cloud Storage client as a managed bean.
+ * One client is shared by the whole application, so its HTTP connections and credentials are reused
+ * across uploads instead of being set up again for every file.
+ */
+@Lazy
+@Configuration
+public class StorageClient {
+    /**
+     * Creates the Cloud Storage client bean.
+     * When gcs.emulator-host is set, the client talks to that endpoint without credentials instead,
+     * e.g. a local fake-gcs-server for tests and offline runs.
+     * @param projectId The GCP project the bucket belongs to.
+     * @param emulatorHost The base URL of a Cloud Storage emulator, or empty for the real service.
+     * @return A configured instance of the {@link Storage} client.
+     */
+    @Bean
+    public Storage googleCloudStorage(@Value("${gcs.project-id}") String projectId,
+                                      @Value("${gcs.emulator-host:}") String emulatorHost) {
+        StorageOptions.Builder options = StorageOptions.newBuilder().setProjectId(projectId);
+        if (!emulatorHost.isBlank()) {
+            options.setHost(emulatorHost).setCredentials(NoCredentials.getInstance());
+        }
+        return options.build().getService();
+    }
+}
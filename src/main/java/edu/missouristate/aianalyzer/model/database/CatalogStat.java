@@ -0,0 +1,38 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/*
+    One pre-aggregated dashboard number: how many cataloged files (and how many bytes) fall into a
+    bucket of a dimension, e.g. dimension "kind", bucket "image". CatalogStatsService keeps these
+    up to date with deltas in the same transaction as the FileRecord changes, so the UI never has
+    to COUNT or SUM over the files table.
+ */
+@Data
+@Entity
+@Table(name = "catalog_stats")
+@IdClass(CatalogStat.Key.class)
+public class CatalogStat {
+
+    @Id
+    private String dimension;
+
+    @Id
+    private String bucket;
+
+    private long fileCount;
+    private long totalBytes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String dimension;
+        private String bucket;
+    }
+}
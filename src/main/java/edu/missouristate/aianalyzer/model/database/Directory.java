@@ -0,0 +1,24 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/*
+    One row per directory, stored as a name plus a link to its parent, so a path prefix shared by
+    thousands of files is stored once. Roots (e.g. "/" or "C:\") have no parent.
+ */
+@Data
+@Entity
+@Table(name = "directories") // unique (parentId, name) index is created by CatalogMigration
+public class Directory {
+
+    @Id
+    @WriterAssignedId
+    @Column(columnDefinition = "integer") // keep it the rowid, as in FileRecord
+    private Long id;
+
+    private Long parentId;
+
+    @Column(nullable = false)
+    private String name;
+}
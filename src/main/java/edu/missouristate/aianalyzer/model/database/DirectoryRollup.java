@@ -0,0 +1,27 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/*
+    Totals for everything cataloged below one directory (its whole subtree, not just its own files).
+    DirectoryRollupService adds each FileRecord change to the file's directory and every ancestor,
+    so a folder's size is one primary-key lookup instead of a walk over the disk.
+ */
+@Data
+@Entity
+@Table(name = "dir_rollups")
+public class DirectoryRollup {
+
+    @Id
+    @Column(columnDefinition = "integer") // same id as the Directory, and the rowid
+    private Long dirId;
+
+    private long totalBytes;
+    private long fileCount;
+    // Only ever raised by deltas; it can stay too high after the newest file is removed, until a rebuild.
+    private long newestMtimeUnix;
+}
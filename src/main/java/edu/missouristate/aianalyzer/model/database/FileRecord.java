@@ -5,17 +5,34 @@ import lombok.Data;
 
 @Data
 @Entity
-@Table(name = "files") // This ensures it maps to the 'files' table from DataTable.sql
+@Table(name = "files", // This ensures it maps to the 'files' table from DataTable.sql
+        indexes = {
+                @Index(name = "ix_files_filekey", columnList = "fileKey"),
+                @Index(name = "ix_files_size_mtime", columnList = "sizeBytes, mtimeUnix"),
+                @Index(name = "ix_files_hash", columnList = "contentHash, sizeBytes"),
+                // Covering indexes: per-kind and per-label totals are answered from the index alone.
+                @Index(name = "ix_files_kind_size", columnList = "kind, sizeBytes"),
+                @Index(name = "ix_files_label_size", columnList = "typeLabel, sizeBytes")
+        })
 public class FileRecord {
 
+    // Ids are handed out in memory by the writer rather than by IDENTITY, which would force
+    // Hibernate to insert rows one at a time instead of in JDBC batches.
+    // Declared as 'integer' so the column is still SQLite's rowid rather than a separate key index.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @WriterAssignedId
+    @Column(columnDefinition = "integer")
     private Long id;
 
-    @Column(unique = true, nullable = false)
-    private String path;
+    // The path is split into the containing directory (see Directory) and the file name,
+    // instead of repeating the full path and parent path on every row. DirectoryService maps between the two.
+    // (dirId, name) is unique; CatalogMigration creates that index, the SQLite dialect can't declare it.
+    @Column(nullable = false)
+    private Long dirId;
+
+    @Column(nullable = false)
+    private String name;
 
-    private String parentPath;
     private long sizeBytes;
     private long mtimeUnix;
     private Long ctimeUnix;
@@ -28,6 +45,10 @@ public class FileRecord {
     private Long typeLabelUpdatedUnix;
     private String ext;
 
+    // OS file identity (inode/device on Unix, null where the platform doesn't expose one).
+    // Used to pair up the DELETE/CREATE halves of a move or rename.
+    private String fileKey;
+
     // These columns were added via 'ALTER TABLE' in the old DatabaseManager
     private String aiSafety;
     @Column(length = 1024) // It's good practice to define a length for potentially long text fields
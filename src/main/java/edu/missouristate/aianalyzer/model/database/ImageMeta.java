@@ -11,7 +11,7 @@ import lombok.Data;
 public class ImageMeta {
 
     @Id
-    private String path;
+    private Long fileId; // same id as the FileRecord it describes
 
     private Integer width;
     private Integer height;
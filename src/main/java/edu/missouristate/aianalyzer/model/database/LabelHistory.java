@@ -5,14 +5,17 @@ import lombok.Data;
 
 @Data
 @Entity
-@Table(name = "label_history")
+@Table(name = "label_history",
+        indexes = {
+                @Index(name = "ix_labelhistory_file", columnList = "fileId, createdUnix")
+        })
 public class LabelHistory {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    private String path;
+    private Long fileId; // the FileRecord this label was applied to, so history survives moves
     private String label;
     private Double confidence;
     private String source;
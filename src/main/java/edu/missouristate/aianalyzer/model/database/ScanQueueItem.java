@@ -5,7 +5,11 @@ import lombok.Data;
 
 @Data
 @Entity
-@Table(name = "scan_queue")
+@Table(name = "scan_queue",
+        indexes = {
+                // Due-item polling reads this index in order, so it neither scans nor sorts the queue.
+                @Index(name = "ix_scanqueue_due", columnList = "notBeforeUnix")
+        })
 public class ScanQueueItem {
 
     @Id
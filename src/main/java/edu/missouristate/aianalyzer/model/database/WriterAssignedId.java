@@ -0,0 +1,17 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an id that is assigned by {@link WriterIdGenerator} instead of by SQLite's rowid.
+ */
+@IdGeneratorType(WriterIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface WriterAssignedId {
+}
@@ -0,0 +1,38 @@
+package edu.missouristate.aianalyzer.model.database;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/*
+    Hands out ids from an in-memory counter seeded from max(id) on first use.
+    This is only safe because every insert goes through the single PersistenceWriter thread of one
+    application instance; in exchange Hibernate knows each id before the INSERT and can batch them.
+    A table generator would also batch, but it allocates on a second connection, and the writer
+    pool only has one.
+ */
+public class WriterIdGenerator implements IdentifierGenerator {
+
+    private String table;
+    private long lastId = -1;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        this.table = params.getProperty(PersistentIdentifierGenerator.TABLE);
+    }
+
+    @Override
+    public synchronized Object generate(SharedSessionContractImplementor session, Object entity) {
+        if (lastId < 0) {
+            // Runs on the writer's own connection, inside the transaction doing the insert.
+            Number maxId = session.createNativeQuery("select coalesce(max(id), 0) from " + table, Long.class)
+                    .getSingleResult();
+            lastId = maxId.longValue();
+        }
+        return ++lastId;
+    }
+}
@@ -0,0 +1,11 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import edu.missouristate.aianalyzer.model.database.CatalogStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CatalogStatRepository extends JpaRepository<CatalogStat, CatalogStat.Key> {
+    // The table only has one row per bucket (a few hundred at most), so findAll() is the dashboard query.
+    // Writes go through CatalogStatsService as delta upserts.
+}
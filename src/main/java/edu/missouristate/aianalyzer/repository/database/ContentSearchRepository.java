@@ -0,0 +1,124 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/*
+    Access to content_fts, the SQLite FTS5 index over extracted document text and AI summaries.
+    FTS5 tables are virtual tables JPA can't map, so unlike the other repositories this one is plain JDBC.
+    The table is created by CatalogMigration; its rowid is the id of the FileRecord it describes.
+ */
+@Repository
+public class ContentSearchRepository {
+
+    // Kept as constants so QueryPlanVerifier can check the exact statements.
+    // Ranking and snippets are computed inside the FTS5 query, so only the rows that are returned get a snippet.
+    public static final String RANKED_QUERY = """
+            select f.id, f.dir_id, f.name, c.rank, c.snippet
+            from (select rowid, rank, snippet(content_fts, -1, '[', ']', '...', 16) as snippet
+                  from content_fts where content_fts match ? order by rank limit ?) c
+            join files f on f.id = c.rowid
+            where f.kind <> 'missing'
+            order by c.rank
+            """;
+
+    public static final String NEWEST_QUERY = """
+            select f.id, f.dir_id, f.name, 0.0 as rank, c.snippet
+            from (select rowid, snippet(content_fts, -1, '[', ']', '...', 16) as snippet
+                  from content_fts where content_fts match ? order by rowid desc limit ?) c
+            join files f on f.id = c.rowid
+            where f.kind <> 'missing'
+            order by c.rowid desc
+            """;
+
+    /**
+     * One matching file.
+     *
+     * @param fileId  The FileRecord id.
+     * @param dirId   The file's directory id.
+     * @param name    The file's name.
+     * @param rank    BM25 score; lower is a better match (0 for unranked results).
+     * @param snippet The best matching fragment, with the matched terms in [brackets].
+     */
+    public record SearchHit(long fileId, long dirId, String name, double rank, String snippet) {
+    }
+
+    private static final RowMapper<SearchHit> HIT_MAPPER = (rs, i) -> new SearchHit(
+            rs.getLong("id"), rs.getLong("dir_id"), rs.getString("name"), rs.getDouble("rank"), rs.getString("snippet"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate readerJdbcTemplate;
+
+    public ContentSearchRepository(JdbcTemplate jdbcTemplate,
+                                   @Qualifier("readerJdbcTemplate") JdbcTemplate readerJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readerJdbcTemplate = readerJdbcTemplate;
+    }
+
+    /**
+     * Runs a full-text query on the reader pool, best matches first. BM25 has to score every match
+     * before it can return the best ones, so callers should check countMatches() first.
+     *
+     * @param matchExpression An FTS5 MATCH expression.
+     * @param limit           The maximum number of hits (fewer if some matches are missing files).
+     * @return The hits, ordered by rank.
+     */
+    public List<SearchHit> searchRanked(String matchExpression, int limit) {
+        return readerJdbcTemplate.query(RANKED_QUERY, HIT_MAPPER, matchExpression, limit);
+    }
+
+    /**
+     * Runs a full-text query on the reader pool, most recently indexed files first. Stops after
+     * 'limit' matches, so it stays fast however many documents match.
+     *
+     * @param matchExpression An FTS5 MATCH expression.
+     * @param limit           The maximum number of hits (fewer if some matches are missing files).
+     * @return The hits, with a rank of 0.
+     */
+    public List<SearchHit> searchNewest(String matchExpression, int limit) {
+        return readerJdbcTemplate.query(NEWEST_QUERY, HIT_MAPPER, matchExpression, limit);
+    }
+
+    /**
+     * Counts matches, but stops counting at 'cap'.
+     *
+     * @param matchExpression An FTS5 MATCH expression.
+     * @param cap             The most matches to count.
+     * @return The number of matches, at most cap.
+     */
+    public int countMatches(String matchExpression, int cap) {
+        Integer count = readerJdbcTemplate.queryForObject(
+                "select count(*) from (select rowid from content_fts where content_fts match ? limit ?)",
+                Integer.class, matchExpression, cap);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Sets the extracted text of a file. Must run on the PersistenceWriter.
+     */
+    public void saveText(long fileId, String text) {
+        if (jdbcTemplate.update("update content_fts set body = ? where rowid = ?", text, fileId) == 0) {
+            jdbcTemplate.update("insert into content_fts (rowid, body) values (?, ?)", fileId, text);
+        }
+    }
+
+    /**
+     * Sets the AI summary of a file. Must run on the PersistenceWriter.
+     */
+    public void saveSummary(long fileId, String summary) {
+        if (jdbcTemplate.update("update content_fts set summary = ? where rowid = ?", summary, fileId) == 0) {
+            jdbcTemplate.update("insert into content_fts (rowid, summary) values (?, ?)", fileId, summary);
+        }
+    }
+
+    /**
+     * Removes a file from the index. Must run on the PersistenceWriter.
+     */
+    public void delete(long fileId) {
+        jdbcTemplate.update("delete from content_fts where rowid = ?", fileId);
+    }
+}
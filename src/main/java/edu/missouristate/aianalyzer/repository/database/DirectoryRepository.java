@@ -0,0 +1,36 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import edu.missouristate.aianalyzer.model.database.Directory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DirectoryRepository extends JpaRepository<Directory, Long> {
+
+    // A null parentId matches the roots.
+    Optional<Directory> findByParentIdAndName(Long parentId, String name);
+
+    // Kept as a constant so QueryPlanVerifier can check the exact statement.
+    String PATH_NAMES_QUERY = """
+            with recursive chain(id, parent_id, name, depth) as (
+                select id, parent_id, name, 0 from directories where id = :id
+                union all
+                select d.id, d.parent_id, d.name, c.depth + 1 from directories d join chain c on d.id = c.parent_id
+            )
+            select name from chain order by depth desc
+            """;
+
+    /**
+     * Walks from a directory up to its root in one query.
+     *
+     * @param id The directory to resolve.
+     * @return The names along the way, root first.
+     */
+    @Query(value = PATH_NAMES_QUERY, nativeQuery = true)
+    List<String> findPathNames(@Param("id") long id);
+}
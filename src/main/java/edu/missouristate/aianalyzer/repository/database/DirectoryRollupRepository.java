@@ -0,0 +1,11 @@
+package edu.missouristate.aianalyzer.repository.database;
+
+import edu.missouristate.aianalyzer.model.database.DirectoryRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DirectoryRollupRepository extends JpaRepository<DirectoryRollup, Long> {
+    // The primary key is the id of the Directory the totals belong to.
+    // Writes go through DirectoryRollupService as delta upserts.
+}
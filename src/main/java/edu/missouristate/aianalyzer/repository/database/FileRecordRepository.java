@@ -2,13 +2,48 @@ package edu.missouristate.aianalyzer.repository.database;
 
 import edu.missouristate.aianalyzer.model.database.FileRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
     // Spring Data JPA gives us findAll(), save(), etc. for free.
     // We can add custom methods like this one.
-    Optional<FileRecord> findByPath(String path);
+    // Files are keyed by directory + name; DirectoryService turns a full path into these.
+    Optional<FileRecord> findByDirIdAndName(Long dirId, String name);
+
+    // Loads the records of one directory's files in a queue batch with a single query.
+    List<FileRecord> findAllByDirIdAndNameIn(Long dirId, Collection<String> names);
+
+    // Kept as a constant so QueryPlanVerifier can check the exact statement.
+    String SUBTREE_QUERY = """
+            with recursive subtree(id) as (
+                select :dirId
+                union all
+                select d.id from directories d join subtree s on d.parent_id = s.id
+            )
+            select f.* from files f where f.dir_id in (select id from subtree)
+            """;
+
+    /**
+     * Every file under a directory, at any depth, using the directory tree instead of a
+     * prefix match on path strings.
+     *
+     * @param dirId The id of the directory at the top of the subtree.
+     * @return The records of all files below it.
+     */
+    @Query(value = SUBTREE_QUERY, nativeQuery = true)
+    List<FileRecord> findAllInSubtree(@Param("dirId") long dirId);
+
+    // Candidate lookups used by MoveDetectionService to find where a newly-seen file came from.
+    List<FileRecord> findAllByFileKey(String fileKey);
+
+    List<FileRecord> findAllBySizeBytesAndMtimeUnix(long sizeBytes, long mtimeUnix);
+
+    List<FileRecord> findAllBySizeBytesAndContentHash(long sizeBytes, String contentHash);
 }
@@ -5,6 +5,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ImageMetaRepository extends JpaRepository<ImageMeta, String> {
-    // The primary key is a String (the path), so we use String here.
+public interface ImageMetaRepository extends JpaRepository<ImageMeta, Long> {
+    // The primary key is the id of the FileRecord the metadata belongs to.
 }
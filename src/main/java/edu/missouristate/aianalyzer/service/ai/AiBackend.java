@@ -0,0 +1,62 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A model service AiQueryService can send its requests to, chosen with ai.backend:
+ * "gemini" (GeminiAiBackend, the default) or "http" (HttpAiBackend, e.g. against AiStandInServer
+ * for load tests without credentials).
+ * <p>
+ * AiQueryService owns the prompts, the request limit and retries; a backend only carries out one
+ * request. Summaries use generate, batched classification generateKeyed, and image categories
+ * generateFromFile or, for images small enough to send along, generateFromBytes; summaries someone is watching come in with generateStream. A request the service turns away for load must fail with AiThrottledException,
+ * anything else with the error as it is.
+ */
+public interface AiBackend {
+
+    /**
+     * @param prompt The whole prompt.
+     * @return A future completed with the model's answer.
+     */
+    CompletableFuture<String> generate(String prompt);
+
+    /**
+     * Like generate, but hands the answer over piece by piece as the model writes it, so a reader sees
+     * the start of it long before the whole is done. A backend that can't stream gives it in one piece.
+     *
+     * @param prompt  The whole prompt.
+     * @param onChunk Called with each new piece of the answer, in order, on a backend thread.
+     * @return A future completed with the whole answer once the last piece has been handed over.
+     */
+    default CompletableFuture<String> generateStream(String prompt, Consumer<String> onChunk) {
+        return generate(prompt).thenApply(text -> {
+            onChunk.accept(text);
+            return text;
+        });
+    }
+
+    /**
+     * @param prompt The whole prompt.
+     * @param keys   The keys the answer must have.
+     * @return A future completed with the model's answer: a JSON object with a string for each key.
+     */
+    CompletableFuture<String> generateKeyed(String prompt, List<String> keys);
+
+    /**
+     * @param prompt   The instructions.
+     * @param fileUri  Where the service finds the file (e.g. a gs:// URI).
+     * @param mimeType The file's MIME type.
+     * @return A future completed with the model's answer.
+     */
+    CompletableFuture<String> generateFromFile(String prompt, String fileUri, String mimeType);
+
+    /**
+     * @param prompt   The instructions.
+     * @param data     The file itself, sent inline with the request.
+     * @param mimeType The file's MIME type.
+     * @return A future completed with the model's answer.
+     */
+    CompletableFuture<String> generateFromBytes(String prompt, byte[] data, String mimeType);
+}
@@ -0,0 +1,17 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+/**
+ * Thrown (as the failure of a backend's future) when the model service couldn't find the Cloud Storage
+ * object a request pointed it at, e.g. because a lifecycle rule deleted it. The object has to be uploaded
+ * again; retrying the same request won't help.
+ */
+public class AiFileNotFoundException extends RuntimeException {
+
+    /**
+     * @param message The service's error.
+     * @param cause   The underlying error, or null.
+     */
+    public AiFileNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,26 +1,67 @@
 package edu.missouristate.aianalyzer.service.ai;
 
-import com.google.genai.Client;
-import com.google.genai.types.Content;
-import com.google.genai.types.GenerateContentResponse;
-import com.google.genai.types.Part;
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-
-import static edu.missouristate.aianalyzer.service.ai.UploadFileService.uploadObject;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * Service responsible for making API calls to the Google Gemini AI model.
+ * Service responsible for making API calls to the AI model (Gemini, or another AiBackend).
  * It provides various methods to get different types of analysis on file content.
+ * Every query has a non-blocking variant returning a CompletableFuture; all of them share one adaptive
+ * cap on requests in flight (see AiRequestLimiter), and requests over the cap queue without holding a thread.
+ * Requests the API rejects for load (429 / 503) are retried after the delay it asks for.
  */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class AiQueryService {
-    private final Client client;
+
+    /**
+     * Which queued requests go first when the limit is reached. Lower priorities still get a share.
+     */
+    public enum Priority {
+        /** Someone is waiting on the answer, e.g. a file opened in the UI. */
+        HIGH,
+        NORMAL,
+        /** Background work such as retries of failed files. */
+        LOW
+    }
+
+    private static final String SUMMARY_PROMPT = "Provide a single, up to 40-word sentence summarizing the main point or summary of the following " +
+            "file content. ";
+    private static final String BATCH_SUMMARY_PROMPT = "For each file below, provide a single, up to 40-word sentence summarizing " +
+            "the main point or summary of that file's content. Answer with a JSON object that maps each file's id to its sentence.";
+    private static final String PART_SUMMARY_PROMPT = "The following is one part of a longer document. Summarize what this part " +
+            "says in up to 80 words, keeping names, figures and anything confidential or sensitive. ";
+    private static final String COMBINE_PROMPT = "The following are summaries of consecutive parts of one document, in order. " +
+            "Provide a single, up to 40-word sentence summarizing the main point or summary of the whole document.";
+    private static final String IMAGE_CATEGORY_PROMPT = "Provide the word single, two, or group based on the amount of human faces in this photo" +
+            "If there are not human faces respond with miscellaneous. ";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final AiBackend backend;
+    private final AiRequestLimiter limiter;
+
+    public AiQueryService(AiBackend backend,
+                          @Value("${ai.initial-in-flight:4}") int initialInFlight,
+                          @Value("${ai.max-in-flight:64}") int maxInFlight,
+                          @Value("${ai.max-attempts:4}") int maxAttempts) {
+        this.backend = backend;
+        this.limiter = new AiRequestLimiter(initialInFlight, maxInFlight, maxAttempts);
+    }
 
     /**
      * Sends the entire file content to the AI for an "ACTIVE" analysis.
@@ -30,48 +71,161 @@ public class AiQueryService {
      * @return The AI's classification and summary, separated by a '|' to split data.
      */
     public String activeResponseFromFile(String file) {
-        CompletableFuture<GenerateContentResponse> responseFuture =
-                client.async.models.generateContent(
-                        "gemini-2.0-flash",
-                        "Provide a single, up to 40-word sentence summarizing the main point or summary of the following " +
-                                "file content. " +
-                                file,
-                        null);
-        return responseFuture
-                .thenApply(GenerateContentResponse::text)
-                .join();
+        return activeResponseFromFileAsync(file).join();
+    }
+
+    /**
+     * Non-blocking version of activeResponseFromFile.
+     *
+     * @param file The complete content of the file as a string.
+     * @return A future completed with the AI's response.
+     */
+    public CompletableFuture<String> activeResponseFromFileAsync(String file) {
+        return activeResponseFromFileAsync(file, Priority.NORMAL);
+    }
+
+    /**
+     * @param file     The complete content of the file as a string.
+     * @param priority Where the request queues while the limit is reached.
+     * @return A future completed with the AI's response.
+     */
+    public CompletableFuture<String> activeResponseFromFileAsync(String file, Priority priority) {
+        return generate(priority, () -> backend.generate(SUMMARY_PROMPT + file));
+    }
+
+    /**
+     * Streaming version of activeResponseFromFileAsync, for a summary someone is watching being written:
+     * what they wait for is the first piece, not the whole answer.
+     *
+     * @param file     The complete content of the file as a string.
+     * @param priority Where the request queues while the limit is reached.
+     * @param onChunk  Called with each new piece of the answer, in order, on a backend thread.
+     * @return A future completed with the whole answer.
+     */
+    public CompletableFuture<String> streamResponseFromFileAsync(String file, Priority priority, Consumer<String> onChunk) {
+        return generate(priority, () -> {
+            AtomicBoolean started = new AtomicBoolean();
+            return backend.generateStream(SUMMARY_PROMPT + file, chunk -> {
+                started.set(true);
+                onChunk.accept(chunk);
+            }).exceptionallyCompose(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                // A retry would repeat the pieces already handed over, so only a stream that never started is retried.
+                return CompletableFuture.failedFuture(started.get() && cause instanceof AiThrottledException
+                        ? new IOException("AI stream interrupted: " + cause.getMessage(), cause)
+                        : cause);
+            });
+        });
     }
 
     public String activeResponseFromLargeFile(String file, String fileInterpretation) {
-        Content content = Content.fromParts(
-                Part.fromText("Provide a single, up to 40-word sentence summarizing the main point or summary of the following " +
-                        "file content. "),
-                Part.fromUri(file, fileInterpretation));
+        return activeResponseFromLargeFileAsync(file, fileInterpretation).join();
+    }
+
+    /**
+     * Non-blocking version of activeResponseFromLargeFile.
+     *
+     * @param file               The gs:// URI of the uploaded file.
+     * @param fileInterpretation The file's MIME type.
+     * @return A future completed with the AI's response.
+     */
+    public CompletableFuture<String> activeResponseFromLargeFileAsync(String file, String fileInterpretation) {
+        return activeResponseFromLargeFileAsync(file, fileInterpretation, Priority.NORMAL);
+    }
 
-        CompletableFuture<GenerateContentResponse> responseFuture =
-                client.async.models.generateContent(
-                        "gemini-2.0-flash",
-                        content,
-                        null);
-        return responseFuture
-                .thenApply(GenerateContentResponse::text)
-                .join();
+    /**
+     * @param file               The gs:// URI of the uploaded file.
+     * @param fileInterpretation The file's MIME type.
+     * @param priority           Where the request queues while the limit is reached.
+     * @return A future completed with the AI's response.
+     */
+    public CompletableFuture<String> activeResponseFromLargeFileAsync(String file, String fileInterpretation, Priority priority) {
+        return generate(priority, () -> backend.generateFromFile(SUMMARY_PROMPT, file, fileInterpretation));
+    }
+
+    /**
+     * Summarizes several small files in one request, which costs far less per file than a request
+     * each. The answer is a JSON object keyed by the given ids, enforced through a response schema.
+     *
+     * @param files    The content of each file, by an id that's unique within the batch.
+     * @param priority Where the request queues while the limit is reached.
+     * @return A future completed with each file's summary by id; ids the model skipped are missing, and an
+     *         answer that isn't a JSON object of strings counts as skipping them all. It completes
+     *         exceptionally only if the request itself failed.
+     */
+    public CompletableFuture<Map<String, String>> activeResponsesFromFilesAsync(Map<String, String> files, Priority priority) {
+        StringBuilder prompt = new StringBuilder(BATCH_SUMMARY_PROMPT);
+        files.forEach((id, content) ->
+                prompt.append("\n\n<file id=\"").append(id).append("\">\n").append(content).append("\n</file>"));
+        List<String> ids = new ArrayList<>(files.keySet());
+        return generate(priority, () -> backend.generateKeyed(prompt.toString(), ids))
+                .thenApply(AiQueryService::parseSummaries);
     }
 
+    /**
+     * Map step of summarizing a document too large for one request (see MapReduceSummarizer).
+     *
+     * @param part     One consecutive part of the document's text.
+     * @param priority Where the request queues while the limit is reached.
+     * @return A future completed with a short summary of that part.
+     */
+    public CompletableFuture<String> summarizePartAsync(String part, Priority priority) {
+        return generate(priority, () -> backend.generate(PART_SUMMARY_PROMPT + part));
+    }
+
+    /**
+     * Reduce step: turns the summaries of a document's parts into the same kind of answer
+     * activeResponseFromFile gives for a whole file.
+     *
+     * @param partSummaries The parts' summaries, in document order.
+     * @param priority      Where the request queues while the limit is reached.
+     * @return A future completed with the AI's response.
+     */
+    public CompletableFuture<String> combineSummariesAsync(List<String> partSummaries, Priority priority) {
+        StringBuilder prompt = new StringBuilder(COMBINE_PROMPT);
+        for (int i = 0; i < partSummaries.size(); i++) {
+            prompt.append("\n\nPart ").append(i + 1).append(": ").append(partSummaries.get(i).strip());
+        }
+        return generate(priority, () -> backend.generate(prompt.toString()));
+    }
 
     public String respondWithImageCategory(String image, String fileInterpretation) throws IOException {
-        Content content = Content.fromParts(
-                Part.fromText("Provide the word single, two, or group based on the amount of human faces in this photo" +
-                        "If there are not human faces respond with miscellaneous. "),
-                Part.fromUri(image, fileInterpretation));
-
-        CompletableFuture<GenerateContentResponse> responseFuture =
-                client.async.models.generateContent(
-                        "gemini-2.0-flash",
-                        content,
-                        null);
-        return responseFuture
-                .thenApply(GenerateContentResponse::text)
-                .join();
+        return respondWithImageCategoryAsync(image, fileInterpretation).join();
+    }
+
+    /**
+     * Non-blocking version of respondWithImageCategory.
+     *
+     * @param image              The gs:// URI of the uploaded image.
+     * @param fileInterpretation The image's MIME type.
+     * @return A future completed with the AI's category.
+     */
+    public CompletableFuture<String> respondWithImageCategoryAsync(String image, String fileInterpretation) {
+        return generate(Priority.NORMAL, () -> backend.generateFromFile(IMAGE_CATEGORY_PROMPT, image, fileInterpretation));
+    }
+
+    /**
+     * @param image    The image itself, sent inline (see ImageNormalizer), so nothing needs uploading.
+     * @param mimeType The image's MIME type.
+     * @return A future completed with the AI's category.
+     */
+    public CompletableFuture<String> respondWithImageCategoryAsync(byte[] image, String mimeType) {
+        return generate(Priority.NORMAL, () -> backend.generateFromBytes(IMAGE_CATEGORY_PROMPT, image, mimeType));
+    }
+
+    // --- Helper Methods ---
+
+    private CompletableFuture<String> generate(Priority priority, Supplier<CompletableFuture<String>> request) {
+        return limiter.submit(priority, request);
+    }
+
+    private static Map<String, String> parseSummaries(String json) {
+        try {
+            return JSON.readValue(json, new TypeReference<Map<String, String>>() {
+            });
+        } catch (JsonProcessingException e) {
+            log.debug("Unreadable batch answer: {}", e.getOriginalMessage());
+            return Map.of();
+        }
     }
 }
@@ -0,0 +1,299 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/*
+    Decides how many model requests may be in flight, and in which order waiting requests go out.
+    Requests over the limit wait in a queue, not on a thread: a request that completes hands its slot
+    to the next one, so any number of callers can have calls pending without blocking.
+
+    The limit adapts (AIMD), between 1 and the configured maximum:
+    - every success adds 1/limit, so the limit grows by about one per round of requests;
+    - recent latency well above the long-run average (LATENCY_TOLERANCE) means requests are queueing
+      at the server, and shrinks the limit by 10%. Both are moving averages, since a single slow
+      answer may just be a long prompt;
+    - a throttled request (429 / 503) halves it, at most once per round trip, since a burst of
+      rejections all report the same overload.
+    A throttled request is retried after the server's retry-after (or exponential backoff with
+    jitter), and nothing new is sent before then.
+
+    Waiting requests are served by weighted round robin over their priorities (4 HIGH : 2 NORMAL : 1 LOW),
+    so interactive requests overtake a background scan without starving it.
+ */
+@Slf4j
+class AiRequestLimiter {
+
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SHORT_WINDOW_WEIGHT = 0.2;
+    private static final double LONG_WINDOW_WEIGHT = 0.02;
+    private static final int WARMUP_SAMPLES = 20;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final Map<AiQueryService.Priority, Integer> WEIGHTS = Map.of(
+            AiQueryService.Priority.HIGH, 4,
+            AiQueryService.Priority.NORMAL, 2,
+            AiQueryService.Priority.LOW, 1);
+
+    private final int maxLimit;
+    private final int maxAttempts;
+    private final LongSupplier clock;
+    private final Executor starter;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread t = new Thread(runnable, "AI-Limiter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Everything below is guarded by 'this'.
+    private final Map<AiQueryService.Priority, Deque<Pending<?>>> queues = new EnumMap<>(AiQueryService.Priority.class);
+    private final Map<AiQueryService.Priority, Integer> credits = new EnumMap<>(AiQueryService.Priority.class);
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double recentLatencyNanos;
+    private double baselineLatencyNanos;
+    private int latencySamples;
+    private long lastDecreaseNanos;
+    private long pausedUntilNanos;
+    private boolean resumeScheduled;
+
+    /**
+     * @param initialLimit Requests allowed in flight before anything has been learned.
+     * @param maxLimit     The most requests ever allowed in flight.
+     * @param maxAttempts  How often a throttled request is tried before its failure is reported.
+     */
+    AiRequestLimiter(int initialLimit, int maxLimit, int maxAttempts) {
+        this(initialLimit, maxLimit, maxAttempts, System::nanoTime, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lets tests drive the limiter with a fake clock, and start requests on the calling thread.
+     *
+     * @param clock   Nanosecond time, like System.nanoTime (any origin).
+     * @param starter Runs each request's start.
+     */
+    AiRequestLimiter(int initialLimit, int maxLimit, int maxAttempts, LongSupplier clock, Executor starter) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.clock = clock;
+        this.starter = starter;
+        // The clock's origin is arbitrary (nanoTime may be negative), so both of these start from now
+        // rather than from 0, which could be in the future.
+        this.lastDecreaseNanos = clock.getAsLong();
+        this.pausedUntilNanos = lastDecreaseNanos;
+        for (AiQueryService.Priority priority : AiQueryService.Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            credits.put(priority, WEIGHTS.get(priority));
+        }
+    }
+
+    /**
+     * Starts a request as soon as the limit and its priority allow. If it fails with a
+     * AiThrottledException, it is started again later (a fresh call of 'request').
+     *
+     * @param priority Where the request queues.
+     * @param request  Starts the request; called once per attempt, while it holds a slot.
+     * @return The request's result.
+     */
+    <T> CompletableFuture<T> submit(AiQueryService.Priority priority, Supplier<CompletableFuture<T>> request) {
+        Pending<T> pending = new Pending<>(priority, request);
+        synchronized (this) {
+            queues.get(priority).addLast(pending);
+            queued++;
+        }
+        dispatch();
+        return pending.result;
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    // --- Helper Methods ---
+
+    private void dispatch() {
+        List<Pending<?>> toStart = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.getAsLong();
+            if (now < pausedUntilNanos) {
+                if (!resumeScheduled && queued > 0) {
+                    resumeScheduled = true;
+                    timer.schedule(this::resume, pausedUntilNanos - now, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+            while (inFlight < (int) limit && queued > 0) {
+                toStart.add(nextByPriority());
+                inFlight++;
+                queued--;
+            }
+        }
+        // Started off this thread (outside tests), so a run of requests that fail immediately
+        // can't recurse through dispatch() on one stack.
+        for (Pending<?> pending : toStart) {
+            starter.execute(pending::start);
+        }
+    }
+
+    private void resume() {
+        synchronized (this) {
+            resumeScheduled = false;
+        }
+        dispatch();
+    }
+
+    /**
+     * Weighted round robin: the highest priority with credit left goes first; once no waiting
+     * priority has credit, everyone's credit is refilled.
+     */
+    private Pending<?> nextByPriority() {
+        for (int pass = 0; pass < 2; pass++) {
+            for (AiQueryService.Priority priority : AiQueryService.Priority.values()) {
+                Deque<Pending<?>> queue = queues.get(priority);
+                if (!queue.isEmpty() && credits.get(priority) > 0) {
+                    credits.merge(priority, -1, Integer::sum);
+                    return queue.pollFirst();
+                }
+            }
+            credits.putAll(WEIGHTS);
+        }
+        throw new IllegalStateException("dispatch() found no waiting request");
+    }
+
+    private synchronized void onSuccess(long latencyNanos) {
+        int wasInFlight = inFlight--;
+        if (latencySamples++ == 0) {
+            recentLatencyNanos = latencyNanos;
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            recentLatencyNanos += (latencyNanos - recentLatencyNanos) * SHORT_WINDOW_WEIGHT;
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) * LONG_WINDOW_WEIGHT;
+        }
+        if (latencySamples > WARMUP_SAMPLES && recentLatencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE) {
+            decrease(0.9, latencyNanos);
+        } else if (wasInFlight * 2 >= limit) {
+            // Only grow a limit that's being used; idle headroom says nothing about what the API can take.
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * @return Whether the request should be tried again.
+     */
+    private synchronized boolean onThrottled(Pending<?> pending, AiThrottledException e, long latencyNanos) {
+        inFlight--;
+        decrease(0.5, latencyNanos);
+        Duration retryAfter = e.retryAfter();
+        if (retryAfter != null) {
+            pausedUntilNanos = Math.max(pausedUntilNanos, clock.getAsLong() + retryAfter.toNanos());
+        }
+        if (pending.attempts >= maxAttempts) {
+            return false;
+        }
+        long delayMillis = retryAfter != null
+                ? retryAfter.toMillis()
+                : ThreadLocalRandom.current().nextLong(Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << pending.attempts) + 1);
+        timer.schedule(() -> {
+            synchronized (this) {
+                // Back at the head of its queue: it has waited longest.
+                queues.get(pending.priority).addFirst(pending);
+                queued++;
+            }
+            dispatch();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private synchronized void onFailure() {
+        inFlight--;
+    }
+
+    /**
+     * Shrinks the limit, unless it already shrank within the last round trip (the requests failing
+     * now were sent before that decrease took effect).
+     */
+    private void decrease(double factor, long roundTripNanos) {
+        long now = clock.getAsLong();
+        if (now - lastDecreaseNanos < roundTripNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(1, limit * factor);
+        log.debug("AI request limit {} -> {}", (int) previous, (int) limit);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * A submitted request, through all its attempts.
+     */
+    private final class Pending<T> {
+
+        private final AiQueryService.Priority priority;
+        private final Supplier<CompletableFuture<T>> request;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempts;
+
+        Pending(AiQueryService.Priority priority, Supplier<CompletableFuture<T>> request) {
+            this.priority = priority;
+            this.request = request;
+        }
+
+        void start() {
+            attempts++;
+            long startNanos = clock.getAsLong();
+            CompletableFuture<T> call;
+            try {
+                call = request.get();
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((value, error) -> {
+                long latencyNanos = clock.getAsLong() - startNanos;
+                Throwable cause = error == null ? null : unwrap(error);
+                if (cause == null) {
+                    onSuccess(latencyNanos);
+                    result.complete(value);
+                } else if (cause instanceof AiThrottledException throttled) {
+                    if (!onThrottled(this, throttled, latencyNanos)) {
+                        result.completeExceptionally(throttled);
+                    }
+                } else {
+                    onFailure();
+                    result.completeExceptionally(cause);
+                }
+                dispatch();
+            });
+        }
+    }
+}
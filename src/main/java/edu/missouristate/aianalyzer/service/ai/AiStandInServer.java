@@ -0,0 +1,336 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    A local stand-in for the model service, so the pipeline can be load-tested and its concurrency
+    tuned without credentials or network, offline or in CI. Point the app at it with ai.backend=http.
+
+    Answers are deterministic: they're derived from a hash of the request, so the same file always gets
+    the same summary. Latency, errors and throttling come from a seeded random generator and are
+    configurable, so runs are repeatable:
+      --port=8089
+      --latency=lognormal|uniform|fixed   distribution of the time to answer (default lognormal)
+      --latency-ms=800                    its median
+      --first-chunk-fraction=0.25         share of it before the first piece of a streamed answer
+      --latency-spread=0.5                log-normal sigma, or for uniform, +/- this fraction of the median
+      --error-rate=0                      fraction of requests answered with a 500
+      --capacity=0                        requests served at once; more are answered 429 (0 = no limit)
+      --rate-limit=0                      requests accepted per second; more are answered 429 (0 = no limit)
+      --retry-after-ms=1000               the Retry-After sent with a 429
+      --seed=42
+
+    The protocol, which HttpAiBackend speaks:
+      POST /v1/generate  {"prompt": "...", "keys": ["f1", ...], "fileUri": "...", "data": "<base64>", "mimeType": "...",
+                          "stream": true}
+                         (all but prompt optional)
+                         -> 200 {"text": "..."}; with keys the text is a JSON object with a string per key
+                         -> with stream, 200 and the text a few words at a time, one {"text": "..."} per line,
+                            the first after first-chunk-fraction of the latency and the rest spread over the remainder
+                         -> 429 {"error": "..."} with Retry-After in (possibly fractional) seconds
+                         -> 500 {"error": "..."}
+      GET /v1/stats      -> {"requests": n, "ok": n, "streamed": n, "throttled": n, "errors": n, "peakConcurrency": n}
+
+    Run it from the build's classpath:
+      java -cp <classpath> edu.missouristate.aianalyzer.service.ai.AiStandInServer --capacity=32 --latency-ms=600
+ */
+public final class AiStandInServer implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final List<String> IMAGE_CATEGORIES = List.of("single", "two", "group", "miscellaneous");
+    private static final int WORDS_PER_CHUNK = 3;
+
+    /**
+     * How the stand-in behaves; see the class comment for what each setting does.
+     */
+    public record Settings(int port, String latency, long latencyMillis, double latencySpread, double firstChunkFraction,
+                           double errorRate, int capacity, double rateLimit, long retryAfterMillis, long seed) {
+
+        public static Settings defaults() {
+            return new Settings(8089, "lognormal", 800, 0.5, 0.25, 0, 0, 0, 1000, 42);
+        }
+
+        /**
+         * @param args Settings as --name=value; unnamed settings keep their defaults.
+         * @return The settings.
+         */
+        public static Settings parse(String... args) {
+            Settings d = defaults();
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+            return new Settings(
+                    Integer.parseInt(values.getOrDefault("port", String.valueOf(d.port))),
+                    values.getOrDefault("latency", d.latency).toLowerCase(Locale.ROOT),
+                    Long.parseLong(values.getOrDefault("latency-ms", String.valueOf(d.latencyMillis))),
+                    Double.parseDouble(values.getOrDefault("latency-spread", String.valueOf(d.latencySpread))),
+                    Double.parseDouble(values.getOrDefault("first-chunk-fraction", String.valueOf(d.firstChunkFraction))),
+                    Double.parseDouble(values.getOrDefault("error-rate", String.valueOf(d.errorRate))),
+                    Integer.parseInt(values.getOrDefault("capacity", String.valueOf(d.capacity))),
+                    Double.parseDouble(values.getOrDefault("rate-limit", String.valueOf(d.rateLimit))),
+                    Long.parseLong(values.getOrDefault("retry-after-ms", String.valueOf(d.retryAfterMillis))),
+                    Long.parseLong(values.getOrDefault("seed", String.valueOf(d.seed))));
+        }
+    }
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService threads;
+    private final Random random;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakConcurrency = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    // Token bucket for --rate-limit, guarded by 'this'.
+    private double tokens;
+    private long refilledNanos = System.nanoTime();
+
+    private AiStandInServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.random = new Random(settings.seed());
+        this.tokens = settings.rateLimit();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.port()), 0);
+        this.threads = Executors.newCachedThreadPool(runnable -> {
+            Thread t = new Thread(runnable, "AI-Stand-In");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(threads);
+        server.createContext("/v1/generate", this::generate);
+        server.createContext("/v1/stats", this::stats);
+    }
+
+    /**
+     * @param settings How to behave; port 0 picks a free port.
+     * @return The running server.
+     * @throws IOException if the port can't be bound.
+     */
+    public static AiStandInServer start(Settings settings) throws IOException {
+        AiStandInServer standIn = new AiStandInServer(settings);
+        standIn.server.start();
+        return standIn;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AiStandInServer standIn = start(Settings.parse(args));
+        System.out.println("AI stand-in listening on " + standIn.url() + " with " + standIn.settings);
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * @return The base URL to configure as ai.http.url.
+     */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    // --- Helper Methods ---
+
+    private void generate(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int concurrency = active.incrementAndGet();
+        peakConcurrency.accumulateAndGet(concurrency, Math::max);
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            JsonNode request;
+            try {
+                request = JSON.readTree(exchange.getRequestBody());
+            } catch (JsonProcessingException e) {
+                respond(exchange, 400, error("Malformed request: " + e.getOriginalMessage()));
+                return;
+            }
+            if ((settings.capacity() > 0 && concurrency > settings.capacity()) || !takeToken()) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.retryAfterMillis() / 1000.0));
+                respond(exchange, 429, error("Resource exhausted; retry after " + settings.retryAfterMillis() + " ms"));
+                return;
+            }
+            long latency;
+            boolean fail;
+            synchronized (random) {
+                latency = sampleLatency();
+                fail = random.nextDouble() < settings.errorRate();
+            }
+            boolean stream = request.path("stream").asBoolean(false);
+            long firstChunk = stream ? Math.round(latency * settings.firstChunkFraction()) : latency;
+            Thread.sleep(firstChunk);
+            if (fail) {
+                errors.incrementAndGet();
+                respond(exchange, 500, error("Injected failure"));
+                return;
+            }
+            ok.incrementAndGet();
+            if (stream) {
+                streamed.incrementAndGet();
+                stream(exchange, answer(request), latency - firstChunk);
+                return;
+            }
+            ObjectNode response = JSON.createObjectNode();
+            response.put("text", answer(request));
+            respond(exchange, 200, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        ObjectNode stats = JSON.createObjectNode();
+        stats.put("requests", requests.get());
+        stats.put("ok", ok.get());
+        stats.put("streamed", streamed.get());
+        stats.put("throttled", throttled.get());
+        stats.put("errors", errors.get());
+        stats.put("peakConcurrency", peakConcurrency.get());
+        respond(exchange, 200, stats);
+    }
+
+    /**
+     * Sends the answer WORDS_PER_CHUNK words at a time, spreading the remaining latency between the pieces.
+     */
+    private static void stream(HttpExchange exchange, String text, long remainingMillis) throws IOException, InterruptedException {
+        List<String> chunks = new ArrayList<>();
+        String[] words = text.split("(?<= )");
+        for (int i = 0; i < words.length; i += WORDS_PER_CHUNK) {
+            chunks.add(String.join("", Arrays.copyOfRange(words, i, Math.min(words.length, i + WORDS_PER_CHUNK))));
+        }
+        long pause = chunks.size() > 1 ? remainingMillis / (chunks.size() - 1) : 0;
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i > 0) {
+                    Thread.sleep(pause);
+                }
+                ObjectNode line = JSON.createObjectNode();
+                line.put("text", chunks.get(i));
+                out.write(JSON.writeValueAsBytes(line));
+                out.write('\n');
+                out.flush();
+            }
+        }
+    }
+
+    private synchronized boolean takeToken() {
+        if (settings.rateLimit() <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(settings.rateLimit(), tokens + (now - refilledNanos) / 1e9 * settings.rateLimit());
+        refilledNanos = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private long sampleLatency() {
+        double median = settings.latencyMillis();
+        double spread = settings.latencySpread();
+        double millis = switch (settings.latency()) {
+            case "fixed" -> median;
+            case "uniform" -> median * (1 + spread * (2 * random.nextDouble() - 1));
+            default -> median * Math.exp(spread * random.nextGaussian());
+        };
+        return Math.max(0, Math.round(millis));
+    }
+
+    private static String answer(JsonNode request) throws IOException {
+        String prompt = text(request, "prompt");
+        String mimeType = text(request, "mimeType");
+        String digest = digest(prompt + "|" + text(request, "fileUri") + "|" + text(request, "data"));
+        if (request.hasNonNull("keys")) {
+            ObjectNode answers = JSON.createObjectNode();
+            for (JsonNode key : request.get("keys")) {
+                answers.put(key.asText(), summary(digest(digest + key.asText()), prompt.length()));
+            }
+            return JSON.writeValueAsString(answers);
+        }
+        if (mimeType.startsWith("image/")) {
+            return IMAGE_CATEGORIES.get(Integer.parseInt(digest.substring(0, 2), 16) % IMAGE_CATEGORIES.size());
+        }
+        return summary(digest, prompt.length());
+    }
+
+    /**
+     * A string field of the request, or "" if it is missing, null or not a string.
+     */
+    private static String text(JsonNode request, String field) {
+        String value = request.path(field).textValue();
+        return value == null ? "" : value;
+    }
+
+    private static String summary(String digest, int promptChars) {
+        return "Stand-in summary " + digest.substring(0, 8) + " of a " + promptChars + "-character prompt.";
+    }
+
+    private static String digest(String text) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ObjectNode error(String message) {
+        ObjectNode error = JSON.createObjectNode();
+        error.put("error", message);
+        return error;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = JSON.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import java.time.Duration;
+
+/**
+ * Thrown (as the failure of a backend's future) when the model service turned a request away
+ * because of load, e.g. HTTP 429 or 503. AiQueryService retries such requests and backs off.
+ */
+public class AiThrottledException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * @param retryAfter How long the service asked us to wait, or null if it didn't say.
+     * @param message    The service's error.
+     * @param cause      The underlying error, or null.
+     */
+    public AiThrottledException(Duration retryAfter, String message, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return How long the service asked us to wait, or null if it didn't say.
+     */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,55 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+/*
+    A TextSink that collects text into a string, up to a character budget. Once the budget is spent it
+    stops the extractor, so the memory used is bounded by the budget rather than the document.
+    Models count tokens rather than characters; for the English text they see, a token is roughly
+    4 characters, which is what forTokens() assumes.
+ */
+public class BudgetedTextSink implements TextSink {
+
+    static final int CHARS_PER_TOKEN = 4;
+
+    private final StringBuilder text = new StringBuilder();
+    private final int maxChars;
+    private boolean truncated;
+
+    /**
+     * @param maxChars The most characters to keep.
+     */
+    public BudgetedTextSink(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * @param maxTokens The approximate number of model tokens to keep.
+     * @return A sink whose character budget matches that many tokens.
+     */
+    public static BudgetedTextSink forTokens(int maxTokens) {
+        return new BudgetedTextSink((int) Math.min(Integer.MAX_VALUE, (long) maxTokens * CHARS_PER_TOKEN));
+    }
+
+    @Override
+    public boolean append(CharSequence chunk) {
+        int remaining = maxChars - text.length();
+        if (chunk.length() > remaining) {
+            text.append(chunk, 0, remaining);
+            truncated = true;
+            return false;
+        }
+        text.append(chunk);
+        return true; // even when exactly full: only more text proves the document was cut short
+    }
+
+    /**
+     * @return Whether text was dropped because the budget ran out.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
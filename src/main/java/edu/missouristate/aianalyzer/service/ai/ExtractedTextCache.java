@@ -0,0 +1,243 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.service.database.DirectoryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+    Remembers the text ReadFileService extracted from a document, so reprocessing an unchanged file
+    (a retry, a new prompt, a different model) skips POI / PDFBox entirely.
+
+    Entries are content-addressed: the key is the file's SHA-256 and size plus the extractor version
+    for its type, so a renamed or copied file hits the same entry and a changed file or extractor never
+    gets stale text. Text is stored deflate-compressed, one file per entry, and the least recently used
+    entries are evicted once the cache outgrows extraction.cache.max-bytes. Sizes and access times live
+    in a memory-mapped index (ExtractedTextIndex), so neither hits nor eviction list the directory.
+ */
+@Slf4j
+@Service
+public class ExtractedTextCache {
+
+    private static final long MAX_HASHED_BYTES = 256L * 1024 * 1024; // same limit as the catalog's contentHash
+
+    private final DirectoryService directoryService;
+    private final ExtractionWorkerPool extractionWorkerPool;
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final int maxChars;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private ExtractedTextIndex index;
+
+    public ExtractedTextCache(DirectoryService directoryService,
+                              ExtractionWorkerPool extractionWorkerPool,
+                              @Value("${extraction.cache.dir:cache/extracted-text}") String cacheDir,
+                              @Value("${extraction.cache.max-bytes:1073741824}") long maxBytes,
+                              @Value("${extraction.cache.max-entries:100000}") int maxEntries,
+                              @Value("${extraction.max-chars:400000}") int maxChars) {
+        this.directoryService = directoryService;
+        this.extractionWorkerPool = extractionWorkerPool;
+        this.cacheDir = Paths.get(cacheDir).toAbsolutePath();
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(cacheDir);
+        // Slots are kept at most 75% full, so size the table for maxEntries at that load.
+        index = ExtractedTextIndex.open(cacheDir.resolve("index.bin"), maxEntries * 4 / 3 + 1);
+        if (index.isEmpty()) {
+            reindexExistingEntries();
+        }
+        log.info("Extracted-text cache at {}: {} of {} MB used.", cacheDir, index.totalBytes() / (1024 * 1024), maxBytes / (1024 * 1024));
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        index.close();
+    }
+
+    /**
+     * Returns the beginning of a document's text (up to extraction.max-chars characters),
+     * from the cache when this content was extracted before.
+     *
+     * @param filePath The document.
+     * @param fileType Its type (e.g. "pdf", "docx"), as passed to ReadFileService.
+     * @return The extracted text, cut off at the character budget.
+     * @throws IOException if the file can't be read or parsed.
+     */
+    public String read(Path filePath, String fileType) throws IOException {
+        byte[] digest = keyDigest(filePath, fileType);
+        Path entry = entryPath(digest);
+
+        boolean indexed;
+        synchronized (this) {
+            indexed = index.touch(digest, System.currentTimeMillis());
+        }
+        if (indexed) {
+            try {
+                String text = decompress(entry);
+                hits.incrementAndGet();
+                log.debug("Extracted-text cache hit for {}", filePath);
+                return text;
+            } catch (NoSuchFileException e) {
+                synchronized (this) {
+                    index.remove(digest); // deleted from outside; extract again
+                }
+            } catch (IOException e) {
+                // Truncated or damaged on disk; extract again, and store() replaces the file.
+                log.warn("Discarding unreadable extracted-text cache entry {}: {}", entry, e.toString());
+                synchronized (this) {
+                    index.remove(digest);
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        String text = extractionWorkerPool.extract(filePath, fileType, maxChars);
+        store(digest, entry, text);
+        return text;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    // --- Helper Methods ---
+
+    private void store(byte[] digest, Path entry, String text) {
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), "entry", ".tmp");
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(temp))) {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            int compressedLength = (int) Files.size(temp);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            List<ExtractedTextIndex.Entry> evicted = List.of();
+            synchronized (this) {
+                index.put(digest, compressedLength, System.currentTimeMillis());
+                if (index.totalBytes() > maxBytes || !index.hasRoom()) {
+                    // Evict down to 90% so the next few stores don't each trigger another pass.
+                    evicted = index.evict(maxBytes * 9 / 10, maxEntries * 9 / 10);
+                }
+            }
+            for (ExtractedTextIndex.Entry old : evicted) {
+                Files.deleteIfExists(entryPath(old.digest()));
+            }
+            if (!evicted.isEmpty()) {
+                log.debug("Evicted {} entries from the extracted-text cache.", evicted.size());
+            }
+        } catch (IOException e) {
+            // The text was extracted fine; failing to cache it only costs a re-parse next time.
+            log.warn("Could not cache extracted text in {}: {}", entry, e.getMessage());
+        }
+    }
+
+    private static String decompress(Path entry) throws IOException {
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(entry))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Digest of everything the extracted text depends on: the content, the extractor that read it and the budget.
+     * The catalog's contentHash is reused when the record is current, so a hit costs no hashing.
+     */
+    private byte[] keyDigest(Path filePath, String fileType) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        long mtimeUnix = attrs.lastModifiedTime().toMillis() / 1000;
+        Optional<FileRecord> fileRecord = directoryService.findFile(filePath.toAbsolutePath());
+        String contentHash = fileRecord
+                .filter(r -> r.getContentHash() != null && r.getSizeBytes() == attrs.size() && r.getMtimeUnix() == mtimeUnix)
+                .map(FileRecord::getContentHash)
+                .orElse(null);
+        if (contentHash == null) {
+            contentHash = sha256(filePath);
+        }
+        String key = contentHash + ":" + attrs.size() + ":" + fileType + ":" + ReadFileService.extractorVersion(fileType) + ":" + maxChars;
+        return newSha256().digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path entryPath(byte[] digest) {
+        String hex = HexFormat.of().formatHex(digest);
+        return cacheDir.resolve(hex.substring(0, 2)).resolve(hex + ".z");
+    }
+
+    /**
+     * Rebuilds the index from the entry files, e.g. after index.bin was deleted or resized.
+     */
+    private void reindexExistingEntries() throws IOException {
+        int found = 0;
+        try (Stream<Path> files = Files.walk(cacheDir, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(p -> p.getFileName().toString().endsWith(".z"))::iterator) {
+                String name = file.getFileName().toString();
+                try {
+                    byte[] digest = HexFormat.of().parseHex(name.substring(0, name.length() - 2));
+                    index.put(digest, (int) Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                    found++;
+                } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+                    log.debug("Ignoring unexpected file in the extracted-text cache: {}", file);
+                }
+            }
+        }
+        if (found > 0) {
+            log.info("Re-indexed {} extracted-text cache entries.", found);
+        }
+    }
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest md = newSha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), md)) {
+            byte[] buffer = new byte[8192];
+            long remaining = MAX_HASHED_BYTES;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                remaining -= read;
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+    The memory-mapped index of ExtractedTextCache: a fixed-size open-addressing hash table in one file,
+    holding each cached entry's key digest, compressed size and last access time. Lookups, hits and LRU
+    eviction only touch mapped memory, never the cache directory, and the OS persists the table
+    without explicit writes.
+
+    File layout: a 16-byte header (magic, format version, slot count), then one 48-byte slot per entry:
+      state (1 byte: empty / used / deleted), 3 bytes padding, compressed length (int),
+      last access millis (long), SHA-256 key digest (32 bytes).
+    Not thread-safe; ExtractedTextCache synchronizes around it.
+ */
+class ExtractedTextIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x45545849; // "ETXI"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 48;
+    private static final int DIGEST_BYTES = 32;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    /**
+     * A cached entry, as returned by eviction.
+     */
+    record Entry(byte[] digest, int compressedLength, long lastAccessMillis) {
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private int used;
+    private long totalBytes;
+
+    private ExtractedTextIndex(FileChannel channel, MappedByteBuffer buffer, int slots) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slots = slots;
+        for (int slot = 0; slot < slots; slot++) {
+            if (state(slot) == USED) {
+                used++;
+                totalBytes += buffer.getInt(offset(slot) + 4);
+            }
+        }
+    }
+
+    /**
+     * Maps an existing index file, or creates an empty one if it is missing or doesn't match.
+     *
+     * @param file  The index file.
+     * @param slots The number of slots in the table.
+     * @return The mapped index; empty if it was just created.
+     */
+    static ExtractedTextIndex open(Path file, int slots) throws IOException {
+        long size = HEADER_BYTES + (long) slots * SLOT_BYTES;
+        boolean fresh = !Files.exists(file) || Files.size(file) != size;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (fresh) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(1), size - 1); // grow to full size, zero-filled
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (fresh || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != slots) {
+            for (long i = 0; i < size; i++) {
+                buffer.put((int) i, (byte) 0);
+            }
+            buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, slots);
+        }
+        return new ExtractedTextIndex(channel, buffer, slots);
+    }
+
+    boolean isEmpty() {
+        return used == 0;
+    }
+
+    /**
+     * @return Whether the table has room for another entry (kept at 75% so probe chains stay short).
+     */
+    boolean hasRoom() {
+        return used < slots * 3L / 4;
+    }
+
+    long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Marks an entry as just used.
+     *
+     * @return Whether the digest is in the index.
+     */
+    boolean touch(byte[] digest, long nowMillis) {
+        int slot = find(digest);
+        if (slot < 0) {
+            return false;
+        }
+        buffer.putLong(offset(slot) + 8, nowMillis);
+        return true;
+    }
+
+    /**
+     * Adds or replaces an entry.
+     */
+    void put(byte[] digest, int compressedLength, long nowMillis) {
+        remove(digest);
+        int slot = probeStart(digest);
+        while (state(slot) == USED) {
+            slot = (slot + 1) % slots;
+        }
+        int offset = offset(slot);
+        buffer.put(offset, USED);
+        buffer.putInt(offset + 4, compressedLength);
+        buffer.putLong(offset + 8, nowMillis);
+        buffer.put(offset + 16, digest);
+        used++;
+        totalBytes += compressedLength;
+    }
+
+    /**
+     * Removes an entry if present.
+     */
+    void remove(byte[] digest) {
+        int slot = find(digest);
+        if (slot >= 0) {
+            int offset = offset(slot);
+            buffer.put(offset, DELETED);
+            used--;
+            totalBytes -= buffer.getInt(offset + 4);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the total is at or below a target.
+     *
+     * @param targetBytes The total compressed size to get down to.
+     * @param targetUsed  The entry count to get down to.
+     * @return The removed entries, so the caller can delete their files.
+     */
+    List<Entry> evict(long targetBytes, int targetUsed) {
+        List<Entry> all = new ArrayList<>(used);
+        for (int slot = 0; slot < slots; slot++) {
+            if (state(slot) == USED) {
+                all.add(entryAt(slot));
+            }
+        }
+        all.sort(Comparator.comparingLong(Entry::lastAccessMillis));
+        List<Entry> evicted = new ArrayList<>();
+        for (Entry entry : all) {
+            if (totalBytes <= targetBytes && used <= targetUsed) {
+                break;
+            }
+            remove(entry.digest());
+            evicted.add(entry);
+        }
+        compact();
+        return evicted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    // --- Helper Methods ---
+
+    private int find(byte[] digest) {
+        int slot = probeStart(digest);
+        for (int probes = 0; probes < slots; probes++) {
+            byte state = state(slot);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && digestMatches(slot, digest)) {
+                return slot;
+            }
+            slot = (slot + 1) % slots;
+        }
+        return -1;
+    }
+
+    /**
+     * Re-inserts every live entry so the deleted markers left by eviction don't lengthen probe chains.
+     */
+    private void compact() {
+        List<Entry> live = new ArrayList<>(used);
+        for (int slot = 0; slot < slots; slot++) {
+            if (state(slot) == USED) {
+                live.add(entryAt(slot));
+            }
+            buffer.put(offset(slot), EMPTY);
+        }
+        used = 0;
+        totalBytes = 0;
+        for (Entry entry : live) {
+            put(entry.digest(), entry.compressedLength(), entry.lastAccessMillis());
+        }
+    }
+
+    private Entry entryAt(int slot) {
+        int offset = offset(slot);
+        byte[] digest = new byte[DIGEST_BYTES];
+        buffer.get(offset + 16, digest);
+        return new Entry(digest, buffer.getInt(offset + 4), buffer.getLong(offset + 8));
+    }
+
+    private boolean digestMatches(int slot, byte[] digest) {
+        byte[] stored = new byte[DIGEST_BYTES];
+        buffer.get(offset(slot) + 16, stored);
+        return Arrays.equals(stored, digest);
+    }
+
+    private int probeStart(byte[] digest) {
+        // The digest is already uniformly distributed, so its first bytes make a fine hash.
+        return Math.floorMod(ByteBuffer.wrap(digest).getInt(), slots);
+    }
+
+    private byte state(int slot) {
+        return buffer.get(offset(slot));
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+}
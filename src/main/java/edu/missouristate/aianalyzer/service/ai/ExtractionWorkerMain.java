@@ -0,0 +1,97 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/*
+    Entry point of an extraction worker: a plain JVM (no Spring, no JavaFX) that ExtractionWorkerPool
+    starts so POI and PDFBox run with their own heap cap. A file that makes a parser allocate without
+    limit or spin forever then takes down a worker, not the app.
+
+    The protocol runs over the worker's stdin/stdout, all integers big-endian (DataInput/DataOutput):
+      worker -> app, once at startup:  int READY_MAGIC
+      app -> worker, per task:         byte OP_EXTRACT, UTF path, UTF file type, int max chars
+      worker -> app, per task:         byte STATUS_OK, boolean complete, int length, length bytes of UTF-8 text
+                                       or byte STATUS_ERROR, UTF message
+      app -> worker, to sample a table: byte OP_SAMPLE_TABLE, UTF path, UTF file type, int head rows, int sample rows
+      worker -> app, per sample:       byte STATUS_OK, long chars of the whole table, int length, length bytes
+                                       of UTF-8 sample (see TabularSampler), or byte STATUS_ERROR, UTF message
+      app -> worker:                   byte OP_SHUTDOWN (or just closing stdin) ends the worker.
+    Anything the libraries print goes to stderr, so stdout only ever carries the protocol.
+ */
+public final class ExtractionWorkerMain {
+
+    static final int READY_MAGIC = 0x45585731; // "EXW1"
+    static final byte OP_EXTRACT = 1;
+    static final byte OP_SHUTDOWN = 2;
+    static final byte OP_SAMPLE_TABLE = 3;
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    private static final int MAX_ERROR_MESSAGE_CHARS = 1_000;
+
+    private ExtractionWorkerMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+
+        out.writeInt(READY_MAGIC);
+        out.flush();
+        while (true) {
+            byte op;
+            try {
+                op = in.readByte();
+            } catch (EOFException e) {
+                return; // the app closed our stdin
+            }
+            if (op != OP_EXTRACT && op != OP_SAMPLE_TABLE) {
+                return;
+            }
+            String path = in.readUTF();
+            String fileType = in.readUTF();
+            // The whole table goes through the sampler here, so only the sample crosses to the app.
+            BudgetedTextSink sink = null;
+            TabularSampler sampler = null;
+            if (op == OP_EXTRACT) {
+                sink = new BudgetedTextSink(in.readInt());
+            } else {
+                sampler = new TabularSampler(in.readInt(), in.readInt(), PromptMinimizer.isWorkbook(fileType));
+            }
+            try {
+                ReadFileService.extractText(Paths.get(path), fileType, sink != null ? sink : sampler);
+            } catch (Exception | StackOverflowError e) {
+                // OutOfMemoryError is deliberately not caught: the worker runs with
+                // -XX:+ExitOnOutOfMemoryError and the app treats the exit as a crash.
+                String message = String.valueOf(e.getMessage());
+                out.writeByte(STATUS_ERROR);
+                out.writeUTF(e.getClass().getSimpleName() + ": "
+                        + message.substring(0, Math.min(message.length(), MAX_ERROR_MESSAGE_CHARS)));
+                out.flush();
+                continue;
+            }
+            byte[] text = (sink != null ? sink : sampler).toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STATUS_OK);
+            if (sink != null) {
+                out.writeBoolean(!sink.isTruncated());
+            } else {
+                out.writeLong(sampler.chars());
+            }
+            out.writeInt(text.length);
+            out.write(text);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/*
+    Runs document text extraction, either right here or, with extraction.isolated=true, in a pool of
+    long-lived worker JVMs (ExtractionWorkerMain) that each have their own heap cap. A parser that runs
+    out of memory or hangs on a malformed file then costs one worker process instead of the JavaFX UI
+    and the whole pipeline.
+
+    - Workers are started on demand, up to extraction.workers, and reused for extraction.worker-max-tasks
+      tasks before being replaced, so slow leaks inside POI/PDFBox don't accumulate.
+    - A task that runs past extraction.task-timeout-seconds gets its worker killed; so does a worker
+      that dies (e.g. on OutOfMemoryError). Either way the worker is replaced.
+    - A file that has killed QUARANTINE_STRIKES workers is quarantined: it is never handed to a worker
+      again (until it changes), and the list survives restarts.
+ */
+@Slf4j
+@Service
+public class ExtractionWorkerPool {
+
+    private static final int QUARANTINE_STRIKES = 2;
+    private static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+
+    private final boolean isolated;
+    private final int heapMb;
+    private final long taskTimeoutMillis;
+    private final int maxTasksPerWorker;
+    private final Path quarantineFile;
+    private final String workerMainClass;
+    private final Path tempDir;
+
+    // One permit per worker that may exist; holding one means owning a worker for a task.
+    private final Semaphore slots;
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final Set<Worker> running = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> strikes = new ConcurrentHashMap<>();
+    private final Set<String> quarantined = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread t = new Thread(runnable, "Extraction-Watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public ExtractionWorkerPool(@Value("${extraction.isolated:false}") boolean isolated,
+                                @Value("${extraction.workers:2}") int workers,
+                                @Value("${extraction.worker-heap-mb:512}") int heapMb,
+                                @Value("${extraction.task-timeout-seconds:60}") int taskTimeoutSeconds,
+                                @Value("${extraction.worker-max-tasks:200}") int maxTasksPerWorker,
+                                @Value("${extraction.quarantine-file:cache/extraction-quarantine.txt}") String quarantineFile,
+                                ScratchSpace scratchSpace) {
+        this(isolated, workers, heapMb, taskTimeoutSeconds, maxTasksPerWorker, quarantineFile, ExtractionWorkerMain.class.getName(),
+                scratchSpace.runDir());
+    }
+
+    /**
+     * Lets tests start workers from another main class that speaks the same protocol.
+     *
+     * @param tempDir Where extraction's temp files go (PDFBox spills large documents there), in this JVM
+     *                and the workers; null leaves them in java.io.tmpdir.
+     */
+    ExtractionWorkerPool(boolean isolated, int workers, int heapMb, int taskTimeoutSeconds, int maxTasksPerWorker,
+                         String quarantineFile, String workerMainClass, Path tempDir) {
+        this.isolated = isolated;
+        this.heapMb = heapMb;
+        this.taskTimeoutMillis = taskTimeoutSeconds * 1000L;
+        this.maxTasksPerWorker = maxTasksPerWorker;
+        this.quarantineFile = Paths.get(quarantineFile).toAbsolutePath();
+        this.slots = new Semaphore(Math.max(1, workers));
+        this.workerMainClass = workerMainClass;
+        this.tempDir = tempDir;
+        if (tempDir != null) {
+            PdfTextExtractor.spillTo(tempDir);
+        }
+    }
+
+    @PostConstruct
+    public void loadQuarantine() throws IOException {
+        if (isolated && Files.exists(quarantineFile)) {
+            quarantined.addAll(Files.readAllLines(quarantineFile, StandardCharsets.UTF_8));
+            log.info("{} files are quarantined from extraction.", quarantined.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        running.forEach(Worker::destroy);
+    }
+
+    /**
+     * Extracts the beginning of a document's text, in a worker JVM when isolation is enabled.
+     *
+     * @param filePath The document.
+     * @param fileType Its type (e.g. "pdf", "docx"), as passed to ReadFileService.
+     * @param maxChars The most characters to return.
+     * @return The extracted text, cut off after maxChars characters.
+     * @throws IOException if the file can't be read or parsed, is quarantined, or killed its worker.
+     */
+    public String extract(Path filePath, String fileType, int maxChars) throws IOException {
+        if (!isolated) {
+            return ReadFileService.readFileAsString(filePath, fileType, maxChars);
+        }
+        return inWorker(filePath, worker -> worker.extract(filePath, fileType, maxChars));
+    }
+
+    /**
+     * Reduces a table to a sample of its rows (see TabularSampler), in a worker JVM when isolation is
+     * enabled. Either way the whole table is read, but only the sample is ever held or sent back.
+     *
+     * @param filePath   A csv, xls or xlsx file.
+     * @param fileType   Its type.
+     * @param headRows   Rows kept from the top of the table.
+     * @param sampleRows Rows sampled from the rest.
+     * @return The sample.
+     * @throws IOException if the file can't be read or parsed, is quarantined, or killed its worker.
+     */
+    TabularSampler.Sample sampleTable(Path filePath, String fileType, int headRows, int sampleRows) throws IOException {
+        if (!isolated) {
+            TabularSampler sampler = new TabularSampler(headRows, sampleRows, PromptMinimizer.isWorkbook(fileType));
+            ReadFileService.extractText(filePath, fileType, sampler);
+            return sampler.sample();
+        }
+        return inWorker(filePath, worker -> worker.sampleTable(filePath, fileType, headRows, sampleRows));
+    }
+
+    /**
+     * Streaming version of extract: in-process, text reaches the sink as the document is parsed;
+     * in a worker JVM, it arrives in one piece once the worker is done.
+     *
+     * @param filePath The document.
+     * @param fileType Its type (e.g. "pdf", "docx"), as passed to ReadFileService.
+     * @param maxChars The most characters to extract.
+     * @param sink     Receives the text; may stop extraction by returning false.
+     * @throws IOException if the file can't be read or parsed, is quarantined, or killed its worker.
+     */
+    public void extract(Path filePath, String fileType, int maxChars, TextSink sink) throws IOException {
+        if (!isolated) {
+            ReadFileService.extractText(filePath, fileType, new TextSink() {
+                private int remaining = maxChars;
+
+                @Override
+                public boolean append(CharSequence chunk) {
+                    int n = Math.min(chunk.length(), remaining);
+                    remaining -= n;
+                    return sink.append(n < chunk.length() ? chunk.subSequence(0, n) : chunk) && remaining > 0;
+                }
+            });
+            return;
+        }
+        sink.append(extract(filePath, fileType, maxChars));
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Runs one task on a worker, starting one if none is idle, and strikes the file if it kills the worker.
+     */
+    private <T> T inWorker(Path filePath, WorkerTask<T> task) throws IOException {
+        String key = quarantineKey(filePath);
+        if (quarantined.contains(key)) {
+            throw new IOException("Not extracting " + filePath + ": it is quarantined after crashing or hanging extraction workers");
+        }
+
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an extraction worker");
+        }
+        Worker worker = null;
+        try {
+            worker = idle.poll();
+            if (worker == null) {
+                worker = startWorker();
+            }
+            T result = task.run(worker);
+            strikes.remove(key);
+            return result;
+        } catch (WorkerFailedException e) {
+            worker.destroy();
+            worker = null;
+            strike(key, filePath);
+            throw new IOException("Extraction worker " + e.getMessage() + " on " + filePath, e);
+        } finally {
+            if (worker != null) {
+                // The watchdog may have fired just as the task finished; a killed worker is never reused.
+                if (worker.killed || !worker.process.isAlive()) {
+                    worker.destroy();
+                } else if (worker.tasks >= maxTasksPerWorker) {
+                    worker.retire();
+                } else {
+                    idle.offer(worker);
+                }
+            }
+            slots.release();
+        }
+    }
+
+    private void strike(String key, Path filePath) {
+        if (strikes.merge(key, 1, Integer::sum) < QUARANTINE_STRIKES) {
+            return;
+        }
+        strikes.remove(key);
+        if (quarantined.add(key)) {
+            log.warn("Quarantining {}: it crashed or hung {} extraction workers.", filePath, QUARANTINE_STRIKES);
+            try {
+                Files.createDirectories(quarantineFile.getParent());
+                Files.writeString(quarantineFile, key + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Could not save the extraction quarantine list: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A file is identified by path, size and modification time, so editing a quarantined file gives it another chance.
+     */
+    private static String quarantineKey(Path filePath) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        return filePath.toAbsolutePath() + "|" + attrs.size() + "|" + attrs.lastModifiedTime().toMillis();
+    }
+
+    private Worker startWorker() throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(workerCommand());
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Worker worker = new Worker(builder.start());
+        running.add(worker);
+        try {
+            worker.awaitReady();
+        } catch (WorkerFailedException e) {
+            worker.destroy();
+            throw new IOException("Could not start an extraction worker: " + e.getMessage(), e);
+        }
+        log.debug("Started extraction worker (pid {}).", worker.process.pid());
+        return worker;
+    }
+
+    /**
+     * The worker runs on this JVM's classpath. Packaged as a Spring Boot jar, the classes are nested
+     * in the jar, so the worker is started through Boot's launcher with loader.main pointing at it.
+     */
+    private List<String> workerCommand() throws IOException {
+        String classPath = System.getProperty("java.class.path");
+        List<String> command = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + heapMb + "m",
+                "-XX:+ExitOnOutOfMemoryError",
+                "-XX:+UseSerialGC",
+                "-Djava.awt.headless=true",
+                "-Djava.io.tmpdir=" + (tempDir != null ? tempDir : System.getProperty("java.io.tmpdir")),
+                "-Dlogback.configurationFile=logback-worker.xml",
+                "-cp", classPath));
+        if (isBootJar(classPath)) {
+            command.add("-Dloader.main=" + workerMainClass);
+            command.add(BOOT_LAUNCHER);
+        } else {
+            command.add(workerMainClass);
+        }
+        return command;
+    }
+
+    private static boolean isBootJar(String classPath) throws IOException {
+        if (!classPath.endsWith(".jar") || classPath.contains(File.pathSeparator)) {
+            return false;
+        }
+        try (JarFile jar = new JarFile(classPath)) {
+            return jar.getEntry("BOOT-INF/") != null;
+        }
+    }
+
+    private interface WorkerTask<T> {
+        T run(Worker worker) throws IOException, WorkerFailedException;
+    }
+
+    /**
+     * Thrown when a worker dies or is killed mid-task, as opposed to reporting that a file can't be parsed.
+     */
+    private static final class WorkerFailedException extends Exception {
+        WorkerFailedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * One worker process and its end of the protocol (see ExtractionWorkerMain).
+     */
+    private final class Worker {
+
+        private final Process process;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private volatile boolean killed;
+        private int tasks;
+
+        Worker(Process process) {
+            this.process = process;
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        void awaitReady() throws WorkerFailedException {
+            ScheduledFuture<?> timer = watchdog.schedule(this::kill, STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            try {
+                if (in.readInt() != ExtractionWorkerMain.READY_MAGIC) {
+                    throw new WorkerFailedException("sent an unexpected greeting");
+                }
+            } catch (IOException e) {
+                throw new WorkerFailedException(failure("startup"));
+            } finally {
+                timer.cancel(false);
+            }
+        }
+
+        String extract(Path filePath, String fileType, int maxChars) throws IOException, WorkerFailedException {
+            return call(() -> {
+                in.readBoolean(); // whether the whole document fit; not needed here
+                return readText();
+            }, ExtractionWorkerMain.OP_EXTRACT, filePath, fileType, maxChars);
+        }
+
+        TabularSampler.Sample sampleTable(Path filePath, String fileType, int headRows, int sampleRows)
+                throws IOException, WorkerFailedException {
+            return call(() -> {
+                long chars = in.readLong();
+                return new TabularSampler.Sample(readText(), chars);
+            }, ExtractionWorkerMain.OP_SAMPLE_TABLE, filePath, fileType, headRows, sampleRows);
+        }
+
+        /**
+         * Sends one task and, under the watchdog, reads its status and then either the answer or the error.
+         */
+        private <T> T call(Reply<T> reply, byte op, Path filePath, String fileType, int... args)
+                throws IOException, WorkerFailedException {
+            tasks++;
+            ScheduledFuture<?> timer = watchdog.schedule(this::kill, taskTimeoutMillis, TimeUnit.MILLISECONDS);
+            T result = null;
+            String error = null;
+            try {
+                out.writeByte(op);
+                out.writeUTF(filePath.toAbsolutePath().toString());
+                out.writeUTF(fileType);
+                for (int arg : args) {
+                    out.writeInt(arg);
+                }
+                out.flush();
+
+                if (in.readByte() == ExtractionWorkerMain.STATUS_OK) {
+                    result = reply.read();
+                } else {
+                    error = in.readUTF();
+                }
+            } catch (IOException e) {
+                throw new WorkerFailedException(failure("the task"));
+            } finally {
+                timer.cancel(false);
+            }
+            if (error != null) {
+                throw new IOException(error);
+            }
+            return result;
+        }
+
+        private String readText() throws IOException {
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            return new String(text, StandardCharsets.UTF_8);
+        }
+
+        void retire() {
+            try {
+                out.writeByte(ExtractionWorkerMain.OP_SHUTDOWN);
+                out.close();
+            } catch (IOException e) {
+                destroy();
+            }
+            running.remove(this);
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+            running.remove(this);
+        }
+
+        private void kill() {
+            killed = true;
+            process.destroyForcibly();
+        }
+
+        private interface Reply<T> {
+            T read() throws IOException;
+        }
+
+        private String failure(String during) {
+            if (killed) {
+                return "timed out during " + during;
+            }
+            try {
+                if (process.waitFor(1, TimeUnit.SECONDS)) {
+                    return "exited with code " + process.exitValue() + " during " + during;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "stopped responding during " + during;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import com.google.genai.Client;
+import com.google.genai.ResponseStream;
+import com.google.genai.errors.ApiException;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.Part;
+import com.google.genai.types.Schema;
+import com.google.genai.types.Type;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The Gemini model on Vertex AI, through the google-genai client (see AiClient).
+ */
+@Component
+@ConditionalOnProperty(name = "ai.backend", havingValue = "gemini", matchIfMissing = true)
+public class GeminiAiBackend implements AiBackend {
+
+    private static final String MODEL = "gemini-2.0-flash";
+    // Gemini's 429 body carries the wait as a RetryInfo detail ("retryDelay": "17s") and/or in the text ("retry in 17.2s").
+    private static final Pattern RETRY_DELAY = Pattern.compile("(?:retryDelay\"?\\s*[:=]\\s*\"?|retry in )(\\d+(?:\\.\\d+)?)s");
+
+    // Reading a stream blocks until the next piece arrives, so each stream being read holds a thread.
+    private static final ExecutorService STREAM_READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread t = new Thread(runnable, "AI-Stream");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Client client;
+
+    public GeminiAiBackend(Client client) {
+        this.client = client;
+    }
+
+    @Override
+    public CompletableFuture<String> generate(String prompt) {
+        return call(client.async.models.generateContent(MODEL, prompt, null));
+    }
+
+    @Override
+    public CompletableFuture<String> generateStream(String prompt, Consumer<String> onChunk) {
+        return client.async.models.generateContentStream(MODEL, prompt, null)
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(classify(e)))
+                .thenApplyAsync(stream -> read(stream, onChunk), STREAM_READERS);
+    }
+
+    @Override
+    public CompletableFuture<String> generateKeyed(String prompt, List<String> keys) {
+        Map<String, Schema> properties = new LinkedHashMap<>();
+        keys.forEach(key -> properties.put(key, Schema.builder().type(Type.Known.STRING).build()));
+        GenerateContentConfig config = GenerateContentConfig.builder()
+                .responseMimeType("application/json")
+                .responseSchema(Schema.builder()
+                        .type(Type.Known.OBJECT)
+                        .properties(properties)
+                        .required(keys)
+                        .build())
+                .build();
+        return call(client.async.models.generateContent(MODEL, prompt, config));
+    }
+
+    @Override
+    public CompletableFuture<String> generateFromFile(String prompt, String fileUri, String mimeType) {
+        Content content = Content.fromParts(
+                Part.fromText(prompt),
+                Part.fromUri(fileUri, mimeType));
+        return call(client.async.models.generateContent(MODEL, content, null))
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(missingFile(e)));
+    }
+
+    @Override
+    public CompletableFuture<String> generateFromBytes(String prompt, byte[] data, String mimeType) {
+        Content content = Content.fromParts(
+                Part.fromText(prompt),
+                Part.fromBytes(data, mimeType));
+        return call(client.async.models.generateContent(MODEL, content, null));
+    }
+
+    // --- Helper Methods ---
+
+    private static CompletableFuture<String> call(CompletableFuture<GenerateContentResponse> response) {
+        return response
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(classify(e)))
+                .thenApply(GenerateContentResponse::text);
+    }
+
+    private static String read(ResponseStream<GenerateContentResponse> stream, Consumer<String> onChunk) {
+        StringBuilder text = new StringBuilder();
+        try (stream) {
+            for (GenerateContentResponse response : stream) {
+                String chunk = response.text();
+                if (chunk != null && !chunk.isEmpty()) {
+                    text.append(chunk);
+                    onChunk.accept(chunk);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new CompletionException(classify(e));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Turns the API's "slow down" answers into AiThrottledException, so they're retried.
+     */
+    static Throwable classify(Throwable error) {
+        Throwable e = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (e instanceof ApiException api
+                && (api.code() == 429 || api.code() == 503
+                || "RESOURCE_EXHAUSTED".equals(api.status()) || "UNAVAILABLE".equals(api.status()))) {
+            return new AiThrottledException(retryDelay(api.message()), api.getMessage(), api);
+        }
+        return e;
+    }
+
+    /**
+     * Turns the API's answer that the Cloud Storage object a request names isn't there into
+     * AiFileNotFoundException, so the caller can upload it again.
+     */
+    static Throwable missingFile(Throwable error) {
+        Throwable e = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (e instanceof ApiException api && (api.code() == 404 || "NOT_FOUND".equals(api.status())
+                || String.valueOf(api.message()).contains("No such object"))) {
+            return new AiFileNotFoundException(api.getMessage(), api);
+        }
+        return e;
+    }
+
+    /**
+     * The SDK doesn't expose response headers, so Retry-After is read from the error body instead.
+     *
+     * @return The delay the server asked for, or null if it didn't give one.
+     */
+    static Duration retryDelay(String message) {
+        if (message == null) {
+            return null;
+        }
+        Matcher m = RETRY_DELAY.matcher(message);
+        return m.find() ? Duration.ofMillis((long) (Double.parseDouble(m.group(1)) * 1000)) : null;
+    }
+}
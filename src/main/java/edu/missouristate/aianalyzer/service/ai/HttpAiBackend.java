@@ -0,0 +1,199 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * A model service speaking AiStandInServer's small JSON protocol over HTTP, selected with ai.backend=http.
+ * Used to run the whole pipeline against the local stand-in for load tests and concurrency tuning.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.backend", havingValue = "http")
+public class HttpAiBackend implements AiBackend {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final URI generateUri;
+    private final Duration timeout;
+
+    public HttpAiBackend(@Value("${ai.http.url:http://127.0.0.1:8089}") String url,
+                         @Value("${ai.http.timeout-seconds:120}") int timeoutSeconds) {
+        this.generateUri = URI.create(url.replaceAll("/+$", "") + "/v1/generate");
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+    }
+
+    @Override
+    public CompletableFuture<String> generate(String prompt) {
+        return post(request(prompt));
+    }
+
+    /**
+     * Asks for the answer as newline-delimited JSON, one {"text": "..."} per piece, and hands each piece
+     * over as its line arrives.
+     */
+    @Override
+    public CompletableFuture<String> generateStream(String prompt, Consumer<String> onChunk) {
+        ObjectNode body = request(prompt);
+        body.put("stream", true);
+        HttpResponse.BodyHandler<String> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(new ChunkSubscriber(onChunk),
+                        ChunkSubscriber::text, StandardCharsets.UTF_8, "\n")
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        return send(body, handler).thenApply(response -> {
+            if (response.statusCode() == 200) {
+                return response.body();
+            }
+            return text(response);
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> generateKeyed(String prompt, List<String> keys) {
+        ObjectNode request = request(prompt);
+        ArrayNode array = request.putArray("keys");
+        keys.forEach(array::add);
+        return post(request);
+    }
+
+    @Override
+    public CompletableFuture<String> generateFromFile(String prompt, String fileUri, String mimeType) {
+        ObjectNode request = request(prompt);
+        request.put("fileUri", fileUri);
+        request.put("mimeType", mimeType);
+        return send(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            // The only thing a file request names that the backend can fail to find is the file.
+            if (response.statusCode() == 404) {
+                throw new AiFileNotFoundException("AI backend answered 404 for " + fileUri + ": " + response.body(), null);
+            }
+            return text(response);
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> generateFromBytes(String prompt, byte[] data, String mimeType) {
+        ObjectNode request = request(prompt);
+        request.put("data", data); // base64 in the JSON
+        request.put("mimeType", mimeType);
+        return post(request);
+    }
+
+    // --- Helper Methods ---
+
+    private static ObjectNode request(String prompt) {
+        ObjectNode request = JSON.createObjectNode();
+        request.put("prompt", prompt);
+        return request;
+    }
+
+    private CompletableFuture<String> post(ObjectNode body) {
+        return send(body, HttpResponse.BodyHandlers.ofString()).thenApply(HttpAiBackend::text);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(ObjectNode body, HttpResponse.BodyHandler<T> handler) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(generateUri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return http.sendAsync(request, handler);
+    }
+
+    private static String text(HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 429 || status == 503) {
+            Duration retryAfter = response.headers().firstValue("Retry-After")
+                    .map(HttpAiBackend::seconds)
+                    .orElse(null);
+            throw new AiThrottledException(retryAfter, "AI backend answered " + status + ": " + response.body(), null);
+        }
+        try {
+            if (status != 200) {
+                throw new IOException("AI backend answered " + status + ": " + response.body());
+            }
+            return JSON.readTree(response.body()).path("text").asText();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static Duration seconds(String value) {
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(value.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            return null; // an HTTP date; back off instead
+        }
+    }
+
+    /**
+     * Reads a streamed answer line by line, passing each piece on and keeping the whole.
+     */
+    private static final class ChunkSubscriber implements Flow.Subscriber<String> {
+
+        private final Consumer<String> onChunk;
+        private final StringBuilder text = new StringBuilder();
+
+        ChunkSubscriber(Consumer<String> onChunk) {
+            this.onChunk = onChunk;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.isBlank()) {
+                return;
+            }
+            String chunk;
+            try {
+                chunk = JSON.readTree(line).path("text").asText();
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            text.append(chunk);
+            onChunk.accept(chunk);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // the response future completes exceptionally with it
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        String text() {
+            return text.toString();
+        }
+    }
+}
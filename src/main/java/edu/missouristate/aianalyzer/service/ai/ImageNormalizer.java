@@ -0,0 +1,305 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+    Shrinks an image to what classifying it needs before it goes to the model. Counting faces doesn't
+    need a 24-megapixel original: the image is decoded at reduced resolution (ImageIO source subsampling,
+    so only every n-th pixel of every n-th row is ever held in memory), scaled to fit within
+    ai.image.max-dimension pixels, and re-encoded as a JPEG at ai.image.jpeg-quality. The result is
+    typically a few hundred KB, small enough to send inline with the request instead of uploading.
+    A JPEG's EXIF orientation is applied while scaling, since the re-encoded image carries no EXIF and
+    a phone photo would otherwise reach the model on its side.
+
+    The encoder writes straight into one of a small pool of reusable buffers, so a burst of images
+    doesn't allocate and grow a fresh multi-megabyte array for each; the finished JPEG is the only copy.
+    Formats ImageIO can't read (WebP, HEIC, CMYK JPEGs) are left to the caller, which converts them
+    first (see ReadImageService).
+ */
+@Slf4j
+@Service
+public class ImageNormalizer {
+
+    private static final int POOLED_BUFFERS = 8;
+    private static final int INITIAL_BUFFER_BYTES = 256 * 1024;
+    private static final int MAX_POOLED_BUFFER_BYTES = 4 * 1024 * 1024;
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+    private static final int APP1_MARKER = 0xE1;
+
+    /**
+     * An image ready for the model.
+     *
+     * @param jpeg        The re-encoded image.
+     * @param width       Its width in pixels.
+     * @param height      Its height in pixels.
+     * @param sourceBytes The size of the original file.
+     */
+    public record NormalizedImage(byte[] jpeg, int width, int height, long sourceBytes) {
+    }
+
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final BlockingQueue<Buffer> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    public ImageNormalizer(@Value("${ai.image.max-dimension:1024}") int maxDimension,
+                           @Value("${ai.image.jpeg-quality:0.85}") float jpegQuality) {
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * @param imagePath The image.
+     * @return The image as a JPEG within the maximum dimension, or empty if ImageIO can't decode this format.
+     * @throws IOException if the file can't be read.
+     */
+    public Optional<NormalizedImage> normalize(Path imagePath) throws IOException {
+        long size = Files.size(imagePath);
+        BufferedImage decoded;
+        int orientation;
+        try (ImageInputStream in = ImageIO.createImageInputStream(imagePath.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / maxDimension);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                decoded = reader.read(0, param);
+                orientation = "jpeg".equalsIgnoreCase(reader.getFormatName()) ? orientation(reader.getImageMetadata(0)) : 1;
+            } catch (IOException | RuntimeException e) {
+                // Color spaces ImageIO doesn't handle (CMYK, some ICC profiles) fail here rather than on opening.
+                log.debug("ImageIO could not decode {}: {}", imagePath, e.getMessage());
+                return Optional.empty();
+            } finally {
+                reader.dispose();
+            }
+        }
+        BufferedImage scaled = fit(decoded, orientation);
+        byte[] jpeg = encode(scaled);
+        log.debug("Normalized {}: {} bytes -> {}x{}, {} bytes", imagePath, size, scaled.getWidth(), scaled.getHeight(), jpeg.length);
+        return Optional.of(new NormalizedImage(jpeg, scaled.getWidth(), scaled.getHeight(), size));
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Scales the image to fit within maxDimension and turns it upright, drawn onto white, which also
+     * flattens transparency and palettes into the plain RGB the JPEG encoder needs.
+     *
+     * @param orientation The EXIF orientation, 1 (upright) to 8.
+     */
+    private BufferedImage fit(BufferedImage image, int orientation) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        boolean sideways = orientation >= 5;
+        BufferedImage rgb = new BufferedImage(sideways ? height : width, sideways ? width : height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            g.transform(upright(orientation, width, height));
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Maps an image of width x height, drawn at the origin, onto the upright canvas for an EXIF orientation.
+     */
+    private static AffineTransform upright(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);       // mirrored
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height); // upside down
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);      // mirrored upside down
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);            // mirrored, turned left
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);      // turned left, so rotate clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width); // mirrored, turned right
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);       // turned right, so rotate counterclockwise
+            default -> new AffineTransform();
+        };
+    }
+
+    /**
+     * Reads the orientation tag from a JPEG's EXIF (APP1) segment, which ImageIO passes through as an unknown marker.
+     *
+     * @return The orientation, or 1 if the image has none or it can't be read.
+     */
+    private static int orientation(IIOMetadata metadata) {
+        if (metadata == null) {
+            return 1;
+        }
+        Node markers = ((Element) metadata.getAsTree("javax_imageio_jpeg_image_1.0")).getElementsByTagName("markerSequence").item(0);
+        for (Node marker = markers == null ? null : markers.getFirstChild(); marker != null; marker = marker.getNextSibling()) {
+            if (marker instanceof IIOMetadataNode unknown && "unknown".equals(unknown.getNodeName())
+                    && String.valueOf(APP1_MARKER).equals(unknown.getAttribute("MarkerTag"))
+                    && unknown.getUserObject() instanceof byte[] app1) {
+                return exifOrientation(app1);
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Finds the orientation in the first IFD of an APP1 segment holding "Exif\0\0" and a TIFF header.
+     */
+    private static int exifOrientation(byte[] app1) {
+        if (app1.length < 14 || !new String(app1, 0, 4, StandardCharsets.US_ASCII).equals("Exif")) {
+            return 1;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(app1, 6, app1.length - 6).slice();
+        try {
+            tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN); // "II" or "MM"
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + 12 * i;
+                if ((tiff.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            log.debug("Ignoring truncated EXIF data: {}", e.getMessage());
+        }
+        return 1;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Buffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new Buffer();
+        }
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(buffer);
+            writer.write(null, new IIOImage(image, null, null), param);
+            return buffer.toByteArray();
+        } finally {
+            writer.dispose();
+            buffer.clear();
+            if (buffer.capacity() <= MAX_POOLED_BUFFER_BYTES) {
+                buffers.offer(buffer); // dropped if the pool is full
+            }
+        }
+    }
+
+    /**
+     * An in-memory ImageOutputStream the encoder writes into directly, whose grown array is kept between uses.
+     * It's never closed, since a closed ImageOutputStreamImpl can't be used again; clear() readies it instead.
+     */
+    private static final class Buffer extends ImageOutputStreamImpl {
+
+        private byte[] buf = new byte[INITIAL_BUFFER_BYTES];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            int end = grow(1);
+            buf[(int) streamPos] = (byte) b;
+            streamPos = end;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            int end = grow(len);
+            System.arraycopy(b, off, buf, (int) streamPos, len);
+            streamPos = end;
+        }
+
+        @Override
+        public int read() {
+            bitOffset = 0;
+            return streamPos < count ? buf[(int) streamPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            bitOffset = 0;
+            int n = (int) Math.min(len, count - streamPos);
+            if (n <= 0) {
+                return len == 0 ? 0 : -1;
+            }
+            System.arraycopy(buf, (int) streamPos, b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return count;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        void clear() {
+            count = 0;
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        /**
+         * Makes room for len bytes at the current position.
+         *
+         * @return The position after them.
+         */
+        private int grow(int len) {
+            int end = Math.addExact(Math.toIntExact(streamPos), len);
+            if (end > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(end, 2 * buf.length));
+            }
+            count = Math.max(count, end);
+            return end;
+        }
+    }
+}
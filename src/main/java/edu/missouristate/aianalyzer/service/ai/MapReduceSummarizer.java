@@ -0,0 +1,166 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.service.ai.AiQueryService.Priority;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+/*
+    Summarizes documents too large for one request, without uploading them anywhere: the extracted
+    text is cut into parts of ai.map-reduce.chunk-tokens as it streams out of the extractor, each part
+    is summarized on its own (map), and the part summaries are combined into the final answer (reduce).
+    Each part goes through PromptMinimizer on the way.
+
+    Parts are sent as soon as they're cut, so extraction and the model calls overlap; at most
+    ai.map-reduce.fan-out of one document's parts are in flight, and extraction waits for a free one,
+    which also bounds the text held in memory. Past ai.map-reduce.max-chunks parts the rest of the
+    document is left out. A document that fits in one part gets a plain summary request. A caller
+    that may stop waiting (the drive tree's selection) can have the remaining parts skipped.
+ */
+@Slf4j
+@Service
+public class MapReduceSummarizer {
+
+    private final AiQueryService aiQueryService;
+    private final ExtractionWorkerPool extractionWorkerPool;
+    private final PromptMinimizer promptMinimizer;
+    private final int chunkChars;
+    private final int fanOut;
+    private final int maxChunks;
+
+    public MapReduceSummarizer(AiQueryService aiQueryService,
+                               ExtractionWorkerPool extractionWorkerPool,
+                               PromptMinimizer promptMinimizer,
+                               @Value("${ai.map-reduce.chunk-tokens:12000}") int chunkTokens,
+                               @Value("${ai.map-reduce.fan-out:4}") int fanOut,
+                               @Value("${ai.map-reduce.max-chunks:32}") int maxChunks) {
+        this.aiQueryService = aiQueryService;
+        this.extractionWorkerPool = extractionWorkerPool;
+        this.promptMinimizer = promptMinimizer;
+        this.chunkChars = Math.max(1, chunkTokens) * BudgetedTextSink.CHARS_PER_TOKEN;
+        this.fanOut = Math.max(1, fanOut);
+        this.maxChunks = Math.max(1, maxChunks);
+    }
+
+    /**
+     * Extracts a document's text on the calling thread, sending parts off as they fill up.
+     *
+     * @param filePath The document.
+     * @param fileType Its type, as passed to ReadFileService.
+     * @param priority Where the model requests queue while the AI request limit is reached.
+     * @return A future completed with the AI's summary of the whole document.
+     */
+    public CompletableFuture<String> summarize(Path filePath, String fileType, Priority priority) {
+        return summarize(filePath, fileType, priority, () -> true);
+    }
+
+    /**
+     * Same as {@link #summarize(Path, String, Priority)} for a summary someone may stop waiting for:
+     * 'wanted' is asked before each part is sent, and once it says no, extraction stops, no further
+     * part or the combining request is sent, and the future fails with a CancellationException.
+     *
+     * @param wanted Whether the summary is still wanted; called on the calling thread.
+     */
+    public CompletableFuture<String> summarize(Path filePath, String fileType, Priority priority, BooleanSupplier wanted) {
+        ChunkingSink sink = new ChunkingSink(fileType, priority, wanted);
+        try {
+            extractionWorkerPool.extract(filePath, fileType, (int) Math.min(Integer.MAX_VALUE, (long) chunkChars * maxChunks), sink);
+        } catch (IOException | RuntimeException e) {
+            // Parts already sent still complete; nothing waits for them.
+            return CompletableFuture.failedFuture(e);
+        }
+        return sink.finish();
+    }
+
+    /**
+     * Cuts streamed text into parts, preferably at a line break, and sends each off to be summarized.
+     * A part is held back until the next one is cut, so a document that turns out to be a single
+     * part can be summarized directly.
+     */
+    private final class ChunkingSink implements TextSink {
+
+        private final String fileType;
+        private final Priority priority;
+        private final BooleanSupplier wanted;
+        private final Semaphore inFlight = new Semaphore(fanOut);
+        private final List<CompletableFuture<String>> summaries = new ArrayList<>();
+        private final StringBuilder buffer = new StringBuilder();
+        private String held;
+        private boolean full;
+        private boolean abandoned;
+
+        ChunkingSink(String fileType, Priority priority, BooleanSupplier wanted) {
+            this.fileType = fileType;
+            this.priority = priority;
+            this.wanted = wanted;
+        }
+
+        @Override
+        public boolean append(CharSequence chunk) {
+            buffer.append(chunk);
+            while (buffer.length() >= chunkChars) {
+                int cut = buffer.lastIndexOf("\n", chunkChars);
+                if (cut < chunkChars * 9 / 10) {
+                    cut = chunkChars;
+                }
+                String part = buffer.substring(0, cut);
+                buffer.delete(0, cut);
+                if (!wanted.getAsBoolean()) {
+                    abandoned = true;
+                    return false;
+                }
+                hold(part);
+                if (full) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        CompletableFuture<String> finish() {
+            if (abandoned || !wanted.getAsBoolean()) {
+                // Parts already sent still complete; nothing waits for them.
+                return CompletableFuture.failedFuture(new CancellationException("No longer wanted after " + summaries.size() + " parts"));
+            }
+            if (!full && !buffer.toString().isBlank()) {
+                hold(buffer.toString());
+            }
+            if (held == null) {
+                return CompletableFuture.completedFuture("The file contains no text.");
+            }
+            if (summaries.isEmpty()) {
+                return aiQueryService.activeResponseFromFileAsync(promptMinimizer.minimize(held, fileType), priority);
+            }
+            send(held);
+            return CompletableFuture.allOf(summaries.toArray(CompletableFuture[]::new))
+                    .thenCompose(done -> aiQueryService.combineSummariesAsync(
+                            summaries.stream().map(CompletableFuture::join).toList(), priority));
+        }
+
+        private void hold(String part) {
+            if (held != null) {
+                send(held);
+            }
+            held = part;
+            if (summaries.size() + 1 >= maxChunks) {
+                full = true;
+                log.debug("Summarizing only the first {} parts of a document.", maxChunks);
+            }
+        }
+
+        private void send(String part) {
+            inFlight.acquireUninterruptibly();
+            summaries.add(aiQueryService.summarizePartAsync(promptMinimizer.minimize(part, fileType), priority)
+                    .whenComplete((summary, error) -> inFlight.release()));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Extracts the text of PDF documents without holding them in memory, and in parallel for long ones.
+
+    Documents are opened from the file, and the scratch buffers PDFBox parses into are capped at
+    SCRATCH_MEMORY_BYTES per document; anything beyond that spills to a temp file, in the scratch run
+    directory once ExtractionWorkerPool has set it (see spillTo). Documents longer
+    than one range of PAGES_PER_TASK pages are split into ranges that the worker pool strips
+    concurrently (each worker opens its own PDDocument once, as they aren't thread-safe), and the
+    results are handed to the sink in page order. Only a few ranges run ahead of the sink, so memory stays
+    bounded and a sink that has enough text stops the remaining work.
+ */
+final class PdfTextExtractor {
+
+    static final int MAX_PAGES = 2_000;
+    static final int PAGES_PER_TASK = 16;
+    private static final long SCRATCH_MEMORY_BYTES = 16L * 1024 * 1024;
+    private static final int WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Ranges extracted ahead of the one the sink is waiting for.
+    private static final int WINDOW = WORKERS * 2;
+
+    // Shared by every extraction, so concurrent files don't each start their own threads.
+    private static final ExecutorService executor = Executors.newFixedThreadPool(WORKERS, runnable -> {
+        Thread t = new Thread(runnable, "PDF-Extractor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Where PDFBox's scratch buffers spill to; null for java.io.tmpdir.
+    private static volatile File spillDir;
+
+    private PdfTextExtractor() {
+    }
+
+    /**
+     * Has documents opened from now on spill their scratch buffers into a directory of their own
+     * (the scratch run directory), so they are cleaned up with it even if the app is killed.
+     *
+     * @param dir The directory, which must exist.
+     */
+    static void spillTo(Path dir) {
+        spillDir = dir.toFile();
+    }
+
+    /**
+     * Streams a PDF's text to a sink, one range of pages at a time, in page order.
+     * Pages after MAX_PAGES are left out.
+     *
+     * @param filePath The PDF file.
+     * @param sink     Receives the text.
+     * @return true if every page (up to MAX_PAGES) was extracted, false if the sink stopped it early.
+     * @throws IOException if the document cannot be opened or parsed.
+     */
+    static boolean extract(Path filePath, TextSink sink) throws IOException {
+        int totalPages;
+        try (PDDocument document = load(filePath)) {
+            totalPages = document.getNumberOfPages();
+            if (totalPages <= PAGES_PER_TASK) {
+                // Not worth a second parse of the document; strip it right here.
+                return sink.append(strip(document, 1, totalPages));
+            }
+        }
+        int pageCount = Math.min(totalPages, MAX_PAGES);
+        int ranges = (pageCount + PAGES_PER_TASK - 1) / PAGES_PER_TASK;
+
+        RangeJob job = new RangeJob(filePath, pageCount, ranges);
+        int workers = Math.min(WORKERS, ranges);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(job::work);
+        }
+        try {
+            for (int range = 0; range < ranges; range++) {
+                String text = job.results.get(range).get();
+                job.aheadPermits.release();
+                if (!sink.append(text)) {
+                    return false;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Could not extract PDF text: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting " + filePath);
+        } finally {
+            job.cancelled = true;
+            job.aheadPermits.release(workers); // wakes workers waiting for a permit, so they see the flag
+        }
+        return totalPages <= MAX_PAGES || sink.append("... (pages after " + MAX_PAGES + " of " + totalPages + " omitted)\n");
+    }
+
+    /**
+     * The ranges of one document, shared by the workers extracting it. Each worker opens the document
+     * once and then claims ranges in page order; a permit is needed per range, and the caller returns
+     * it once that range has gone to the sink, so workers stay at most WINDOW ranges ahead.
+     * A worker that stops early for any reason fails the ranges still open, so the caller never
+     * waits on a range nobody is extracting.
+     */
+    private static final class RangeJob {
+
+        private final Path filePath;
+        private final int pageCount;
+        private final List<CompletableFuture<String>> results;
+        private final AtomicInteger nextRange = new AtomicInteger();
+        private final Semaphore aheadPermits = new Semaphore(WINDOW);
+        private volatile boolean cancelled;
+
+        RangeJob(Path filePath, int pageCount, int ranges) {
+            this.filePath = filePath;
+            this.pageCount = pageCount;
+            this.results = new ArrayList<>(ranges);
+            for (int i = 0; i < ranges; i++) {
+                results.add(new CompletableFuture<>());
+            }
+        }
+
+        void work() {
+            if (cancelled) {
+                return; // queued behind other documents until the caller had already given up
+            }
+            boolean finished = false;
+            Throwable failure = null;
+            try (PDDocument document = load(filePath)) {
+                while (true) {
+                    aheadPermits.acquire();
+                    int range = nextRange.getAndIncrement();
+                    if (cancelled || range >= results.size()) {
+                        finished = true;
+                        return;
+                    }
+                    int first = range * PAGES_PER_TASK + 1;
+                    results.get(range).complete(strip(document, first, Math.min(pageCount, first + PAGES_PER_TASK - 1)));
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException("Interrupted while extracting " + filePath);
+            } finally {
+                if (!finished) {
+                    // Fails every range not extracted yet; the caller reports the first one it waits for.
+                    // Without a failure this is an Error on its way up, e.g. an OutOfMemoryError.
+                    Throwable cause = failure != null ? failure : new IOException("PDF extraction of " + filePath + " stopped");
+                    results.forEach(result -> result.completeExceptionally(cause));
+                }
+            }
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private static PDDocument load(Path filePath) throws IOException {
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(SCRATCH_MEMORY_BYTES);
+        File dir = spillDir;
+        if (dir != null) {
+            memory.setTempDir(dir);
+        }
+        return PDDocument.load(filePath.toFile(), memory);
+    }
+
+    private static String strip(PDDocument document, int first, int last) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(first);
+        stripper.setEndPage(last);
+        return stripper.getText(document);
+    }
+}
@@ -2,6 +2,8 @@ package edu.missouristate.aianalyzer.service.ai;
 
 
 import edu.missouristate.aianalyzer.model.FileInterpretation;
+import edu.missouristate.aianalyzer.service.ai.AiQueryService.Priority;
+import edu.missouristate.aianalyzer.service.database.ContentIndexService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -9,11 +11,18 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static edu.missouristate.aianalyzer.model.FileInterpretation.SUPPORTED_FILE_TYPES;
 import static edu.missouristate.aianalyzer.model.FileInterpretation.VIRUS_FILE_TYPES;
 import static edu.missouristate.aianalyzer.service.ai.ReadFileService.*;
-import static edu.missouristate.aianalyzer.service.ai.UploadFileService.uploadObject;
 
 /**
  * This service is responsible for processing files and interacting with an AI service for analysis.
@@ -25,10 +34,25 @@ import static edu.missouristate.aianalyzer.service.ai.UploadFileService.uploadOb
 public class ProcessFileService {
     //AI query service
     private final AiQueryService AiQueryService;
-    //Size of file
-    static long fileSize;
+    //Full-text search index fed with the extracted text and the AI's summary
+    private final ContentIndexService contentIndexService;
+    //Extracted text of files already parsed, keyed by content
+    private final ExtractedTextCache extractedTextCache;
+    //Packs the summary requests of small files together
+    private final SummaryBatcher summaryBatcher;
+    //Summarizes files too large for one request part by part
+    private final MapReduceSummarizer mapReduceSummarizer;
+    //Cuts extracted text down to what a prompt needs
+    private final PromptMinimizer promptMinimizer;
     //Max file size before entering into Google Cloud (8MB)
     static final int maxFileSize = 8 * 1024 * 1024; // 8MB
+    //Reads and prepares the files someone opened, off the caller's (UI) thread. One thread, so when
+    //the selection moves on quickly, files still waiting are skipped rather than read side by side.
+    private static final ExecutorService streamPreparer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable, "Summary-Preparer");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Determines whether to process the file as small or large based on its size and gets the AI response.
@@ -39,21 +63,94 @@ public class ProcessFileService {
      * @throws IOException If an error occurs during file processing.
      */
     public String processFileAIResponse(Path filePath, String fileType) throws IOException {
+        return processFileAIResponseAsync(filePath, fileType).join();
+    }
+
+    /**
+     * Non-blocking version of processFileAIResponse: the file is read on the calling thread, and the
+     * returned future completes when the AI answers, without a thread waiting for it.
+     *
+     * @param filePath   The path to the file to be processed.
+     * @param fileType   The type of file being processed.
+     * @return A future completed with the AI's response, or an error message; it never completes exceptionally.
+     */
+    public CompletableFuture<String> processFileAIResponseAsync(Path filePath, String fileType) {
+        return processFileAIResponseAsync(filePath, fileType, Priority.NORMAL);
+    }
+
+    /**
+     * @param filePath   The path to the file to be processed.
+     * @param fileType   The type of file being processed.
+     * @param priority   Where the AI request queues while the request limit is reached.
+     * @return A future completed with the AI's response, or an error message; it never completes exceptionally.
+     */
+    public CompletableFuture<String> processFileAIResponseAsync(Path filePath, String fileType, Priority priority) {
         if (!Files.exists(filePath)) {
-            return "File does not exist: " + filePath;
+            return CompletableFuture.completedFuture("File does not exist: " + filePath);
+        }
+        if (!SUPPORTED_FILE_TYPES.contains(fileType.toLowerCase())) {
+            return CompletableFuture.completedFuture("This file type cannot be processed: " + fileType);
         }
-        fileSize = filePath.toFile().length();
+        CompletableFuture<String> response = filePath.toFile().length() <= maxFileSize
+                ? processSmallFileAIResponse(filePath, fileType, priority)
+                : processLargeFileAIResponseAsync(filePath, fileType, priority, () -> true);
+        return response.exceptionally(e -> "Error processing file: " + unwrap(e).getMessage());
+    }
+
+    /**
+     * For a file someone has opened and is waiting on: the summary is handed over piece by piece as the model
+     * writes it, at high priority and without waiting for a batch. A file too large for one request is
+     * summarized part by part as usual, and its summary handed over in one piece; 'wanted' is checked
+     * between the parts too.
+     * Returns right away: the file is read, indexed and cut down on a background thread. If 'wanted' says
+     * the file is no longer needed (say, another one was selected) before or after that, no model request
+     * is made and the future fails with a CancellationException.
+     *
+     * @param filePath   The path to the file to be processed.
+     * @param fileType   The type of file being processed.
+     * @param onChunk    Called with each new piece of the summary, in order, on a background thread.
+     * @param wanted     Whether the summary is still wanted; called on the background thread.
+     * @return A future completed with the whole summary; unlike processFileAIResponseAsync it completes
+     *         exceptionally on failure, so an error message is never mistaken for a summary.
+     */
+    public CompletableFuture<String> streamFileAIResponseAsync(Path filePath, String fileType, Consumer<String> onChunk,
+                                                               BooleanSupplier wanted) {
+        return CompletableFuture.supplyAsync(() -> startStream(filePath, fileType, onChunk, wanted), streamPreparer)
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<String> startStream(Path filePath, String fileType, Consumer<String> onChunk, BooleanSupplier wanted) {
+        if (!wanted.getAsBoolean()) {
+            return CompletableFuture.failedFuture(new CancellationException("No longer wanted: " + filePath));
+        }
+        if (!Files.exists(filePath)) {
+            return CompletableFuture.failedFuture(new NoSuchFileException(filePath.toString()));
+        }
+        if (!SUPPORTED_FILE_TYPES.contains(fileType.toLowerCase())) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("This file type cannot be processed: " + fileType));
+        }
+        if (filePath.toFile().length() > maxFileSize) {
+            return processLargeFileAIResponseAsync(filePath, fileType, Priority.HIGH, wanted).thenApply(response -> {
+                onChunk.accept(response);
+                return response;
+            });
+        }
+        String fileContent;
         try {
-            if (fileSize <= maxFileSize && SUPPORTED_FILE_TYPES.contains(fileType.toLowerCase())) {
-                return processSmallFileAIResponse(filePath, fileType);
-            } else if (SUPPORTED_FILE_TYPES.contains(fileType.toLowerCase())) {
-                return processLargeFileAIResponse(filePath, fileType);
-            } else {
-                return "This file type cannot be processed: " + fileType;
-            }
+            fileContent = extractedTextCache.read(filePath, fileType);
         } catch (IOException e) {
-            return "Error processing file: " + e.getMessage();
+            return CompletableFuture.failedFuture(e);
         }
+        contentIndexService.indexText(filePath, fileContent);
+        String prompt = promptMinimizer.minimize(fileContent, fileType);
+        if (!wanted.getAsBoolean()) {
+            return CompletableFuture.failedFuture(new CancellationException("No longer wanted: " + filePath));
+        }
+        return AiQueryService.streamResponseFromFileAsync(prompt, Priority.HIGH, onChunk)
+                .thenApply(response -> {
+                    contentIndexService.indexSummary(filePath, response);
+                    return response;
+                });
     }
 
     /**
@@ -61,21 +158,28 @@ public class ProcessFileService {
      *
      * @param filePath   The path to the small file.
      * @param fileType   The type of file being processed.
-     * @return The AI's response as a String.
-     * @throws IOException If an error occurs while reading the file.
+     * @param priority   Where the AI request queues.
+     * @return A future completed with the AI's response.
      */
-    private String processSmallFileAIResponse(Path filePath, String fileType) throws IOException {
+    private CompletableFuture<String> processSmallFileAIResponse(Path filePath, String fileType, Priority priority) {
+        String fileContent;
         try {
-            String fileContent = ReadFileService.readFileAsString(filePath, fileType);
-            return AiQueryService.activeResponseFromFile(fileContent);
+            fileContent = extractedTextCache.read(filePath, fileType);
         } catch (IOException e) {
-            return "Error processing file: " + e.getMessage();
+            return CompletableFuture.failedFuture(e);
         }
+        contentIndexService.indexText(filePath, fileContent);
+        return summaryBatcher.summarize(promptMinimizer.minimize(fileContent, fileType), priority)
+                .thenApply(response -> {
+                    contentIndexService.indexSummary(filePath, response);
+                    return response;
+                });
     }
 
     /**
-     * Processes files larger than maxFileSize by reading them in sequential, memory-mapped chunks.
-     * It analyzes each chunk and can short-circuit if a non-"Safe" classification is found.
+     * Processes files larger than maxFileSize locally, part by part: the extracted text is summarized in
+     * chunks, concurrently, and the chunk summaries are combined (see MapReduceSummarizer).
+     * Tables are summarized from a sample of their rows instead.
      *
      * @param filePath   The path to the large file.
      * @return The normalized AI response, combining classification and description.
@@ -85,12 +189,37 @@ public class ProcessFileService {
         if (!Files.exists(filePath)) {
             return "File does not exist: " + filePath;
         }
-        try {
-            //uploadFileAsTxtOrPdf(Path.of("files" + filePath), fileType);
-            return AiQueryService.activeResponseFromLargeFile("gs://aianalyser/files" + filePath, readDocumentType(fileType));
-        } catch (IOException e) {
-            return "Error processing file: " + e.getMessage();
+        return processLargeFileAIResponseAsync(filePath, fileType, Priority.NORMAL, () -> true)
+                .exceptionally(e -> "Error processing file: " + unwrap(e).getMessage())
+                .join();
+    }
+
+    private CompletableFuture<String> processLargeFileAIResponseAsync(Path filePath, String fileType, Priority priority,
+                                                                     BooleanSupplier wanted) {
+        CompletableFuture<String> summary;
+        if (PromptMinimizer.isTabular(fileType)) {
+            String prompt;
+            try {
+                prompt = promptMinimizer.minimizeTable(filePath, fileType);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            if (!wanted.getAsBoolean()) {
+                return CompletableFuture.failedFuture(new CancellationException("No longer wanted: " + filePath));
+            }
+            summary = AiQueryService.activeResponseFromFileAsync(prompt, priority);
+        } else {
+            summary = mapReduceSummarizer.summarize(filePath, fileType, priority, wanted);
         }
+        return summary
+                .thenApply(response -> {
+                    contentIndexService.indexSummary(filePath, response);
+                    return response;
+                });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     /**
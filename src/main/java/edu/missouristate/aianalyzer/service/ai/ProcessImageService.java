@@ -1,46 +1,110 @@
 package edu.missouristate.aianalyzer.service.ai;
 
-import lombok.RequiredArgsConstructor;
+import edu.missouristate.aianalyzer.service.ai.ImageNormalizer.NormalizedImage;
 import org.im4java.core.IM4JavaException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import static edu.missouristate.aianalyzer.model.FileInterpretation.SUPPORTED_IMAGE_TYPES;
-
-import static edu.missouristate.aianalyzer.service.ai.ReadImageService.uploadJpgImage;
-import static edu.missouristate.aianalyzer.service.ai.UploadFileService.uploadObject;
+import static edu.missouristate.aianalyzer.service.ai.ReadImageService.convertToJpg;
 
 
+/**
+ * Gets the AI's category for an image. The image is shrunk and re-encoded in the JVM first (see
+ * ImageNormalizer) and, when the result is at most ai.image.max-inline-bytes, sent inline with the
+ * request; only larger results are uploaded for the model to read from Cloud Storage.
+ */
 @Service
-@RequiredArgsConstructor
 public class ProcessImageService {
     //AI query service
     private final AiQueryService AiQueryService;
+    //Uploads images too large to send inline
+    private final UploadFileService uploadFileService;
+    //Shrinks images to what classification needs
+    private final ImageNormalizer imageNormalizer;
+    //Where images are converted, away from the user's folders
+    private final ScratchSpace scratchSpace;
+    //Largest normalized image sent inline with the request
+    private final int maxInlineBytes;
+
+    public ProcessImageService(AiQueryService aiQueryService, UploadFileService uploadFileService, ImageNormalizer imageNormalizer,
+                               ScratchSpace scratchSpace, @Value("${ai.image.max-inline-bytes:4194304}") int maxInlineBytes) {
+        this.AiQueryService = aiQueryService;
+        this.uploadFileService = uploadFileService;
+        this.imageNormalizer = imageNormalizer;
+        this.scratchSpace = scratchSpace;
+        this.maxInlineBytes = maxInlineBytes;
+    }
 
     public String processImageAIResponse(Path filePath, String fileType) throws IOException {
+        return processImageAIResponseAsync(filePath, fileType).join();
+    }
+
+    /**
+     * Non-blocking version of processImageAIResponse: the image is normalized on the calling thread, and the
+     * returned future completes when the AI answers.
+     *
+     * @param filePath The path to the image.
+     * @param fileType The image's extension.
+     * @return A future completed with the AI's category, or an error message.
+     */
+    public CompletableFuture<String> processImageAIResponseAsync(Path filePath, String fileType) {
         if (!Files.exists(filePath)) {
-            return "File does not exist: " + filePath;
+            return CompletableFuture.completedFuture("File does not exist: " + filePath);
         }
+        CompletableFuture<String> response;
         try {
-            Path parentDir = filePath.getParent();
-            String newFileName = filePath.getFileName().toString().replaceFirst("\\.[^.]+$", ".jpg");
-            Path newFilePath = parentDir.resolve(newFileName).toAbsolutePath();
-
-            if (!SUPPORTED_IMAGE_TYPES.contains(fileType)) {
-                uploadJpgImage(String.valueOf(filePath));
-                return AiQueryService.respondWithImageCategory("gs://aianalyser/images" + newFilePath, "image/jpeg");
-            } else {
-                uploadObject("images" + filePath, String.valueOf(filePath));
-                return AiQueryService.respondWithImageCategory("gs://aianalyser/images" + filePath, ReadImageService.readImageType(fileType));
+            Optional<NormalizedImage> normalized = imageNormalizer.normalize(filePath);
+            if (normalized.isEmpty()) {
+                // A format ImageIO can't decode: convert it with ImageMagick, then shrink the result.
+                // The converted file is only needed until it's been read back, so it's deleted right away.
+                // A JPEG of a WebP or HEIC image is usually no larger than the original, so that's what's reserved.
+                try (ScratchSpace.ScratchFile converted = scratchSpace.create(".jpg", Files.size(filePath))) {
+                    convertToJpg(String.valueOf(filePath), converted.path());
+                    normalized = imageNormalizer.normalize(converted.path());
+                }
+            }
+            if (normalized.isEmpty()) {
+                return CompletableFuture.completedFuture("Error processing file: cannot decode image " + filePath);
             }
+            byte[] jpeg = normalized.get().jpeg();
+            response = jpeg.length <= maxInlineBytes
+                    ? AiQueryService.respondWithImageCategoryAsync(jpeg, "image/jpeg")
+                    : respondFromUpload(jpeg, true);
         } catch (IOException e) {
-            return "Error processing file: " + e.getMessage();
+            return CompletableFuture.completedFuture("Error processing file: " + e.getMessage());
         } catch (InterruptedException | IM4JavaException e) {
             throw new RuntimeException(e);
         }
+        return response.exceptionally(e -> "Error processing file: "
+                + unwrap(e).getMessage());
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Uploads the image and asks for its category by URI. If the model can't find the object (the bucket
+     * lost it after UploadFileService remembered it as uploaded), the object is forgotten, uploaded
+     * again and asked about once more.
+     */
+    private CompletableFuture<String> respondFromUpload(byte[] jpeg, boolean retryIfMissing) {
+        return uploadFileService.uploadAsync(jpeg, "image/jpeg").thenCompose(uri ->
+                AiQueryService.respondWithImageCategoryAsync(uri, "image/jpeg").exceptionallyCompose(e -> {
+                    if (!retryIfMissing || !(unwrap(e) instanceof AiFileNotFoundException)) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    uploadFileService.forget(uri);
+                    return respondFromUpload(jpeg, false);
+                }));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 }
@@ -0,0 +1,264 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Prepares extracted text for a prompt, so the model is only sent what a summary needs. Tokens drive
+    both the latency and the cost of a request, and raw file text wastes many of them:
+    - runs of spaces and tabs become one, trailing whitespace and runs of blank lines go (tables keep
+      every tab, since each one separates a cell and the columns would shift without it);
+    - control characters and undecodable bytes are dropped, and long runs of base64 or hex (embedded
+      images, keys, blobs) are replaced by a note of their length;
+    - tables (csv, xls, xlsx) are reduced to their header and a sample of rows (TabularSampler);
+    - what's left is cut at a line break to the type's token budget (ai.prompt.token-budgets),
+      measured with TokenEstimator.
+    The tokens before and after are counted, per document in the debug log and in total for the Metrics page.
+ */
+@Slf4j
+@Service
+public class PromptMinimizer {
+
+    private static final Set<String> TABULAR_TYPES = Set.of("csv", "xls", "xlsx");
+    private static final Set<String> WORKBOOK_TYPES = Set.of("xls", "xlsx");
+    private static final int HEAD_ROWS = 20;
+    private static final int SAMPLE_ROWS = 80;
+    private static final int MIN_ENCODED_RUN = 100;
+    private static final String DEFAULT_BUDGET = "default";
+
+    private final ExtractionWorkerPool extractionWorkerPool;
+    private final Map<String, Integer> tokenBudgets = new HashMap<>();
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong tokensBefore = new AtomicLong();
+    private final AtomicLong tokensAfter = new AtomicLong();
+
+    public PromptMinimizer(ExtractionWorkerPool extractionWorkerPool,
+                           @Value("${ai.prompt.token-budgets:default:16000}") String tokenBudgets) {
+        this.extractionWorkerPool = extractionWorkerPool;
+        for (String entry : tokenBudgets.split(",")) {
+            String[] typeAndBudget = entry.trim().split(":");
+            if (typeAndBudget.length != 2) {
+                throw new IllegalArgumentException("ai.prompt.token-budgets entries must look like type:tokens, got " + entry);
+            }
+            this.tokenBudgets.put(typeAndBudget[0].trim().toLowerCase(Locale.ROOT), Integer.parseInt(typeAndBudget[1].trim()));
+        }
+        this.tokenBudgets.putIfAbsent(DEFAULT_BUDGET, 16000);
+    }
+
+    /**
+     * @param text     A document's extracted text.
+     * @param fileType The document's type, which decides the token budget and whether rows are sampled.
+     * @return The text to put in the prompt.
+     */
+    public String minimize(String text, String fileType) {
+        String type = fileType.toLowerCase(Locale.ROOT);
+        String table = text;
+        if (TABULAR_TYPES.contains(type)) {
+            TabularSampler sampler = new TabularSampler(HEAD_ROWS, SAMPLE_ROWS, isWorkbook(type));
+            sampler.append(text);
+            table = sampler.toString();
+        }
+        return finish(table, type, TokenEstimator.estimate(text));
+    }
+
+    /**
+     * For tables too large to read whole: streams the file's rows through the sampler, so the prompt
+     * reflects the whole table while only the sample is held in memory. With isolated extraction the
+     * sampler runs in the worker, so only the sample comes back.
+     *
+     * @param filePath A csv, xls or xlsx file.
+     * @param fileType Its type.
+     * @return The text to put in the prompt.
+     * @throws IOException if the file can't be read or parsed.
+     */
+    public String minimizeTable(Path filePath, String fileType) throws IOException {
+        TabularSampler.Sample sample = extractionWorkerPool.sampleTable(filePath, fileType, HEAD_ROWS, SAMPLE_ROWS);
+        // Estimating the tokens of text that was never held is the one place the rough rule is used.
+        long before = sample.chars() / BudgetedTextSink.CHARS_PER_TOKEN;
+        return finish(sample.text(), fileType.toLowerCase(Locale.ROOT), before);
+    }
+
+    /**
+     * @return Whether rows of this type of file are sampled rather than all sent.
+     */
+    public static boolean isTabular(String fileType) {
+        return TABULAR_TYPES.contains(fileType.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return Whether this type of file is a spreadsheet, whose text has a heading line per sheet.
+     */
+    static boolean isWorkbook(String fileType) {
+        return WORKBOOK_TYPES.contains(fileType.toLowerCase(Locale.ROOT));
+    }
+
+    public long documents() {
+        return documents.get();
+    }
+
+    /**
+     * @return The estimated tokens of all documents before minimizing.
+     */
+    public long tokensBefore() {
+        return tokensBefore.get();
+    }
+
+    /**
+     * @return The estimated tokens of all documents after minimizing.
+     */
+    public long tokensAfter() {
+        return tokensAfter.get();
+    }
+
+    // --- Helper Methods ---
+
+    private String finish(String text, String type, long before) {
+        String cleaned = clean(text, TABULAR_TYPES.contains(type));
+        int budget = tokenBudgets.getOrDefault(type, tokenBudgets.get(DEFAULT_BUDGET));
+        String prompt = truncate(cleaned, budget);
+        int after = TokenEstimator.estimate(prompt);
+        documents.incrementAndGet();
+        tokensBefore.addAndGet(before);
+        tokensAfter.addAndGet(after);
+        log.debug("Prompt for a {} document: ~{} tokens -> ~{} tokens", type, before, after);
+        return prompt;
+    }
+
+    /**
+     * Collapses whitespace and drops binary-looking runs, line by line.
+     *
+     * @param keepTabs Whether tabs are cell separators, kept one for one (leading and repeated ones too).
+     */
+    private static String clean(String text, boolean keepTabs) {
+        StringBuilder out = new StringBuilder(text.length());
+        StringBuilder word = new StringBuilder();
+        int blankLines = 0;
+        int lineStart = 0;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : '\n';
+            if (c != '\n') {
+                continue;
+            }
+            int before = out.length();
+            int pendingSpace = 0; // 0 none, 1 space, 2 tab
+            for (int j = lineStart; j < i; j++) {
+                char ch = text.charAt(j);
+                if (ch == '\t' && keepTabs) {
+                    flushWord(word, out);
+                    out.append('\t');
+                    pendingSpace = 0;
+                } else if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\u00a0') {
+                    flushWord(word, out);
+                    pendingSpace = ch == '\t' || pendingSpace == 2 ? 2 : 1;
+                } else if (Character.isISOControl(ch) || ch == '\ufffd') {
+                    // undecodable bytes and control characters carry nothing a summary can use
+                } else {
+                    if (pendingSpace != 0 && word.isEmpty() && out.length() > before) {
+                        out.append(pendingSpace == 2 ? '\t' : ' ');
+                    }
+                    pendingSpace = 0;
+                    word.append(ch);
+                }
+            }
+            flushWord(word, out);
+            lineStart = i + 1;
+            if (out.length() == before) {
+                if (++blankLines == 1 && before > 0) {
+                    out.append('\n');
+                }
+            } else {
+                blankLines = 0;
+                out.append('\n');
+            }
+        }
+        while (!out.isEmpty() && out.charAt(out.length() - 1) == '\n') {
+            out.setLength(out.length() - 1);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends a word, with any long run of base64 or hex characters in it (say, a data URI or a quoted
+     * blob in JSON) replaced by a note of its length.
+     */
+    private static void flushWord(StringBuilder word, StringBuilder out) {
+        if (word.length() < MIN_ENCODED_RUN) {
+            out.append(word);
+            word.setLength(0);
+            return;
+        }
+        int runStart = 0;
+        for (int i = 0, n = word.length(); i <= n; i++) {
+            if (i < n && isEncodingChar(word.charAt(i))) {
+                continue;
+            }
+            if (i - runStart >= MIN_ENCODED_RUN && hasLettersAndDigits(word, runStart, i)) {
+                out.append("[").append(i - runStart).append(" characters of encoded data]");
+            } else {
+                out.append(word, runStart, i);
+            }
+            if (i < n) {
+                out.append(word.charAt(i));
+            }
+            runStart = i + 1;
+        }
+        word.setLength(0);
+    }
+
+    private static boolean isEncodingChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == '+' || c == '/' || c == '=' || c == '-' || c == '_';
+    }
+
+    /**
+     * Encoded data mixes letters and digits throughout; a long word or a line of dashes doesn't.
+     */
+    private static boolean hasLettersAndDigits(CharSequence word, int start, int end) {
+        int letters = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = word.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                letters++;
+            }
+        }
+        int length = end - start;
+        return letters > length / 10 && digits > length / 50;
+    }
+
+    private static String truncate(String text, int budget) {
+        int total = TokenEstimator.estimate(text);
+        if (total <= budget) {
+            return text;
+        }
+        int used = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int next = text.indexOf('\n', end);
+            next = next < 0 ? text.length() : next + 1;
+            int lineTokens = TokenEstimator.estimate(text.subSequence(end, next));
+            if (used + lineTokens > budget) {
+                if (end == 0) {
+                    // a single line over budget: cut it in proportion
+                    end = (int) ((long) (next - end) * budget / Math.max(1, lineTokens));
+                }
+                break;
+            }
+            used += lineTokens;
+            end = next;
+        }
+        return text.substring(0, end) + "\n[truncated: about " + budget + " of " + total + " tokens shown]";
+    }
+}
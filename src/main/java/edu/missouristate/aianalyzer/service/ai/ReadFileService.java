@@ -1,34 +1,56 @@
 package edu.missouristate.aianalyzer.service.ai;
 
 import edu.missouristate.aianalyzer.model.FileInterpretation;
-import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xslf.usermodel.XSLFShape;
 import org.apache.poi.xslf.usermodel.XSLFSlide;
 import org.apache.poi.xslf.usermodel.XSLFTextShape;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
-import static edu.missouristate.aianalyzer.service.ai.ReadImageService.changeExtension;
-import static edu.missouristate.aianalyzer.service.ai.ReadImageService.uploadJpgImage;
-import static edu.missouristate.aianalyzer.service.ai.UploadFileService.uploadObject;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
 
 @Service
 public class ReadFileService {
 
+    // Bump a type's version whenever its extractor's output changes, so ExtractedTextCache
+    // stops serving text extracted by the old code. Types not listed are at version 1.
+    private static final Map<String, Integer> EXTRACTOR_VERSIONS = Map.ofEntries(
+            // encoding detected, BOM skipped
+            Map.entry("txt", 2), Map.entry("md", 2), Map.entry("csv", 2), Map.entry("json", 2),
+            // decoded like other text files instead of read line by line
+            Map.entry("sql", 3),
+            // paragraphs and tables only, streamed
+            Map.entry("docx", 2),
+            // no longer trimmed at the end
+            Map.entry("ppt", 2), Map.entry("pptx", 2),
+            // cached formula results, formatted values, sheet names, caps; "[Sheet: name]" headings
+            Map.entry("xls", 3), Map.entry("xlsx", 3),
+            // page cap
+            Map.entry("pdf", 2));
+    private static final int TEXT_BUFFER_BYTES = 64 * 1024;
+
     /**
      * Reads a file as a string by automatically selecting
      * the appropriate extraction method based on file type.
@@ -39,20 +61,61 @@ public class ReadFileService {
      * @throws IOException if the file type is unsupported or cannot be read
      */
     public static String readFileAsString(Path filePath, String fileType) throws IOException {
+        return readFileAsString(filePath, fileType, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the beginning of a file as a string. Extraction stops once maxChars characters
+     * have been read, so memory use is bounded by the budget rather than by the file.
+     *
+     * @param filePath the path to the file to read
+     * @param fileType the type of the file (e.g., "pdf", "docx", "txt")
+     * @param maxChars the most characters to return
+     * @return the text content of the file, cut off after maxChars characters
+     * @throws IOException if the file type is unsupported or cannot be read
+     */
+    public static String readFileAsString(Path filePath, String fileType, int maxChars) throws IOException {
+        BudgetedTextSink sink = new BudgetedTextSink(maxChars);
+        extractText(filePath, fileType, sink);
+        return sink.toString();
+    }
+
+    /**
+     * Streams the text of a file to a sink as it is extracted: decoded buffers for text files,
+     * paragraphs for Word documents, rows for spreadsheets, slides and pages for presentations and PDFs.
+     * Extraction stops as soon as the sink returns false.
+     *
+     * @param filePath the path to the file to read
+     * @param fileType the type of the file (e.g., "pdf", "docx", "txt")
+     * @param sink     receives the text in document order
+     * @return true if the whole document was extracted, false if the sink stopped it early
+     * @throws IOException if the file type is unsupported or cannot be read
+     */
+    public static boolean extractText(Path filePath, String fileType, TextSink sink) throws IOException {
         Path path = Paths.get(filePath.toUri());
 
         return switch (fileType) {
-            case "txt", "md", "csv", "json" -> readFileAsString(path);
-            case "doc" -> readDocAsString(path);
-            case "docx" -> readDocxAsString(path);
-            case "xls", "xlsx" -> getExcelDataAsString(String.valueOf(filePath));
-            case "ppt", "pptx" -> getPptDataAsString(path);
-            case "pdf" -> readPdfAsString(path);
-            case "sql" -> readSqlAsString(filePath);
+            case "txt", "md", "csv", "json", "sql" -> extractPlainText(path, sink);
+            case "doc" -> extractDoc(path, sink);
+            case "docx" -> extractDocx(path, sink);
+            case "xls" -> extractXls(path, sink);
+            case "xlsx" -> extractXlsx(path, sink);
+            case "ppt", "pptx" -> extractPpt(path, sink);
+            case "pdf" -> PdfTextExtractor.extract(path, sink);
             default -> throw new IOException("Unsupported file type: " + fileType);
         };
     }
 
+    /**
+     * Returns the version of the extractor readFileAsString uses for a file type.
+     *
+     * @param fileType the type of the file (e.g., "pdf", "docx", "txt")
+     * @return the extractor version, part of the extracted-text cache key
+     */
+    public static int extractorVersion(String fileType) {
+        return EXTRACTOR_VERSIONS.getOrDefault(fileType, 1);
+    }
+
     public static String readDocumentType(String type) throws IOException {
         return switch (type.toLowerCase()) {
             case "txt", "md", "csv", "json", "sql" -> "text/plain";
@@ -64,120 +127,226 @@ public class ReadFileService {
     }
 
     /**
-     * Reads plain text-based files into a string.
+     * Extracts text from Excel files (.xls or .xlsx).
+     *
+     * @param filePath the path to the Excel file
+     * @return extracted cell data as a formatted string
+     * @throws IOException if the Excel file cannot be read or parsed
+     */
+    public static String getExcelDataAsString(String filePath) throws IOException {
+        return readFileAsString(Paths.get(filePath), filePath.toLowerCase().endsWith(".xls") ? "xls" : "xlsx");
+    }
+
+    /**
+     * Extracts text from PowerPoint presentations (.pptx or .ppt).
+     *
+     * @param filePath the path to the PowerPoint file
+     * @return extracted text from all slides
+     * @throws IOException if the PowerPoint file cannot be read
+     */
+    public static String getPptDataAsString(Path filePath) throws IOException {
+        return readFileAsString(filePath, "pptx");
+    }
+
+    /**
+     * Reads an SQL file and returns its full contents as a string,
+     * decoded in whatever encoding it was saved in.
      *
-     * @param filePath the path to a text, CSV, or JSON file
-     * @return the file content as a string
+     * @param filePath the path to the SQL file
+     * @return the complete SQL script as a string
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static String readSqlAsString(Path filePath) throws IOException {
+        return readFileAsString(filePath, "sql");
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Streams plain text-based files (text, CSV, JSON, SQL) through a decoder, one buffer at a time.
+     * The encoding is detected from the first buffer (BOM, UTF-16, UTF-8 or the legacy 8-bit encoding,
+     * see TextCharsetDetector), and bytes that don't decode become U+FFFD instead of failing the whole file.
+     *
+     * @param filePath the path to a text file
+     * @param sink     receives the decoded text
+     * @return true if the whole file was read
      * @throws IOException if the file cannot be read
      */
-    private static String readFileAsString(Path filePath) throws IOException {
-        return Files.readString(filePath);
+    private static boolean extractPlainText(Path filePath, TextSink sink) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(TEXT_BUFFER_BYTES);
+        CharBuffer chars = CharBuffer.allocate(TEXT_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // Fill the first buffer completely, so detection sees a full sample.
+            boolean endOfInput = false;
+            while (bytes.hasRemaining() && !endOfInput) {
+                endOfInput = channel.read(bytes) == -1;
+            }
+            bytes.flip();
+            TextCharsetDetector.Detection detection = TextCharsetDetector.detect(bytes);
+            bytes.position(bytes.position() + detection.bomLength());
+            CharsetDecoder decoder = detection.charset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+            while (true) {
+                decoder.decode(bytes, chars, endOfInput);
+                if (endOfInput) {
+                    decoder.flush(chars);
+                }
+                bytes.compact(); // keeps a multi-byte character split across reads for the next round
+                chars.flip();
+                if (chars.hasRemaining() && !sink.append(chars)) {
+                    return false;
+                }
+                chars.clear();
+                if (endOfInput) {
+                    return true;
+                }
+                endOfInput = channel.read(bytes) == -1;
+                bytes.flip();
+            }
+        }
     }
 
     /**
-     * Extracts text from Microsoft Word documents (.docx format).
+     * Extracts text from Microsoft Word documents (.docx format), one paragraph or table at a time.
+     * The package is opened from the file, so parts are read on demand rather than buffered up front.
      *
      * @param filePath the path to a DOCX file
-     * @return extracted text from the DOCX document
+     * @param sink     receives the text
+     * @return true if the whole document was read
      * @throws IOException if the file cannot be opened or parsed
      */
-    private static String readDocxAsString(Path filePath) throws IOException {
-        try (FileInputStream fis = new FileInputStream(filePath.toFile());
-             XWPFDocument doc = new XWPFDocument(fis);
-             XWPFWordExtractor extractor = new XWPFWordExtractor(doc)) {
-            return extractor.getText();
+    private static boolean extractDocx(Path filePath, TextSink sink) throws IOException {
+        try (XWPFDocument doc = new XWPFDocument(openPackage(filePath))) {
+            for (IBodyElement element : doc.getBodyElements()) {
+                String text = null;
+                if (element instanceof XWPFParagraph paragraph) {
+                    text = paragraph.getText();
+                } else if (element instanceof XWPFTable table) {
+                    text = table.getText();
+                }
+                if (text != null && !sink.append(text + "\n")) {
+                    return false;
+                }
+            }
         }
+        return true;
     }
 
     /**
      * Extracts text from legacy Microsoft Word documents (.doc format).
+     * HWPF always parses the whole document, so the text is handed over in one piece.
      *
      * @param filePath the path to a DOC file
-     * @return extracted text from the DOC document
+     * @param sink     receives the text
+     * @return true if the whole document was read
      * @throws IOException if the file cannot be opened or parsed
      */
-    private static String readDocAsString(Path filePath) throws IOException {
+    private static boolean extractDoc(Path filePath, TextSink sink) throws IOException {
         try (FileInputStream fis = new FileInputStream(filePath.toFile());
              HWPFDocument doc = new HWPFDocument(fis);
              WordExtractor extractor = new WordExtractor(doc)) {
-            return extractor.getText();
+            return sink.append(extractor.getText());
         }
     }
 
     /**
-     * Extracts text content from Excel files (.xls or .xlsx).
-     * Iterates through all sheets, rows, and cells, preserving tabular structure with tabs and newlines.
+     * Extracts text content from .xlsx workbooks with the streaming event model (see XlsxTextExtractor).
      *
      * @param filePath the path to the Excel file
-     * @return extracted cell data as a formatted string
+     * @param sink     receives each row
+     * @return true if the whole (sampled) workbook was read
      * @throws IOException if the Excel file cannot be read or parsed
      */
-    public static String getExcelDataAsString(String filePath) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        FileInputStream fis = new FileInputStream(filePath);
-        Workbook workbook = WorkbookFactory.create(fis);
-
-        // Iterate through each sheet
-        for (Sheet sheet : workbook) {
-            // Iterate through each row in the sheet
-            for (Row row : sheet) {
-                // Iterate through each cell in the row
-                for (Cell cell : row) {
-                    // Get cell value as a string, handling different cell types
-                    switch (cell.getCellType()) {
-                        case STRING:
-                            sb.append(cell.getStringCellValue());
-                            break;
-                        case NUMERIC:
-                            if (DateUtil.isCellDateFormatted(cell)) {
-                                sb.append(cell.getDateCellValue());
-                            } else {
-                                sb.append(cell.getNumericCellValue());
-                            }
-                            break;
-                        case BOOLEAN:
-                            sb.append(cell.getBooleanCellValue());
-                            break;
-                        case FORMULA:
-                            // Evaluate formula to get its result as a string
-                            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-                            CellValue cellValue = evaluator.evaluate(cell);
-                            sb.append(cellValue.getStringValue());
-                            break;
-                        case BLANK:
-                            sb.append(""); // Or handle as desired
-                            break;
-                        default:
-                            sb.append(cell.toString()); // Fallback for other types
+    private static boolean extractXlsx(Path filePath, TextSink sink) throws IOException {
+        try (OPCPackage pkg = openPackage(filePath)) {
+            return XlsxTextExtractor.extract(pkg, sink);
+        }
+    }
+
+    /**
+     * Extracts text content from legacy .xls workbooks, one row at a time, with the same sheet, row
+     * and cell caps as XlsxTextExtractor. Formula cells contribute their cached result.
+     * The format caps a sheet at 65536 rows, so the whole workbook is loaded, read-only, from the file.
+     *
+     * @param filePath the path to the Excel file
+     * @param sink     receives each row
+     * @return true if the whole (sampled) workbook was read
+     * @throws IOException if the Excel file cannot be read or parsed
+     */
+    private static boolean extractXls(Path filePath, TextSink sink) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(filePath.toFile(), null, true)) {
+            DataFormatter formatter = new DataFormatter();
+            int sheetCount = workbook.getNumberOfSheets();
+            int sampledSheets = Math.min(sheetCount, XlsxTextExtractor.MAX_SHEETS);
+            if (sheetCount > sampledSheets && !sink.append("[" + sampledSheets + " of " + sheetCount + " sheets]\n")) {
+                return false;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < sampledSheets; i++) {
+                Sheet sheet = workbook.getSheetAt((int) ((long) i * sheetCount / sampledSheets));
+                if (!sink.append(XlsxTextExtractor.sheetHeading(sheet.getSheetName()))) {
+                    return false;
+                }
+                int rowsRead = 0;
+                for (Row row : sheet) {
+                    if (rowsRead++ == XlsxTextExtractor.MAX_ROWS_PER_SHEET) {
+                        if (!sink.append("... (rows after " + XlsxTextExtractor.MAX_ROWS_PER_SHEET + " omitted)\n")) {
+                            return false;
+                        }
+                        break;
+                    }
+                    sb.setLength(0);
+                    int lastColumn = Math.min(row.getLastCellNum(), XlsxTextExtractor.MAX_CELLS_PER_ROW);
+                    for (int column = 0; column < lastColumn; column++) {
+                        Cell cell = row.getCell(column);
+                        if (cell != null) {
+                            sb.append(cellText(cell, formatter));
+                        }
+                        sb.append("\t"); // Use tab as a delimiter between cells
+                    }
+                    sb.append("\n"); // Newline after each row
+                    if (!sink.append(sb)) {
+                        return false;
                     }
-                    sb.append("\t"); // Use tab as a delimiter between cells
                 }
-                sb.append("\n"); // Newline after each row
             }
         }
+        return true;
+    }
 
-        workbook.close();
-        fis.close();
-        return sb.toString();
+    /**
+     * Formats a cell the way Excel displays it. Formula cells use the result cached in the file.
+     */
+    private static String cellText(Cell cell, DataFormatter formatter) {
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        return switch (type) {
+            case STRING -> cell.getStringCellValue();
+            case NUMERIC -> formatter.formatRawCellContents(cell.getNumericCellValue(),
+                    cell.getCellStyle().getDataFormat(), cell.getCellStyle().getDataFormatString());
+            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
+            case ERROR -> FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default -> "";
+        };
     }
 
     /**
-     * Extracts text from PowerPoint presentations (.pptx or .ppt).
-     * Reads text from all slides and text boxes, concatenating content with line breaks.
+     * Extracts text from PowerPoint presentations (.pptx or .ppt), one slide at a time.
+     * Reads text from all text boxes of a slide, one line per box.
      *
      * @param filePath the path to the PowerPoint file
-     * @return extracted text from all slides
+     * @param sink     receives the text of each slide
+     * @return true if the whole presentation was read
      * @throws IOException if the PowerPoint file cannot be read
      */
-    public static String getPptDataAsString(Path filePath) throws IOException {
-        StringBuilder textBuilder = new StringBuilder();
-        try (FileInputStream fis = new FileInputStream(String.valueOf(filePath));
-             XMLSlideShow ppt = new XMLSlideShow(fis)) {
-
+    private static boolean extractPpt(Path filePath, TextSink sink) throws IOException {
+        try (XMLSlideShow ppt = new XMLSlideShow(openPackage(filePath))) {
+            StringBuilder textBuilder = new StringBuilder();
             for (XSLFSlide slide : ppt.getSlides()) {
+                textBuilder.setLength(0);
                 for (XSLFShape shape : slide.getShapes()) {
-                    if (shape instanceof XSLFTextShape) {
-                        XSLFTextShape textShape = (XSLFTextShape) shape;
+                    if (shape instanceof XSLFTextShape textShape) {
                         String text = textShape.getText();
                         if (text != null && !text.trim().isEmpty()) {
                             textBuilder.append(text).append("\n"); // Add new line for separation
@@ -185,44 +354,22 @@ public class ReadFileService {
                     }
                     // You might need to handle other shape types like tables if they contain text
                 }
+                if (!sink.append(textBuilder)) {
+                    return false;
+                }
             }
         }
-        return textBuilder.toString().trim(); // Remove trailing newlines
+        return true;
     }
 
     /**
-     * Extracts text from PDF documents.
-     * Uses Apache PDFBox to parse text content from each page.
-     *
-     * @param filePath the path to the PDF file
-     * @return the extracted text from the PDF
-     * @throws IOException if the file cannot be opened or parsed
+     * Opens an Office Open XML package read-only, straight from the file.
      */
-    private static String readPdfAsString(Path filePath) throws IOException {
-        try (var inputStream = Files.newInputStream(filePath);
-             var document = PDDocument.load(inputStream)) {
-
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
-        }
-    }
-
-    /**
-     * Reads an SQL file and returns its full contents as a string.
-     * Uses a buffered reader to read the file line by line and preserve formatting.
-     *
-     * @param filePath the path to the SQL file
-     * @return the complete SQL script as a string
-     * @throws IOException if the file cannot be opened or read
-     */
-    public static String readSqlAsString(Path filePath) throws IOException {
-        StringBuilder sqlContent = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(String.valueOf(filePath)))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sqlContent.append(line).append("\n");
-            }
+    private static OPCPackage openPackage(Path filePath) throws IOException {
+        try {
+            return OPCPackage.open(filePath.toFile(), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Not a valid Office document: " + filePath, e);
         }
-        return sqlContent.toString();
     }
 }
@@ -18,7 +18,6 @@ import java.util.Locale;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
-import static edu.missouristate.aianalyzer.service.ai.UploadFileService.uploadObject;
 
 @Service
 @RequiredArgsConstructor
@@ -38,29 +37,24 @@ public class ReadImageService {
         };
     }
 
-    public static void uploadJpgImage(String inputFilePath) throws IOException, InterruptedException, IM4JavaException {
+    /**
+     * Converts an image ImageIO can't read to JPEG with ImageMagick.
+     *
+     * @param inputFilePath The image.
+     * @param outputFile    Where to write the JPEG: a ScratchSpace file, never a path next to the original,
+     *                      where the scanners would pick it up as a new image.
+     */
+    public static void convertToJpg(String inputFilePath, Path outputFile) throws IOException, InterruptedException, IM4JavaException {
         ensureImageMagickInstalled();
 
         ProcessStarter.setGlobalSearchPath(magickPath.getParent().toString());
 
-        File outputFile = changeExtension(new File(inputFilePath), ".jpg");
-
         IMOperation op = new IMOperation();
         op.addImage(inputFilePath);
-        op.addImage(outputFile.getAbsolutePath());
+        op.addImage(outputFile.toAbsolutePath().toString());
 
         ConvertCmd convert = new ConvertCmd(false);
         convert.run(op);
-
-        System.out.println("Converted to " + outputFile.getAbsolutePath());
-
-        uploadObject("images" + outputFile.getAbsolutePath(), outputFile.getAbsolutePath());
-    }
-
-    public static File changeExtension(File f, String newExtension) {
-        int i = f.getName().lastIndexOf('.');
-        String name = f.getName().substring(0,i);
-        return new File(f.getParent(), name + newExtension);
     }
 
     /**
@@ -0,0 +1,198 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+    A managed place for the files the app makes along the way, such as images converted for the model,
+    so nothing is ever written next to the user's files. Writing there used to pollute their folders and,
+    since the output had an extension the scanners look for, made the watcher queue the app's own output
+    for processing again. The scanners skip this directory (see ScanExclusions).
+
+    - It lives in scratch.dir, by default under the system temp directory, which is RAM-backed (tmpfs) on
+      many Linux systems; pointing it at /dev/shm or another RAM disk keeps conversions off the disk.
+    - Each run works in its own run-<pid> directory. Those of runs no longer alive (a crash, a kill) are
+      deleted at startup, the run's own at shutdown.
+    - Files are handed out as ScratchFile and deleted when it's closed, i.e. as soon as the work that
+      needed them completes.
+    - At most scratch.max-bytes are in use at once. A file is created with the size it's expected to
+      reach, which is reserved right away, so files created together but not written yet can't overrun
+      the cap between them; creating one that doesn't fit waits for others to be closed, for up to
+      scratch.wait-seconds, and then fails. A file counts as the larger of its reservation and its actual
+      size, so one that outgrows its estimate can still take the total over the cap until it's closed.
+      A file larger than the whole cap is allowed when nothing else is open, rather than never.
+ */
+@Slf4j
+@Service
+public class ScratchSpace {
+
+    private static final String RUN_PREFIX = "run-";
+
+    private final Path root;
+    private final long maxBytes;
+    private final long waitMillis;
+    private final AtomicLong names = new AtomicLong();
+    private final Set<ScratchFile> open = new HashSet<>(); // guarded by 'this'
+    private Path runDir;
+
+    public ScratchSpace(@Value("${scratch.dir:${java.io.tmpdir}/aianalyzer-scratch}") String dir,
+                        @Value("${scratch.max-bytes:268435456}") long maxBytes,
+                        @Value("${scratch.wait-seconds:60}") int waitSeconds) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.waitMillis = waitSeconds * 1000L;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(root);
+        int removed = 0;
+        try (DirectoryStream<Path> runs = Files.newDirectoryStream(root, RUN_PREFIX + "*")) {
+            for (Path run : runs) {
+                if (!isAlive(run)) {
+                    deleteRecursively(run);
+                    removed++;
+                }
+            }
+        }
+        runDir = root.resolve(RUN_PREFIX + ProcessHandle.current().pid());
+        deleteRecursively(runDir); // left by an earlier run that had the same pid
+        Files.createDirectories(runDir);
+        log.info("Scratch space at {} (at most {} MB); removed {} directories of earlier runs.", runDir, maxBytes / (1024 * 1024), removed);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        open.clear();
+        deleteRecursively(runDir);
+    }
+
+    /**
+     * @return The directory all scratch files are under, including other runs'.
+     */
+    public Path root() {
+        return root;
+    }
+
+    /**
+     * @return This run's directory: deleted at shutdown, or at the next startup if this run dies first.
+     */
+    public Path runDir() {
+        return runDir;
+    }
+
+    /**
+     * Reserves a name and space for a new scratch file; the caller creates and writes the file itself.
+     * Close it (try-with-resources) once the file isn't needed any more.
+     *
+     * @param suffix        The file's extension with its dot, e.g. ".jpg", for tools that go by it.
+     * @param expectedBytes How large the file is expected to get, reserved until it's closed.
+     * @return The scratch file.
+     * @throws IOException if the space doesn't free up within scratch.wait-seconds.
+     */
+    public synchronized ScratchFile create(String suffix, long expectedBytes) throws IOException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        long used;
+        while (!open.isEmpty() && (used = usedBytes()) + expectedBytes > maxBytes) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Scratch space " + runDir + " is full: " + used + " of " + maxBytes
+                        + " bytes in use, " + expectedBytes + " more needed");
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for scratch space", e);
+            }
+        }
+        ScratchFile file = new ScratchFile(runDir.resolve(names.incrementAndGet() + suffix), expectedBytes);
+        open.add(file);
+        return file;
+    }
+
+    /**
+     * @return The bytes held or reserved by scratch files not yet closed.
+     */
+    public synchronized long usedBytes() {
+        long used = 0;
+        for (ScratchFile file : open) {
+            long size;
+            try {
+                size = Files.size(file.path());
+            } catch (IOException e) {
+                size = 0; // not written yet
+            }
+            used += Math.max(file.reserved, size);
+        }
+        return used;
+    }
+
+    // --- Helper Methods ---
+
+    private synchronized void release(ScratchFile file) {
+        open.remove(file);
+        notifyAll();
+    }
+
+    private static boolean isAlive(Path run) {
+        try {
+            long pid = Long.parseLong(run.getFileName().toString().substring(RUN_PREFIX.length()));
+            return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * A file in the scratch space, deleted when closed.
+     */
+    public final class ScratchFile implements AutoCloseable {
+
+        private final Path path;
+        private final long reserved;
+
+        private ScratchFile(Path path, long reserved) {
+            this.path = path;
+            this.reserved = reserved;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                Files.deleteIfExists(path);
+            } finally {
+                release(this);
+            }
+        }
+    }
+}
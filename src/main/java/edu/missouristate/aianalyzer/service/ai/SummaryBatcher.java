@@ -0,0 +1,182 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.service.ai.AiQueryService.Priority;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Packs the summary requests of small files into shared model requests. A folder of short notes,
+    CSVs and JSON otherwise costs one full round trip per file, and for files this small the request
+    overhead, not the model, sets the pace.
+
+    A file whose text is at most ai.batch.max-file-chars joins the open batch of its priority. The batch
+    is sent once it holds ai.batch.max-files files or ai.batch.max-tokens of text, or ai.batch.linger-millis
+    after its first file arrived, whichever comes first. The answer is a JSON object keyed by per-batch
+    ids (see AiQueryService.activeResponsesFromFilesAsync). If it can't be parsed, or leaves a file out,
+    those files fall back to a request of their own, so batching never costs a file its summary.
+    A request that fails outright (throttled past its retries, or a transport error) fails every file
+    in the batch instead: sending them one by one would only multiply the load that failed it.
+ */
+@Slf4j
+@Service
+public class SummaryBatcher {
+
+    private final AiQueryService aiQueryService;
+    private final boolean enabled;
+    private final int maxFiles;
+    private final int maxBatchChars;
+    private final int maxFileChars;
+    private final long lingerMillis;
+
+    // Guarded by 'this'.
+    private final Map<Priority, Batch> open = new EnumMap<>(Priority.class);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread t = new Thread(runnable, "AI-Batcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SummaryBatcher(AiQueryService aiQueryService,
+                          @Value("${ai.batch.enabled:true}") boolean enabled,
+                          @Value("${ai.batch.max-files:16}") int maxFiles,
+                          @Value("${ai.batch.max-tokens:32000}") int maxTokens,
+                          @Value("${ai.batch.max-file-chars:16000}") int maxFileChars,
+                          @Value("${ai.batch.linger-millis:50}") long lingerMillis) {
+        this.aiQueryService = aiQueryService;
+        this.enabled = enabled;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.maxBatchChars = Math.max(1, maxTokens) * BudgetedTextSink.CHARS_PER_TOKEN;
+        this.maxFileChars = maxFileChars;
+        this.lingerMillis = lingerMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Summarizes a file's text, in a batch with other small files when it's small enough.
+     *
+     * @param text     The file's extracted text.
+     * @param priority Where the request queues while the AI request limit is reached.
+     * @return A future completed with the AI's summary.
+     */
+    public CompletableFuture<String> summarize(String text, Priority priority) {
+        if (!enabled || text.length() > maxFileChars) {
+            return aiQueryService.activeResponseFromFileAsync(text, priority);
+        }
+        Entry entry = new Entry(text);
+        List<Batch> full = new ArrayList<>(2);
+        synchronized (this) {
+            Batch batch = open.get(priority);
+            if (batch != null && batch.chars + text.length() > maxBatchChars) {
+                full.add(batch);
+                open.remove(priority);
+                batch = null;
+            }
+            if (batch == null) {
+                Batch created = new Batch(priority);
+                open.put(priority, created);
+                timer.schedule(() -> flushIfOpen(created), lingerMillis, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.add(entry);
+            if (batch.entries.size() >= maxFiles || batch.chars >= maxBatchChars) {
+                full.add(batch);
+                open.remove(priority);
+            }
+        }
+        full.forEach(this::send);
+        return entry.result;
+    }
+
+    // --- Helper Methods ---
+
+    private void flushIfOpen(Batch batch) {
+        synchronized (this) {
+            if (open.get(batch.priority) != batch) {
+                return; // already sent because it filled up
+            }
+            open.remove(batch.priority);
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        if (batch.entries.size() == 1) {
+            single(batch.entries.values().iterator().next(), batch.priority);
+            return;
+        }
+        Map<String, String> files = new LinkedHashMap<>();
+        batch.entries.forEach((id, entry) -> files.put(id, entry.text));
+        aiQueryService.activeResponsesFromFilesAsync(files, batch.priority).whenComplete((summaries, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.debug("Batch of {} summaries failed: {}", files.size(), cause.getMessage());
+                batch.entries.values().forEach(entry -> entry.result.completeExceptionally(cause));
+                return;
+            }
+            batch.entries.forEach((id, entry) -> {
+                String summary = summaries.get(id);
+                if (summary == null || summary.isBlank()) {
+                    single(entry, batch.priority);
+                } else {
+                    entry.result.complete(summary.strip());
+                }
+            });
+        });
+    }
+
+    private void single(Entry entry, Priority priority) {
+        aiQueryService.activeResponseFromFileAsync(entry.text, priority).whenComplete((summary, error) -> {
+            if (error != null) {
+                entry.result.completeExceptionally(error);
+            } else {
+                entry.result.complete(summary);
+            }
+        });
+    }
+
+    private static final class Entry {
+
+        private final String text;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Entry(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Files waiting to be sent together, by their id within the batch.
+     */
+    private static final class Batch {
+
+        private final Priority priority;
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+        private int chars;
+
+        Batch(Priority priority) {
+            this.priority = priority;
+        }
+
+        void add(Entry entry) {
+            entries.put("f" + (entries.size() + 1), entry);
+            chars += entry.text.length();
+        }
+    }
+}
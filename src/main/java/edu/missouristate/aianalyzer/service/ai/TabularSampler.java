@@ -0,0 +1,172 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/*
+    A TextSink that reduces the rows of a table (CSV, or a spreadsheet as XlsxTextExtractor writes it)
+    to a representative sample, in one pass and in memory bounded by the sample size, however long the
+    table is. A summary needs to know what the columns are and what the rows look like, not every row.
+
+    Kept: the header row; in a workbook, each sheet's heading line (see XlsxTextExtractor.sheetHeading)
+    and the row after it (the sheet's header); the first
+    HEAD_ROWS rows; and a uniform random sample (reservoir sampling, with a fixed seed so the same file
+    always gives the same prompt) of the rows after those. A row identical to the one before it is only
+    counted. The kept lines come out in their original order, under a note saying how many rows there were.
+ */
+final class TabularSampler implements TextSink {
+
+    private static final int MAX_LINE_CHARS = 2_000;
+    private static final int MAX_SECTIONS = 64;
+    private static final long SEED = 42;
+
+    private record Line(long index, String text) {
+    }
+
+    /**
+     * A sampled table.
+     *
+     * @param text  The kept lines, as toString() gives them.
+     * @param chars The number of characters the whole table had.
+     */
+    record Sample(String text, long chars) {
+    }
+
+    private final int headRows;
+    private final int sampleRows;
+    private final boolean workbook;
+    private final Random random = new Random(SEED);
+    private final List<Line> kept = new ArrayList<>();
+    private final Line[] reservoir;
+    private final StringBuilder partial = new StringBuilder();
+
+    private long lineIndex;
+    private long rows;
+    private long sampledFrom;
+    private long repeats;
+    private long chars;
+    private int sections;
+    private boolean headerNext = true;
+    private String previous;
+
+    /**
+     * @param headRows   Rows kept from the top of the table.
+     * @param sampleRows Rows sampled from the rest.
+     * @param workbook   Whether the text is a spreadsheet's, with sheet headings; a CSV has none.
+     */
+    TabularSampler(int headRows, int sampleRows, boolean workbook) {
+        this.headRows = headRows;
+        this.sampleRows = sampleRows;
+        this.workbook = workbook;
+        this.reservoir = new Line[sampleRows];
+    }
+
+    @Override
+    public boolean append(CharSequence chunk) {
+        chars += chunk.length();
+        int start = 0;
+        for (int i = 0, n = chunk.length(); i < n; i++) {
+            if (chunk.charAt(i) == '\n') {
+                partial.append(chunk, start, i);
+                line(partial.toString());
+                partial.setLength(0);
+                start = i + 1;
+            }
+        }
+        if (partial.length() < MAX_LINE_CHARS) {
+            partial.append(chunk, start, Math.min(chunk.length(), start + MAX_LINE_CHARS - partial.length()));
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of characters seen.
+     */
+    long chars() {
+        return chars;
+    }
+
+    /**
+     * @return The sampled table and the size of the whole one.
+     */
+    Sample sample() {
+        return new Sample(toString(), chars);
+    }
+
+    /**
+     * @return The sampled table.
+     */
+    @Override
+    public String toString() {
+        if (!partial.isEmpty()) {
+            line(partial.toString());
+            partial.setLength(0);
+        }
+        List<Line> lines = new ArrayList<>(kept);
+        for (Line line : reservoir) {
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+        lines.sort(Comparator.comparingLong(Line::index));
+        StringBuilder out = new StringBuilder();
+        if (sampledFrom > sampleRows || repeats > 0) {
+            out.append("[").append(rows).append(" rows; showing the first ").append(Math.min(rows, headRows))
+                    .append(" and a sample of ").append(Math.min(sampledFrom, sampleRows)).append(" of the rest");
+            if (repeats > 0) {
+                out.append("; ").append(repeats).append(" repeated rows left out");
+            }
+            out.append("]\n");
+        }
+        for (Line line : lines) {
+            out.append(line.text()).append('\n');
+        }
+        return out.toString();
+    }
+
+    // --- Helper Methods ---
+
+    private void line(String text) {
+        if (text.length() > MAX_LINE_CHARS) {
+            text = text.substring(0, MAX_LINE_CHARS);
+        }
+        long index = lineIndex++;
+        if (text.isBlank()) {
+            return;
+        }
+        if (workbook && text.startsWith(XlsxTextExtractor.SHEET_MARKER) && sections < MAX_SECTIONS) {
+            sections++;
+            kept.add(new Line(index, text));
+            headerNext = true;
+            previous = null;
+            return;
+        }
+        if (headerNext) {
+            kept.add(new Line(index, text));
+            headerNext = false;
+            previous = text;
+            return;
+        }
+        if (text.equals(previous)) {
+            repeats++;
+            return;
+        }
+        previous = text;
+        rows++;
+        if (rows <= headRows) {
+            kept.add(new Line(index, text));
+            return;
+        }
+        long seen = ++sampledFrom;
+        if (seen <= sampleRows) {
+            reservoir[(int) seen - 1] = new Line(index, text);
+        } else {
+            long slot = (long) (random.nextDouble() * seen);
+            if (slot < sampleRows) {
+                reservoir[(int) slot] = new Line(index, text);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/*
+    Guesses the encoding of a plain-text file from its first bytes, so ReadFileService can decode
+    files that aren't UTF-8 instead of failing on them (and having ErrorRetryWorker retry them forever).
+
+    In order: a byte order mark decides; a sample where every other byte is zero is UTF-16 without
+    a BOM; a sample that decodes as UTF-8 is UTF-8 (plain ASCII included); anything else is taken to be
+    in the legacy 8-bit encoding: the platform's, or windows-1252 where the platform default is UTF-8 or ASCII.
+ */
+final class TextCharsetDetector {
+
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    /**
+     * @param charset   The encoding to decode the file with.
+     * @param bomLength The number of leading bytes that are a byte order mark, to skip.
+     */
+    record Detection(Charset charset, int bomLength) {
+    }
+
+    private TextCharsetDetector() {
+    }
+
+    /**
+     * @param sample The first bytes of the file, between position and limit; not consumed.
+     * @return The detected encoding.
+     */
+    static Detection detect(ByteBuffer sample) {
+        ByteBuffer bytes = sample.duplicate();
+        int n = bytes.remaining();
+        int p = bytes.position();
+        if (n >= 3 && bytes.get(p) == (byte) 0xEF && bytes.get(p + 1) == (byte) 0xBB && bytes.get(p + 2) == (byte) 0xBF) {
+            return new Detection(StandardCharsets.UTF_8, 3);
+        }
+        if (n >= 2 && bytes.get(p) == (byte) 0xFE && bytes.get(p + 1) == (byte) 0xFF) {
+            return new Detection(StandardCharsets.UTF_16BE, 2);
+        }
+        if (n >= 2 && bytes.get(p) == (byte) 0xFF && bytes.get(p + 1) == (byte) 0xFE) {
+            return new Detection(StandardCharsets.UTF_16LE, 2);
+        }
+
+        // UTF-16 text in Latin scripts has a zero high byte in nearly every character.
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i + 1 < n; i += 2) {
+            if (bytes.get(p + i) == 0) {
+                evenZeros++;
+            }
+            if (bytes.get(p + i + 1) == 0) {
+                oddZeros++;
+            }
+        }
+        int pairs = n / 2;
+        if (pairs >= 2) {
+            if (evenZeros > pairs * 0.3 && oddZeros < pairs * 0.05) {
+                return new Detection(StandardCharsets.UTF_16BE, 0);
+            }
+            if (oddZeros > pairs * 0.3 && evenZeros < pairs * 0.05) {
+                return new Detection(StandardCharsets.UTF_16LE, 0);
+            }
+        }
+
+        return new Detection(isUtf8(bytes) ? StandardCharsets.UTF_8 : legacyCharset(), 0);
+    }
+
+    // --- Helper Methods ---
+
+    private static boolean isUtf8(ByteBuffer bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // Not end of input: a character cut in half at the end of the sample is fine.
+        return !decoder.decode(bytes, CharBuffer.allocate(bytes.remaining()), false).isError();
+    }
+
+    private static Charset legacyCharset() {
+        Charset platform = Charset.defaultCharset();
+        // A UTF-8 or 7-bit platform default says nothing about which 8-bit encoding the file is in.
+        return platform.equals(StandardCharsets.UTF_8) || platform.equals(StandardCharsets.US_ASCII) ? WINDOWS_1252 : platform;
+    }
+}
@@ -0,0 +1,18 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+/*
+    Receives the text ReadFileService extracts from a document, a piece at a time (a buffer of
+    decoded characters, a paragraph, a page, a slide, a row). Returning false tells the extractor
+    to stop, so a document is only parsed as far as somebody wants its text.
+ */
+@FunctionalInterface
+public interface TextSink {
+
+    /**
+     * Accepts the next piece of a document's text.
+     *
+     * @param text The text, in document order. Only valid during the call; copy it to keep it.
+     * @return Whether the extractor should keep going.
+     */
+    boolean append(CharSequence text);
+}
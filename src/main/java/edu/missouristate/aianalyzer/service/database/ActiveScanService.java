@@ -1,7 +1,7 @@
 package edu.missouristate.aianalyzer.service.database;
 
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
-import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -12,6 +12,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -24,7 +25,13 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class ActiveScanService {
 
-    private final ScanQueueItemRepository scanQueueItemRepository;
+    private final PersistenceWriter persistenceWriter;
+    private final DirectoryService directoryService;
+    private final FileRecordRepository fileRecordRepository;
+    private final ScanExclusions scanExclusions;
+
+    // Directories registered with the passive watcher, so a delete event can tell a directory from a file.
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
 
     // --- Configuration (from old FileScanner and PassiveScanner) ---
     private static final Set<String> EXCLUDED_DIRS = Set.of("$recycle.bin", "node_modules", ".git");
@@ -52,7 +59,7 @@ public class ActiveScanService {
                         @Override
                         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
                             String dirName = dir.getFileName().toString().toLowerCase();
-                            if (EXCLUDED_DIRS.contains(dirName)) {
+                            if (EXCLUDED_DIRS.contains(dirName) || scanExclusions.isExcluded(dir)) {
                                 return FileVisitResult.SKIP_SUBTREE;
                             }
                             return FileVisitResult.CONTINUE;
@@ -60,7 +67,7 @@ public class ActiveScanService {
 
                         @Override
                         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                            if (attrs.isRegularFile() && isFileTypeAllowed(file)) {
+                            if (attrs.isRegularFile() && isFileTypeAllowed(file) && !scanExclusions.isExcluded(file)) {
                                 enqueueFileTask(file, "file");
                             }
                             return FileVisitResult.CONTINUE;
@@ -102,13 +109,14 @@ public class ActiveScanService {
                     @Override
                     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
                         String dirName = dir.getFileName().toString().toLowerCase();
-                        if (EXCLUDED_DIRS.contains(dirName)) {
+                        if (EXCLUDED_DIRS.contains(dirName) || scanExclusions.isExcluded(dir)) {
                             return FileVisitResult.SKIP_SUBTREE;
                         }
                         dir.register(watchService,
                                 StandardWatchEventKinds.ENTRY_CREATE,
                                 StandardWatchEventKinds.ENTRY_MODIFY,
                                 StandardWatchEventKinds.ENTRY_DELETE);
+                        watchedDirs.add(dir);
                         return FileVisitResult.CONTINUE;
                     }
                 });
@@ -122,7 +130,16 @@ public class ActiveScanService {
                         Path dir = (Path) key.watchable();
                         for (WatchEvent<?> event : key.pollEvents()) {
                             Path filePath = dir.resolve((Path) event.context());
-                            if (isFileTypeAllowed(filePath)) {
+                            if (scanExclusions.isExcluded(filePath)) {
+                                continue; // written by the app itself
+                            }
+                            // Only a watched directory can be a cataloged one, so deleted files never cost a lookup.
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watchedDirs.remove(filePath)) {
+                                // A whole folder went away; rescan its cataloged files so they (and the rollups) are updated.
+                                log.debug("Passive watcher detected removal of directory {}", filePath);
+                                watchedDirs.removeIf(watched -> watched.startsWith(filePath));
+                                enqueueSubtree(filePath);
+                            } else if (isFileTypeAllowed(filePath)) {
                                 log.debug("Passive watcher detected change: {} on {}", event.kind(), filePath);
                                 enqueueFileTask(filePath, "file");
                             }
@@ -149,21 +166,28 @@ public class ActiveScanService {
     // --- Helper Methods ---
 
     /**
-     * Creates a new ScanQueueItem and saves it to the database.
-     * This is the modern replacement for the manual SQL inserts.
+     * Creates a new ScanQueueItem and hands it to the PersistenceWriter, which batches
+     * the inserts from all scanner threads into a few large transactions.
      */
     private void enqueueFileTask(Path file, String kind) {
-        try {
-            ScanQueueItem item = new ScanQueueItem();
-            item.setPath(file.toAbsolutePath().toString());
-            item.setKind(kind);
-            item.setNotBeforeUnix(Instant.now().getEpochSecond());
-            item.setAttempts(0);
-            scanQueueItemRepository.save(item);
-        } catch (Exception e) {
-            // This might happen if there's a unique constraint violation, which is okay.
-            log.trace("Could not enqueue file task for {}: {}", file, e.getMessage());
-        }
+        ScanQueueItem item = new ScanQueueItem();
+        item.setPath(file.toAbsolutePath().toString());
+        item.setKind(kind);
+        item.setNotBeforeUnix(Instant.now().getEpochSecond());
+        item.setAttempts(0);
+        persistenceWriter.enqueue(item).exceptionally(e -> {
+            // Queue rows have no unique key, so this only fails when the database does; the next scan retries.
+            log.warn("Could not enqueue file task for {}: {}", file, e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Queues every cataloged file below a directory for a rescan.
+     */
+    private void enqueueSubtree(Path dir) {
+        directoryService.findId(dir).ifPresent(dirId -> fileRecordRepository.findAllInSubtree(dirId)
+                .forEach(fileRecord -> enqueueFileTask(directoryService.pathOf(fileRecord), "file")));
     }
 
     /**
@@ -0,0 +1,198 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Moves catalogs created before the directories table existed over to the normalized layout.
+    Old databases stored the full path and parent path on every 'files' row, and keyed label_history
+    and image_meta by path. Hibernate's 'update' mode can't drop or re-key columns, so:
+      1. LegacyTableDetacher renames the old tables out of the way before Hibernate builds the schema,
+      2. this class copies their rows into the new tables once the schema exists, then drops them.
+    On an up-to-date database both steps find nothing to do. It also creates the unique indexes and
+    the full-text search table Hibernate can't express for SQLite.
+ */
+@Slf4j
+@Component
+public class CatalogMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Taking the EntityManagerFactory makes sure Hibernate has created the new tables first.
+    public CatalogMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrate() {
+        createUniqueIndexes();
+        createSearchIndex();
+        if (!tableExists(jdbcTemplate, "files_v1")) {
+            return;
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            copyDirectories();
+            copyFiles();
+            copyLabelHistory();
+            copyImageMeta();
+            jdbcTemplate.execute("drop table dir_map");
+            jdbcTemplate.execute("drop table files_v1");
+        });
+        log.info("Migrated catalog to the directories layout in {} ms.", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Hibernate's SQLite dialect can't declare multi-column unique constraints, so the natural keys of
+     * the normalized tables are created here. They also serve every lookup by directory.
+     */
+    private void createUniqueIndexes() {
+        jdbcTemplate.execute("create unique index if not exists ux_directories_parent_name on directories (parent_id, name)");
+        // NULLs never collide in a unique index, so roots (no parent) need one of their own.
+        jdbcTemplate.execute("create unique index if not exists ux_directories_root_name on directories (name) where parent_id is null");
+        jdbcTemplate.execute("create unique index if not exists ux_files_dir_name on files (dir_id, name)");
+    }
+
+    /**
+     * The FTS5 table behind ContentSearchRepository. 'prefix' adds indexes for 2- to 4-character
+     * prefixes so type-ahead queries like "inv*" don't have to scan the whole term list, and the rank
+     * weights a hit in the AI summary twice as high as one in the body text.
+     */
+    private void createSearchIndex() {
+        if (tableExists(jdbcTemplate, "content_fts")) {
+            return;
+        }
+        jdbcTemplate.execute("create virtual table content_fts using fts5("
+                + "body, summary, tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3 4')");
+        jdbcTemplate.update("insert into content_fts (content_fts, rank) values ('rank', 'bm25(1.0, 2.0)')");
+    }
+
+    /**
+     * Builds the directory tree from every distinct parent path, and a temporary dir_map table
+     * from parent path to directory id for the set-based copies below.
+     */
+    private void copyDirectories() {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from directories", Long.class);
+        long nextId = maxId + 1;
+        Map<Path, Long> ids = new HashMap<>();
+        List<Object[]> newDirectories = new ArrayList<>();
+        List<Object[]> mappings = new ArrayList<>();
+
+        for (String parentPath : jdbcTemplate.queryForList("select distinct parent_path from files_v1 where parent_path <> ''", String.class)) {
+            Long parentId = null;
+            Path prefix = null;
+            for (String name : DirectoryService.components(Paths.get(parentPath))) {
+                prefix = prefix == null ? Paths.get(name) : prefix.resolve(name);
+                Long id = ids.get(prefix);
+                if (id == null) {
+                    id = nextId++;
+                    ids.put(prefix, id);
+                    newDirectories.add(new Object[]{id, parentId, name});
+                }
+                parentId = id;
+            }
+            mappings.add(new Object[]{parentPath, parentId});
+        }
+
+        jdbcTemplate.batchUpdate("insert into directories (id, parent_id, name) values (?, ?, ?)", newDirectories);
+        jdbcTemplate.execute("create temp table dir_map (parent_path text primary key, dir_id integer not null)");
+        jdbcTemplate.batchUpdate("insert into dir_map (parent_path, dir_id) values (?, ?)", mappings);
+    }
+
+    /**
+     * Copies every column the old and new files tables share, and derives the name by cutting the
+     * parent path (and its separator, unless the parent is a root like "/") off the full path.
+     */
+    private void copyFiles() {
+        List<String> newColumns = columns("files");
+        List<String> shared = columns("files_v1").stream().filter(newColumns::contains).toList();
+        String columnList = String.join(", ", shared);
+        String selectList = String.join(", ", shared.stream().map(c -> "f." + c).toList());
+        int copied = jdbcTemplate.update("insert into files (" + columnList + ", dir_id, name) "
+                + "select " + selectList + ", m.dir_id, "
+                + "case when substr(f.parent_path, -1) in ('/', '\\') then substr(f.path, length(f.parent_path) + 1) "
+                + "else substr(f.path, length(f.parent_path) + 2) end "
+                + "from files_v1 f join dir_map m on m.parent_path = f.parent_path");
+        Integer total = jdbcTemplate.queryForObject("select count(*) from files_v1", Integer.class);
+        if (copied < total) {
+            log.warn("Skipped {} old file records without a parent directory.", total - copied);
+        }
+    }
+
+    private void copyLabelHistory() {
+        if (columns("label_history").contains("path")) {
+            jdbcTemplate.update("update label_history set file_id = (select id from files_v1 f where f.path = label_history.path) "
+                    + "where file_id is null");
+        }
+    }
+
+    private void copyImageMeta() {
+        if (!tableExists(jdbcTemplate, "image_meta_v1")) {
+            return;
+        }
+        jdbcTemplate.update("insert into image_meta (file_id, width, height, exif_taken_unix, camera_make, camera_model) "
+                + "select f.id, i.width, i.height, i.exif_taken_unix, i.camera_make, i.camera_model "
+                + "from image_meta_v1 i join files_v1 f on f.path = i.path");
+        jdbcTemplate.execute("drop table image_meta_v1");
+    }
+
+    private List<String> columns(String table) {
+        return jdbcTemplate.queryForList("select name from pragma_table_info(?)", String.class, table);
+    }
+
+    static boolean tableExists(JdbcTemplate jdbcTemplate, String table) {
+        Integer count = jdbcTemplate.queryForObject("select count(*) from sqlite_master where type = 'table' and name = ?", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Step 1: runs before Hibernate's schema update and renames tables still in the old layout,
+     * so Hibernate creates fresh ones instead of trying (and failing) to alter them.
+     */
+    @Component
+    static class LegacyTableDetacher {
+
+        LegacyTableDetacher(JdbcTemplate jdbcTemplate) {
+            if (hasColumn(jdbcTemplate, "files", "parent_path")) {
+                jdbcTemplate.execute("alter table files rename to files_v1");
+                // Index names are global, and Hibernate is about to create indexes with these names on the new table.
+                jdbcTemplate.execute("drop index if exists ix_files_filekey");
+                jdbcTemplate.execute("drop index if exists ix_files_size_mtime");
+                log.info("Found a catalog in the old path layout; it will be migrated once the schema is up to date.");
+            }
+            if (hasColumn(jdbcTemplate, "image_meta", "path")) {
+                jdbcTemplate.execute("alter table image_meta rename to image_meta_v1");
+            }
+        }
+
+        private static boolean hasColumn(JdbcTemplate jdbcTemplate, String table, String column) {
+            Integer count = jdbcTemplate.queryForObject("select count(*) from pragma_table_info(?) where name = ?", Integer.class, table, column);
+            return count != null && count > 0;
+        }
+    }
+
+    // Makes the EntityManagerFactory (and with it Hibernate's schema update) wait for step 1.
+    @Component
+    static class DetachBeforeSchemaUpdate extends EntityManagerFactoryDependsOnPostProcessor {
+
+        DetachBeforeSchemaUpdate() {
+            super(LegacyTableDetacher.class);
+        }
+    }
+}
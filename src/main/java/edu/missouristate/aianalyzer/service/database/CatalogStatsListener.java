@@ -0,0 +1,122 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Feeds every FileRecord insert, update and delete into CatalogStatsService and DirectoryRollupService,
+    and has them write the resulting deltas right before the transaction commits (or drop them if it rolls back).
+    Every catalog write is a Hibernate flush on the writer thread, so this sees all of them without the
+    services that change FileRecords having to know the aggregates exist.
+
+    These are post-execution events on purpose: Interceptor.onFlushDirty also fires for auto-flush
+    checks that Hibernate then throws away, which would count the same change twice.
+ */
+@Component
+public class CatalogStatsListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        Integrator, HibernatePropertiesCustomizer {
+
+    // The services need the EntityManager, which is built with this listener, so they are looked up lazily.
+    private final ObjectProvider<CatalogStatsService> catalogStatsService;
+    private final ObjectProvider<DirectoryRollupService> directoryRollupService;
+
+    public CatalogStatsListener(ObjectProvider<CatalogStatsService> catalogStatsService,
+                                ObjectProvider<DirectoryRollupService> directoryRollupService) {
+        this.catalogStatsService = catalogStatsService;
+        this.directoryRollupService = directoryRollupService;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(JpaSettings.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> List.of(this));
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof FileRecord) {
+            record(event.getSession(), null, facts(event.getState(), event.getPersister()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        // Without an old state (an update of a detached instance) the old buckets are unknown; a rebuild repairs that.
+        if (event.getEntity() instanceof FileRecord && event.getOldState() != null) {
+            record(event.getSession(), facts(event.getOldState(), event.getPersister()), facts(event.getState(), event.getPersister()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof FileRecord) {
+            record(event.getSession(), facts(event.getDeletedState(), event.getPersister()), null);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    // --- Helper Methods ---
+
+    private void record(EventSource session, CatalogStatsService.FileFacts before, CatalogStatsService.FileFacts after) {
+        CatalogStatsService stats = catalogStatsService.getObject();
+        DirectoryRollupService rollups = directoryRollupService.getObject();
+        if (stats.recordChange(before, after)) {
+            // Runs after the commit-time flush, so later changes in this transaction are included too.
+            session.getActionQueue().registerProcess(s -> stats.flushPending());
+            session.getActionQueue().registerProcess((success, s) -> stats.discardPending());
+        }
+        if (rollups.recordChange(before, after)) {
+            session.getActionQueue().registerProcess(s -> rollups.flushPending());
+            session.getActionQueue().registerProcess((success, s) -> rollups.discardPending());
+        }
+    }
+
+    private static CatalogStatsService.FileFacts facts(Object[] state, EntityPersister persister) {
+        List<String> names = Arrays.asList(persister.getPropertyNames());
+        return new CatalogStatsService.FileFacts(
+                (String) state[names.indexOf("kind")],
+                (String) state[names.indexOf("ext")],
+                (String) state[names.indexOf("typeLabel")],
+                (Long) state[names.indexOf("mtimeUnix")],
+                (Long) state[names.indexOf("dirId")],
+                (Long) state[names.indexOf("sizeBytes")]);
+    }
+}
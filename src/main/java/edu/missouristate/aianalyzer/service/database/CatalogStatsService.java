@@ -0,0 +1,286 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.CatalogStat;
+import edu.missouristate.aianalyzer.repository.database.CatalogStatRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+    Maintains the catalog_stats aggregate table behind the dashboard.
+    CatalogStatsListener reports every FileRecord insert, update and delete here as a before/after pair;
+    the resulting +/- deltas are collected per transaction and upserted just before it commits, so the
+    aggregates always match the committed files table. Reading them is one query over a table whose size
+    depends on the number of buckets, not the number of files.
+ */
+@Slf4j
+@Service
+public class CatalogStatsService {
+
+    // Dimensions (and their bucket values) stored in catalog_stats.
+    public static final String TOTAL = "total";     // single bucket "all"
+    public static final String KIND = "kind";       // FileRecord.kind
+    public static final String EXT = "ext";         // lower-case extension, "(none)" if there isn't one
+    public static final String LABEL = "label";     // AI type label, UNCLASSIFIED if there isn't one yet
+    public static final String YEAR = "year";       // year of last modification (UTC)
+    public static final String TOP_DIR = "top_dir"; // id of the first directory below the root, or of the root itself
+
+    public static final String UNCLASSIFIED = "Unclassified";
+    private static final String NO_EXT = "(none)";
+
+    // Finds a directory's root and first-level ancestor: the last two rows walking up the tree.
+    private static final String TOP_LEVEL_QUERY = """
+            with recursive chain(id, parent_id, depth) as (
+                select id, parent_id, 0 from directories where id = ?
+                union all
+                select d.id, d.parent_id, c.depth + 1 from directories d join chain c on d.id = c.parent_id
+            )
+            select id from chain order by depth desc limit 2
+            """;
+
+    private static final String UPSERT = """
+            insert into catalog_stats (dimension, bucket, file_count, total_bytes) values (?, ?, ?, ?)
+            on conflict (dimension, bucket) do update set
+                file_count = file_count + excluded.file_count,
+                total_bytes = total_bytes + excluded.total_bytes
+            """;
+
+    /**
+     * The parts of a FileRecord the aggregates and directory rollups depend on.
+     */
+    record FileFacts(String kind, String ext, String label, long mtimeUnix, Long dirId, long sizeBytes) {
+        boolean counted() {
+            return kind != null && !"missing".equals(kind) && dirId != null;
+        }
+    }
+
+    private record StatKey(String dimension, String bucket) {
+    }
+
+    /**
+     * One bucket of a dimension.
+     */
+    public record Stat(String bucket, long fileCount, long totalBytes) {
+    }
+
+    /**
+     * Every aggregate, grouped by dimension with the largest buckets (by bytes) first.
+     */
+    public record Snapshot(Map<String, List<Stat>> byDimension) {
+
+        public List<Stat> dimension(String dimension) {
+            return byDimension.getOrDefault(dimension, List.of());
+        }
+
+        public Stat bucket(String dimension, String bucket) {
+            return dimension(dimension).stream().filter(s -> s.bucket().equals(bucket)).findFirst()
+                    .orElse(new Stat(bucket, 0, 0));
+        }
+
+        public Stat total() {
+            return bucket(TOTAL, "all");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogStatRepository catalogStatRepository;
+    private final PersistenceWriter persistenceWriter;
+    private final EntityManager entityManager;
+
+    // Deltas of the writer's current transaction; only the writer thread ever fills this.
+    private final ThreadLocal<Map<StatKey, long[]>> pending = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<Long, long[]>> pendingByDir = ThreadLocal.withInitial(HashMap::new);
+    // Directories never move in the tree, so their top-level ancestor can be cached forever.
+    private final Map<Long, Long> topLevelByDir = new ConcurrentHashMap<>();
+
+    public CatalogStatsService(JdbcTemplate jdbcTemplate,
+                               CatalogStatRepository catalogStatRepository,
+                               PersistenceWriter persistenceWriter,
+                               EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogStatRepository = catalogStatRepository;
+        this.persistenceWriter = persistenceWriter;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Reads every aggregate. Cost is independent of the number of files.
+     *
+     * @return The current dashboard numbers.
+     */
+    public Snapshot snapshot() {
+        Map<String, List<Stat>> byDimension = catalogStatRepository.findAll().stream()
+                .filter(s -> s.getFileCount() > 0)
+                .sorted(Comparator.comparingLong(CatalogStat::getTotalBytes).reversed())
+                .collect(Collectors.groupingBy(CatalogStat::getDimension,
+                        Collectors.mapping(s -> new Stat(s.getBucket(), s.getFileCount(), s.getTotalBytes()), Collectors.toList())));
+        return new Snapshot(byDimension);
+    }
+
+    /**
+     * Recomputes every aggregate from the files table, for repair after the table was changed
+     * behind Hibernate's back (e.g. by a migration) or if the numbers ever look wrong.
+     *
+     * @return A future completed once the rebuilt numbers are committed.
+     */
+    public CompletableFuture<Void> rebuild() {
+        return persistenceWriter.submit("rebuild catalog stats", this::rebuildNow);
+    }
+
+    // A catalog that has files but no aggregates was filled without them (e.g. migrated); build them once.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfMissing() {
+        Integer stats = jdbcTemplate.queryForObject("select count(*) from catalog_stats", Integer.class);
+        Integer anyFile = jdbcTemplate.queryForObject("select count(*) from (select 1 from files limit 1)", Integer.class);
+        if (stats == 0 && anyFile > 0) {
+            log.info("Catalog statistics are missing, rebuilding them.");
+            rebuild();
+        }
+    }
+
+    // --- Called by CatalogStatsListener on the writer thread ---
+
+    /**
+     * Records how one FileRecord change moves the aggregates.
+     *
+     * @param before The record's previous state, or null for an insert.
+     * @param after  The record's new state, or null for a delete.
+     * @return Whether this is the transaction's first recorded change, i.e. flushPending() still needs scheduling.
+     */
+    boolean recordChange(FileFacts before, FileFacts after) {
+        boolean first = pending.get().isEmpty() && pendingByDir.get().isEmpty();
+        if (before != null && before.counted()) {
+            add(before, -1);
+        }
+        if (after != null && after.counted()) {
+            add(after, 1);
+        }
+        return first && !pending.get().isEmpty();
+    }
+
+    /**
+     * Upserts the deltas collected in the current transaction. Runs inside it, right before commit.
+     */
+    void flushPending() {
+        Map<StatKey, long[]> deltas = pending.get();
+        pendingByDir.get().forEach((dirId, delta) -> {
+            StatKey key = new StatKey(TOP_DIR, Long.toString(topLevelOf(dirId)));
+            long[] sum = deltas.computeIfAbsent(key, k -> new long[2]);
+            sum[0] += delta[0];
+            sum[1] += delta[1];
+        });
+        List<Object[]> rows = new ArrayList<>();
+        deltas.forEach((key, delta) -> {
+            if (delta[0] != 0 || delta[1] != 0) {
+                rows.add(new Object[]{key.dimension(), key.bucket(), delta[0], delta[1]});
+            }
+        });
+        discardPending();
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        }
+    }
+
+    void discardPending() {
+        pending.get().clear();
+        pendingByDir.get().clear();
+    }
+
+    // --- Helper Methods ---
+
+    private void add(FileFacts facts, int sign) {
+        long bytes = sign * facts.sizeBytes();
+        Map<StatKey, long[]> deltas = pending.get();
+        for (StatKey key : List.of(
+                new StatKey(TOTAL, "all"),
+                new StatKey(KIND, facts.kind()),
+                new StatKey(EXT, facts.ext() == null || facts.ext().isEmpty() ? NO_EXT : facts.ext()),
+                new StatKey(LABEL, facts.label() == null ? UNCLASSIFIED : facts.label()),
+                new StatKey(YEAR, yearOf(facts.mtimeUnix())))) {
+            long[] sum = deltas.computeIfAbsent(key, k -> new long[2]);
+            sum[0] += sign;
+            sum[1] += bytes;
+        }
+        // Resolved to the top-level directory at flush time, outside Hibernate's flush.
+        long[] byDir = pendingByDir.get().computeIfAbsent(facts.dirId(), k -> new long[2]);
+        byDir[0] += sign;
+        byDir[1] += bytes;
+    }
+
+    private long topLevelOf(long dirId) {
+        return topLevelByDir.computeIfAbsent(dirId, id -> {
+            List<Long> rootThenTop = jdbcTemplate.queryForList(TOP_LEVEL_QUERY, Long.class, id);
+            return rootThenTop.isEmpty() ? id : rootThenTop.get(rootThenTop.size() - 1);
+        });
+    }
+
+    private static String yearOf(long epochSeconds) {
+        return Integer.toString(Instant.ofEpochSecond(epochSeconds).atZone(ZoneOffset.UTC).getYear());
+    }
+
+    /**
+     * Runs on the writer. Everything this transaction changed so far is flushed first, so the
+     * recount includes it and the deltas already collected for it can be dropped.
+     */
+    private void rebuildNow() {
+        entityManager.flush();
+        discardPending();
+        long start = System.nanoTime();
+        jdbcTemplate.update("delete from catalog_stats");
+        String counted = " from files where kind is not null and kind <> 'missing'";
+        jdbcTemplate.update("insert into catalog_stats (dimension, bucket, file_count, total_bytes) "
+                + "select '" + TOTAL + "', 'all', count(*), coalesce(sum(size_bytes), 0)" + counted);
+        jdbcTemplate.update("insert into catalog_stats (dimension, bucket, file_count, total_bytes) "
+                + "select '" + KIND + "', kind, count(*), sum(size_bytes)" + counted + " group by kind");
+        jdbcTemplate.update("insert into catalog_stats (dimension, bucket, file_count, total_bytes) "
+                + "select '" + EXT + "', case when ext is null or ext = '' then '" + NO_EXT + "' else ext end, count(*), sum(size_bytes)"
+                + counted + " group by 2");
+        jdbcTemplate.update("insert into catalog_stats (dimension, bucket, file_count, total_bytes) "
+                + "select '" + LABEL + "', coalesce(type_label, '" + UNCLASSIFIED + "'), count(*), sum(size_bytes)"
+                + counted + " group by 2");
+        jdbcTemplate.update("insert into catalog_stats (dimension, bucket, file_count, total_bytes) "
+                + "select '" + YEAR + "', strftime('%Y', mtime_unix, 'unixepoch'), count(*), sum(size_bytes)"
+                + counted + " group by 2");
+        jdbcTemplate.update("""
+                insert into catalog_stats (dimension, bucket, file_count, total_bytes)
+                with recursive tops(id, top_id, depth) as (
+                    select id, id, 0 from directories where parent_id is null
+                    union all
+                    select d.id, case when t.depth = 0 then d.id else t.top_id end, t.depth + 1
+                    from directories d join tops t on d.parent_id = t.id
+                )
+                select ?, cast(t.top_id as text), count(*), sum(f.size_bytes)
+                from files f join tops t on t.id = f.dir_id
+                where f.kind is not null and f.kind <> 'missing'
+                group by t.top_id
+                """, TOP_DIR);
+        log.info("Rebuilt catalog statistics in {} ms.", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @param topDirBucket A TOP_DIR bucket value.
+     * @return The directory id it stands for, if the bucket is well-formed.
+     */
+    public static Optional<Long> topDirId(String topDirBucket) {
+        try {
+            return Optional.of(Long.parseLong(topDirBucket));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.ContentSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/*
+    Keeps the full-text search index up to date with what the AI pipeline extracts, and answers
+    searches over it. Indexing is fire-and-forget: the text is handed to the PersistenceWriter and the
+    caller carries on with the AI request, so search never slows down extraction.
+ */
+@Slf4j
+@Service
+public class ContentIndexService {
+
+    /**
+     * One search result.
+     *
+     * @param path    The matching file.
+     * @param rank    BM25 score; lower is a better match (0 when the query was too broad to rank).
+     * @param snippet The best matching fragment, with the matched terms in [brackets].
+     */
+    public record SearchResult(Path path, double rank, String snippet) {
+    }
+
+    private final ContentSearchRepository contentSearchRepository;
+    private final DirectoryService directoryService;
+    private final PersistenceWriter persistenceWriter;
+    private final int maxIndexedChars;
+    private final int maxRankedMatches;
+
+    public ContentIndexService(ContentSearchRepository contentSearchRepository,
+                               DirectoryService directoryService,
+                               PersistenceWriter persistenceWriter,
+                               @Value("${search.max-indexed-chars:200000}") int maxIndexedChars,
+                               @Value("${search.max-ranked-matches:20000}") int maxRankedMatches) {
+        this.contentSearchRepository = contentSearchRepository;
+        this.directoryService = directoryService;
+        this.persistenceWriter = persistenceWriter;
+        this.maxIndexedChars = maxIndexedChars;
+        this.maxRankedMatches = maxRankedMatches;
+    }
+
+    /**
+     * Queues a file's extracted text for indexing. Only the first search.max-indexed-chars
+     * characters are indexed, which keeps a single huge log file from bloating the index.
+     *
+     * @param path The file the text was extracted from.
+     * @param text The extracted text.
+     * @return A future that completes once the text is searchable (immediately if the file isn't cataloged).
+     */
+    public CompletableFuture<Void> indexText(Path path, String text) {
+        String indexed = text.length() > maxIndexedChars ? text.substring(0, maxIndexedChars) : text;
+        return index(path, "index text ", indexed, contentSearchRepository::saveText);
+    }
+
+    /**
+     * Queues a file's AI summary for indexing.
+     *
+     * @param path    The file the summary describes.
+     * @param summary The AI's summary.
+     * @return A future that completes once the summary is searchable (immediately if the file isn't cataloged).
+     */
+    public CompletableFuture<Void> indexSummary(Path path, String summary) {
+        return index(path, "index summary ", summary, contentSearchRepository::saveSummary);
+    }
+
+    /**
+     * Searches extracted text and summaries. Every word must match; the last one also matches as a
+     * prefix, so partial input like "quarterly inv" already finds "quarterly invoice".
+     * Results are ranked by relevance unless the query matches more than search.max-ranked-matches
+     * documents (a word that is in nearly everything), in which case the newest matches come back instead.
+     *
+     * @param query Words as the user typed them.
+     * @param limit The maximum number of results.
+     * @return The matching files, best matches first.
+     */
+    public List<SearchResult> search(String query, int limit) {
+        Optional<String> match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            return List.of();
+        }
+        // Over-fetch a little, since matches whose file has gone missing are dropped after ranking.
+        int fetch = limit * 2;
+        List<ContentSearchRepository.SearchHit> hits = contentSearchRepository.countMatches(match.get(), maxRankedMatches + 1) > maxRankedMatches
+                ? contentSearchRepository.searchNewest(match.get(), fetch)
+                : contentSearchRepository.searchRanked(match.get(), fetch);
+        List<SearchResult> results = new ArrayList<>();
+        for (ContentSearchRepository.SearchHit hit : hits.subList(0, Math.min(limit, hits.size()))) {
+            results.add(new SearchResult(directoryService.pathOf(hit.dirId()).resolve(hit.name()), hit.rank(), hit.snippet()));
+        }
+        return results;
+    }
+
+    // --- Helper Methods ---
+
+    private CompletableFuture<Void> index(Path path, String what, String value, BiConsumer<Long, String> save) {
+        Optional<FileRecord> fileRecord = directoryService.findFile(path);
+        if (fileRecord.isEmpty()) {
+            log.debug("Not indexing {}; it isn't cataloged.", path);
+            return CompletableFuture.completedFuture(null);
+        }
+        long fileId = fileRecord.get().getId();
+        return persistenceWriter.submit(what + path, () -> save.accept(fileId, value))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        log.warn("Could not update the search index for {}: {}", path, error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Turns free text into an FTS5 expression: each word becomes a quoted phrase (so FTS5 operators and
+     * punctuation in the input are taken literally) and the last word gets a prefix '*'.
+     */
+    static Optional<String> toMatchExpression(String query) {
+        if (query == null) {
+            return Optional.empty();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            String cleaned = word.replace("\"", "");
+            if (!cleaned.isBlank()) {
+                terms.add("\"" + cleaned + "\"");
+            }
+        }
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+        terms.set(terms.size() - 1, terms.get(terms.size() - 1) + "*");
+        return Optional.of(String.join(" ", terms));
+    }
+}
@@ -0,0 +1,234 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.DirectoryRollup;
+import edu.missouristate.aianalyzer.repository.database.DirectoryRollupRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+    Maintains dir_rollups: total bytes, file count and newest mtime of every directory's subtree.
+    Like CatalogStatsService it is fed by CatalogStatsListener, so every catalog write (including the
+    rescans the passive watcher queues) moves the totals of the file's directory and all its
+    ancestors up to the scan root (scan.roots) in the same transaction. A change deep in the tree
+    costs one upsert per ancestor. Directories above a scan root (say /home above /home/me) hold
+    nothing that was scanned besides that root, so they get no rollup.
+ */
+@Slf4j
+@Service
+public class DirectoryRollupService {
+
+    // A directory and all its ancestors, nearest first.
+    private static final String ANCESTORS_QUERY = """
+            with recursive chain(id, parent_id, depth) as (
+                select id, parent_id, 0 from directories where id = ?
+                union all
+                select d.id, d.parent_id, c.depth + 1 from directories d join chain c on d.id = c.parent_id
+            )
+            select id from chain order by depth
+            """;
+
+    private static final String UPSERT = """
+            insert into dir_rollups (dir_id, total_bytes, file_count, newest_mtime_unix) values (?, ?, ?, ?)
+            on conflict (dir_id) do update set
+                total_bytes = total_bytes + excluded.total_bytes,
+                file_count = file_count + excluded.file_count,
+                newest_mtime_unix = max(newest_mtime_unix, excluded.newest_mtime_unix)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DirectoryRollupRepository directoryRollupRepository;
+    private final DirectoryService directoryService;
+    private final PersistenceWriter persistenceWriter;
+    private final EntityManager entityManager;
+    private final List<Path> scanRoots;
+
+    // Per-directory deltas of the writer's current transaction: {bytes, files, newest mtime added}.
+    private final ThreadLocal<Map<Long, long[]>> pending = ThreadLocal.withInitial(HashMap::new);
+    // Directories never move in the tree, so their ancestor chains can be cached forever.
+    private final Map<Long, List<Long>> ancestorsByDir = new ConcurrentHashMap<>();
+
+    public DirectoryRollupService(JdbcTemplate jdbcTemplate,
+                                  DirectoryRollupRepository directoryRollupRepository,
+                                  DirectoryService directoryService,
+                                  PersistenceWriter persistenceWriter,
+                                  EntityManager entityManager,
+                                  @Value("${scan.roots:}") List<String> scanRoots) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.directoryRollupRepository = directoryRollupRepository;
+        this.directoryService = directoryService;
+        this.persistenceWriter = persistenceWriter;
+        this.entityManager = entityManager;
+        this.scanRoots = scanRoots.stream().filter(r -> !r.isBlank()).map(r -> Paths.get(r.trim()).toAbsolutePath().normalize()).toList();
+    }
+
+    /**
+     * Looks up the totals of a directory's subtree without touching the disk.
+     *
+     * @param dir An absolute directory path.
+     * @return The totals, or empty if nothing below the directory has been cataloged.
+     */
+    public Optional<DirectoryRollup> find(Path dir) {
+        return directoryService.findId(dir).flatMap(directoryRollupRepository::findById);
+    }
+
+    /**
+     * Recomputes every rollup from the files table, e.g. after a migration or to correct newest mtimes
+     * that stayed high after files were removed.
+     *
+     * @return A future completed once the rebuilt totals are committed.
+     */
+    public CompletableFuture<Void> rebuild() {
+        return persistenceWriter.submit("rebuild directory rollups", this::rebuildNow);
+    }
+
+    // A catalog that has files but no rollups was filled without them (e.g. migrated); build them once.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfMissing() {
+        Integer rollups = jdbcTemplate.queryForObject("select count(*) from (select 1 from dir_rollups limit 1)", Integer.class);
+        Integer anyFile = jdbcTemplate.queryForObject("select count(*) from (select 1 from files limit 1)", Integer.class);
+        if (rollups == 0 && anyFile > 0) {
+            log.info("Directory rollups are missing, rebuilding them.");
+            rebuild();
+        }
+    }
+
+    // --- Called by CatalogStatsListener on the writer thread ---
+
+    /**
+     * Records how one FileRecord change moves its directory's totals.
+     *
+     * @param before The record's previous state, or null for an insert.
+     * @param after  The record's new state, or null for a delete.
+     * @return Whether this is the transaction's first recorded change, i.e. flushPending() still needs scheduling.
+     */
+    boolean recordChange(CatalogStatsService.FileFacts before, CatalogStatsService.FileFacts after) {
+        boolean first = pending.get().isEmpty();
+        if (before != null && before.counted()) {
+            add(before, -1);
+        }
+        if (after != null && after.counted()) {
+            add(after, 1);
+        }
+        return first && !pending.get().isEmpty();
+    }
+
+    /**
+     * Spreads the collected deltas over every ancestor and upserts them. Runs inside the
+     * transaction, right before commit.
+     */
+    void flushPending() {
+        Map<Long, long[]> byRollup = new HashMap<>();
+        pending.get().forEach((dirId, delta) -> {
+            for (long ancestorId : ancestorsOf(dirId)) {
+                long[] sum = byRollup.computeIfAbsent(ancestorId, k -> new long[3]);
+                sum[0] += delta[0];
+                sum[1] += delta[1];
+                sum[2] = Math.max(sum[2], delta[2]);
+            }
+        });
+        discardPending();
+        List<Object[]> rows = new ArrayList<>(byRollup.size());
+        byRollup.forEach((dirId, delta) -> rows.add(new Object[]{dirId, delta[0], delta[1], delta[2]}));
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        }
+    }
+
+    void discardPending() {
+        pending.get().clear();
+    }
+
+    // --- Helper Methods ---
+
+    private void add(CatalogStatsService.FileFacts facts, int sign) {
+        long[] delta = pending.get().computeIfAbsent(facts.dirId(), k -> new long[3]);
+        delta[0] += sign * facts.sizeBytes();
+        delta[1] += sign;
+        if (sign > 0) {
+            delta[2] = Math.max(delta[2], facts.mtimeUnix());
+        }
+    }
+
+    /**
+     * The directory and its ancestors up to and including the nearest scan root. A directory that
+     * isn't below any scan root keeps its whole chain.
+     */
+    private List<Long> ancestorsOf(long dirId) {
+        return ancestorsByDir.computeIfAbsent(dirId, id -> {
+            List<Long> chain = jdbcTemplate.queryForList(ANCESTORS_QUERY, Long.class, id);
+            if (chain.isEmpty()) {
+                return List.of(id);
+            }
+            Set<Long> roots = scanRootIds();
+            for (int i = 0; i < chain.size(); i++) {
+                if (roots.contains(chain.get(i))) {
+                    return List.copyOf(chain.subList(0, i + 1));
+                }
+            }
+            return List.copyOf(chain);
+        });
+    }
+
+    /**
+     * A directory below a scan root was created together with the root, so the root's id is known
+     * whenever it matters.
+     */
+    private Set<Long> scanRootIds() {
+        Set<Long> ids = new HashSet<>();
+        for (Path root : scanRoots) {
+            directoryService.findId(root).ifPresent(ids::add);
+        }
+        return ids;
+    }
+
+    /**
+     * Runs on the writer. Totals per directory are computed first and then added to each ancestor,
+     * so the recursive part only walks directories, not files.
+     */
+    private void rebuildNow() {
+        entityManager.flush();
+        discardPending();
+        long start = System.nanoTime();
+        jdbcTemplate.update("delete from dir_rollups");
+        // Climbing stops at the scan roots, as in ancestorsOf.
+        Set<Long> roots = scanRootIds();
+        String stopAtRoots = roots.isEmpty() ? "" : roots.stream().map(String::valueOf)
+                .collect(Collectors.joining(", ", "and u.ancestor_id not in (", ")"));
+        int rows = jdbcTemplate.update("""
+                insert into dir_rollups (dir_id, total_bytes, file_count, newest_mtime_unix)
+                with recursive own(dir_id, total_bytes, file_count, newest_mtime_unix) as (
+                    select dir_id, sum(size_bytes), count(*), max(mtime_unix)
+                    from files where kind is not null and kind <> 'missing'
+                    group by dir_id
+                ),
+                up(dir_id, ancestor_id) as (
+                    select dir_id, dir_id from own
+                    union all
+                    select u.dir_id, d.parent_id from up u join directories d on d.id = u.ancestor_id
+                    where d.parent_id is not null %s
+                )
+                select u.ancestor_id, sum(o.total_bytes), sum(o.file_count), max(o.newest_mtime_unix)
+                from up u join own o on o.dir_id = u.dir_id
+                group by u.ancestor_id
+                """.formatted(stopAtRoots));
+        log.info("Rebuilt {} directory rollups in {} ms.", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,203 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.Directory;
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.DirectoryRepository;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+    Translates between full paths and the normalized catalog, where a file is a directory id plus a name.
+    Directory ids never change once assigned, so both directions are cached for the life of the app;
+    only directories that don't exist yet cost a trip to the PersistenceWriter.
+ */
+@Slf4j
+@Service
+public class DirectoryService {
+
+    private final DirectoryRepository directoryRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final PersistenceWriter persistenceWriter;
+
+    private final Map<Path, Long> idsByPath = new ConcurrentHashMap<>();
+    private final Map<Long, Path> pathsById = new ConcurrentHashMap<>();
+
+    public DirectoryService(DirectoryRepository directoryRepository,
+                            FileRecordRepository fileRecordRepository,
+                            PersistenceWriter persistenceWriter) {
+        this.directoryRepository = directoryRepository;
+        this.fileRecordRepository = fileRecordRepository;
+        this.persistenceWriter = persistenceWriter;
+    }
+
+    /**
+     * Looks up a directory without creating it.
+     *
+     * @param dir An absolute directory path.
+     * @return Its id, or empty if nothing has ever been cataloged in it.
+     */
+    public Optional<Long> findId(Path dir) {
+        Long cached = idsByPath.get(dir);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Long parentId = null;
+        Path prefix = null;
+        for (String name : components(dir)) {
+            prefix = prefix == null ? Paths.get(name) : prefix.resolve(name);
+            Long id = idsByPath.get(prefix);
+            if (id == null) {
+                Optional<Directory> found = directoryRepository.findByParentIdAndName(parentId, name);
+                if (found.isEmpty()) {
+                    return Optional.empty();
+                }
+                id = found.get().getId();
+                remember(prefix, id);
+            }
+            parentId = id;
+        }
+        return Optional.ofNullable(parentId);
+    }
+
+    /**
+     * Returns a directory's id, creating it and any missing ancestors through the PersistenceWriter.
+     * Blocks until they are committed when the directory is new, so it must not be called from
+     * inside a PersistenceWriter command.
+     *
+     * @param dir An absolute directory path.
+     * @return The directory's id.
+     */
+    public long resolve(Path dir) {
+        Optional<Long> known = findId(dir);
+        if (known.isPresent()) {
+            return known.get();
+        }
+        long id = persistenceWriter.submit("directory " + dir, () -> create(dir)).join();
+        remember(dir, id);
+        return id;
+    }
+
+    /**
+     * @param dirId A directory id.
+     * @return The directory's full path.
+     */
+    public Path pathOf(long dirId) {
+        Path cached = pathsById.get(dirId);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> names = directoryRepository.findPathNames(dirId);
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("No such directory id: " + dirId);
+        }
+        Path path = Paths.get(names.get(0), names.subList(1, names.size()).toArray(String[]::new));
+        remember(path, dirId);
+        return path;
+    }
+
+    /**
+     * @param fileRecord A cataloged file.
+     * @return The file's full path.
+     */
+    public Path pathOf(FileRecord fileRecord) {
+        return pathOf(fileRecord.getDirId()).resolve(fileRecord.getName());
+    }
+
+    /**
+     * Points a record at a (possibly new) location, creating the directory if needed.
+     *
+     * @param fileRecord The record to update.
+     * @param path       The file's full path.
+     */
+    public void place(FileRecord fileRecord, Path path) {
+        fileRecord.setDirId(resolve(path.getParent()));
+        fileRecord.setName(path.getFileName().toString());
+    }
+
+    /**
+     * @param path A file's full path.
+     * @return The file's catalog record, if it has one; never for a path without a parent, such as a root.
+     */
+    public Optional<FileRecord> findFile(Path path) {
+        if (path.getParent() == null) {
+            return Optional.empty();
+        }
+        return findId(path.getParent()).flatMap(dirId -> fileRecordRepository.findByDirIdAndName(dirId, path.getFileName().toString()));
+    }
+
+    /**
+     * Loads the records for many paths with one query per distinct parent directory.
+     *
+     * @param paths Full file paths.
+     * @return The records that exist, keyed by the path they were looked up with. Paths without a
+     *         parent (a root, a bare file name) are never cataloged and are left out.
+     */
+    public Map<Path, FileRecord> findFiles(Collection<Path> paths) {
+        Map<Path, List<Path>> byParent = paths.stream()
+                .filter(p -> p.getParent() != null)
+                .collect(Collectors.groupingBy(Path::getParent));
+        Map<Path, FileRecord> found = new HashMap<>();
+        byParent.forEach((parent, files) -> findId(parent).ifPresent(dirId -> {
+            List<String> names = files.stream().map(p -> p.getFileName().toString()).toList();
+            for (FileRecord fileRecord : fileRecordRepository.findAllByDirIdAndNameIn(dirId, names)) {
+                found.put(parent.resolve(fileRecord.getName()), fileRecord);
+            }
+        }));
+        return found;
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Runs on the writer thread, so no other thread can be creating the same directories concurrently.
+     * Ids are only cached by the caller once the transaction has committed.
+     */
+    private long create(Path dir) {
+        Long parentId = null;
+        for (String name : components(dir)) {
+            Long currentParent = parentId;
+            parentId = directoryRepository.findByParentIdAndName(currentParent, name)
+                    .orElseGet(() -> {
+                        Directory directory = new Directory();
+                        directory.setParentId(currentParent);
+                        directory.setName(name);
+                        return directoryRepository.save(directory);
+                    })
+                    .getId();
+        }
+        log.debug("Cataloged directory {} as {}", dir, parentId);
+        return parentId;
+    }
+
+    /**
+     * Splits a path into the names stored in the directories table: the root ("/" or "C:\") first,
+     * then one entry per directory below it.
+     */
+    static List<String> components(Path dir) {
+        List<String> names = new ArrayList<>();
+        if (dir.getRoot() != null) {
+            names.add(dir.getRoot().toString());
+        }
+        for (Path part : dir) {
+            names.add(part.toString());
+        }
+        return names;
+    }
+
+    private void remember(Path path, long id) {
+        idsByPath.put(path, id);
+        pathsById.put(id, path);
+    }
+}
@@ -2,16 +2,26 @@ package edu.missouristate.aianalyzer.service.database;
 
 import edu.missouristate.aianalyzer.model.database.ErrorLog;
 import edu.missouristate.aianalyzer.repository.database.ErrorLogRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
 @Service
 public class ErrorLogService {
     private final ErrorLogRepository repo;
+    private final PersistenceWriter writer;
 
-    public ErrorLogService(ErrorLogRepository repo) { this.repo = repo; }
+    public ErrorLogService(ErrorLogRepository repo, PersistenceWriter writer) {
+        this.repo = repo;
+        this.writer = writer;
+    }
 
-    public ErrorLog logError(String component, String filePath, int filePriority,
+    // Writes go through the PersistenceWriter; the returned futures complete once committed.
+    // Callers may ignore them: a write that fails is logged here.
+    public CompletableFuture<ErrorLog> logError(String component, String filePath, int filePriority,
                              String code, String message, Throwable t, String contextJson) {
         ErrorLog e = new ErrorLog();
         e.setComponent(component);
@@ -21,26 +31,35 @@ public class ErrorLogService {
         e.setMessage(message);
         e.setDetails(t == null ? null : stackTrace(t));
         e.setContextJson(contextJson);
-        return repo.save(e);
+        return logged(writer.logError(e), "error from " + component);
     }
 
-    public void markRetrying(Long id) {
-        repo.findById(id).ifPresent(e -> {
+    public CompletableFuture<Void> markRetrying(Long id) {
+        return logged(writer.submit("mark retrying " + id, () -> repo.findById(id).ifPresent(e -> {
             e.setStatus("retrying");
             e.setRetryCount((e.getRetryCount() == null ? 0 : e.getRetryCount()) + 1);
             e.setLastAttemptUnix(System.currentTimeMillis());
             repo.save(e);
-        });
+        })), "retry of error " + id);
     }
 
-    public void markResolved(Long id) {
-        repo.findById(id).ifPresent(e -> { e.setStatus("resolved"); repo.save(e); });
+    public CompletableFuture<Void> markResolved(Long id) {
+        return logged(writer.submit("mark resolved " + id, () -> repo.findById(id).ifPresent(e -> { e.setStatus("resolved"); repo.save(e); })),
+                "resolution of error " + id);
     }
 
     public java.util.List<ErrorLog> pendingHighPriority(int limit) {
         return repo.findPendingHighPriority(PageRequest.of(0, limit));
     }
 
+    private static <T> CompletableFuture<T> logged(CompletableFuture<T> write, String what) {
+        return write.whenComplete((ignored, t) -> {
+            if (t != null) {
+                log.warn("Could not record {}: {}", what, t.getMessage());
+            }
+        });
+    }
+
     private static String stackTrace(Throwable t) {
         java.io.StringWriter sw = new java.io.StringWriter();
         t.printStackTrace(new java.io.PrintWriter(sw));
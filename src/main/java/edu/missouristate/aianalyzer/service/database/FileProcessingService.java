@@ -2,6 +2,7 @@ package edu.missouristate.aianalyzer.service.database;
 
 import edu.missouristate.aianalyzer.model.database.FileRecord;
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import edu.missouristate.aianalyzer.repository.database.ContentSearchRepository;
 import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,7 +10,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -22,9 +22,20 @@ import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 /*
     This will be the "Consumer" which runs in the background and pulls tasks from the scan_queue
@@ -36,15 +47,20 @@ public class FileProcessingService {
 
     private final ScanQueueItemRepository scanQueueItemRepository;
     private final FileRecordRepository fileRecordRepository;
+    private final MoveDetectionService moveDetectionService;
+    private final DirectoryService directoryService;
+    private final PersistenceWriter persistenceWriter;
+    private final ContentSearchRepository contentSearchRepository;
 
     private static final int BATCH_SIZE = 50; // How many items to process per run
 
     /**
      * This method runs on a fixed schedule, acting as our main worker loop.
      * It replaces the `while(true)` loop from the original Main.java.
+     * All reading and hashing happens on this thread. The catalog is read once for the whole batch
+     * and the results are written back through the PersistenceWriter, which commits them together.
      */
     @Scheduled(fixedDelay = 5000) // Runs every 5 seconds
-    @Transactional
     public void processQueue() {
         long now = Instant.now().getEpochSecond();
 
@@ -57,54 +73,241 @@ public class FileProcessingService {
 
         log.info("Processing {} items from the scan queue.", items.size());
 
+        // 2. Load every catalog record this batch refers to with one query per directory.
+        //    The BatchView also tracks changes made below, which aren't committed until step 4.
+        long lookupStart = System.nanoTime();
+        BatchView batchView = new BatchView();
+        Set<Path> paths = items.stream().map(item -> Paths.get(item.getPath())).collect(Collectors.toSet());
+        Map<Path, FileRecord> known = directoryService.findFiles(paths);
+        paths.forEach(p -> batchView.byPath.put(p, Optional.ofNullable(known.get(p))));
+        long lookupMs = (System.nanoTime() - lookupStart) / 1_000_000;
+
+        // 3. Work out each item's new catalog state (null means there is nothing to store).
+        Map<ScanQueueItem, FileRecord> results = new LinkedHashMap<>();
         for (ScanQueueItem item : items) {
             try {
-                handleFileTask(item.getPath());
-                scanQueueItemRepository.delete(item); // Task succeeded, remove from queue.
+                results.put(item, handleFileTask(item, batchView));
             } catch (Exception e) {
                 log.error("Failed to process file task for path: {}", item.getPath(), e);
                 requeueFailedTask(item); // Task failed, requeue for later.
             }
         }
+
+        // 4. Write the batch back and wait for it to commit, so the next run doesn't pick up the
+        //    same items again. The writer isolates a failing write, so only its items are requeued.
+        long writeStart = System.nanoTime();
+        writeBatch(results, batchView.staleIndexIds).forEach((item, write) -> {
+            try {
+                write.join();
+            } catch (CompletionException e) {
+                log.error("Failed to store file task for path: {}", item.getPath(), e.getCause());
+                requeueFailedTask(item); // Task failed, requeue for later.
+            }
+        });
+        long writeMs = (System.nanoTime() - writeStart) / 1_000_000;
+        log.info("Catalog batch of {} items: lookup {} ms, write {} ms.", items.size(), lookupMs, writeMs);
     }
 
     /**
      * Processes a single file path from the queue. This contains the core logic from QueueWorker.java.
+     * A path we have never seen is first checked against recently vanished files, so a move or rename
+     * keeps its existing record (labels, AI results, history) instead of starting over.
      */
-    private void handleFileTask(String pathStr) throws IOException, NoSuchAlgorithmException {
-        Path path = Paths.get(pathStr);
-        FileRecord fileRecord = fileRecordRepository.findByPath(pathStr)
-                .orElse(new FileRecord()); // Create a new record if it doesn't exist.
-
-        fileRecord.setPath(pathStr);
-        fileRecord.setParentPath(path.getParent() != null ? path.getParent().toString() : "");
-        fileRecord.setLastScannedUnix(Instant.now().getEpochSecond());
+    private FileRecord handleFileTask(ScanQueueItem item, BatchView batchView) throws IOException, NoSuchAlgorithmException {
+        Path path = Paths.get(item.getPath());
+        Optional<FileRecord> existing = batchView.byPath.get(path);
 
         if (!Files.exists(path)) {
+            // Nothing to record for a file we never cataloged, e.g. the old half of a move
+            // that has already been paired up with its new path.
+            if (existing.isEmpty()) {
+                return null;
+            }
+            FileRecord fileRecord = existing.get();
+            // Keep the last known size so a later CREATE can still be matched against this record.
             fileRecord.setKind("missing");
-            fileRecord.setSizeBytes(0);
+            fileRecord.setLastScannedUnix(Instant.now().getEpochSecond());
+            batchView.staleIndexIds.add(fileRecord.getId()); // search shouldn't find it anymore
+            return fileRecord;
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        long mtimeUnix = attrs.lastModifiedTime().toMillis() / 1000;
+        String hash = null;
+
+        FileRecord fileRecord;
+        if (existing.isPresent()) {
+            fileRecord = existing.get();
         } else {
-            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
-            fileRecord.setSizeBytes(attrs.size());
-            fileRecord.setMtimeUnix(attrs.lastModifiedTime().toMillis() / 1000);
-            fileRecord.setCtimeUnix(attrs.creationTime().toMillis() / 1000);
+            Optional<FileRecord> moved = moveDetectionService.matchByIdentity(path, attrs, batchView.movedIds);
+            if (moved.isEmpty()) {
+                hash = calculateSha256(path, 256 * 1024 * 1024); // 256MB limit
+                moved = moveDetectionService.matchByContent(path, attrs.size(), hash, batchView.movedIds);
+            }
+            if (moved.isPresent()) {
+                fileRecord = batchView.sameInstance(moved.get());
+                batchView.byPath.put(directoryService.pathOf(fileRecord), Optional.empty()); // the old path is now vacant
+                batchView.movedIds.add(fileRecord.getId());
+                moveDetectionService.applyMove(fileRecord, path);
+            } else {
+                fileRecord = new FileRecord(); // Create a new record if it doesn't exist.
+            }
+        }
+
+        // Unchanged content (same size and mtime as last time, including a freshly moved file)
+        // doesn't need to be hashed again.
+        String previousHash = fileRecord.getContentHash();
+        boolean unchanged = fileRecord.getContentHash() != null
+                && fileRecord.getSizeBytes() == attrs.size()
+                && fileRecord.getMtimeUnix() == mtimeUnix;
 
-            String ext = getFileExtension(path);
-            fileRecord.setExt(ext);
-            fileRecord.setKind(detectKindFromExtension(ext)); // Simplified kind detection
+        directoryService.place(fileRecord, path);
+        fileRecord.setLastScannedUnix(Instant.now().getEpochSecond());
+        fileRecord.setSizeBytes(attrs.size());
+        fileRecord.setMtimeUnix(mtimeUnix);
+        fileRecord.setCtimeUnix(attrs.creationTime().toMillis() / 1000);
+        fileRecord.setFileKey(attrs.fileKey() != null ? attrs.fileKey().toString() : null);
+
+        String ext = getFileExtension(path);
+        fileRecord.setExt(ext);
+        fileRecord.setKind(detectKindFromExtension(ext)); // Simplified kind detection
 
-            // Calculate content hash (from QueueWorker's handleImageDeep logic)
-            String hash = calculateSha256(path, 256 * 1024 * 1024); // 256MB limit
+        // Calculate content hash (from QueueWorker's handleImageDeep logic)
+        if (hash == null && !unchanged) {
+            hash = calculateSha256(path, 256 * 1024 * 1024); // 256MB limit
+        }
+        if (hash != null) {
             fileRecord.setContentHash(hash);
         }
 
+        // The indexed text was extracted from the old content, so a file that moved with different
+        // content (or was edited in place) leaves the search index until it is extracted again.
+        // A file that moved unchanged keeps its entry, even if this batch first marked it missing.
+        if (fileRecord.getId() != null) {
+            if (unchanged || Objects.equals(hash, previousHash)) {
+                batchView.staleIndexIds.remove(fileRecord.getId());
+            } else {
+                batchView.staleIndexIds.add(fileRecord.getId());
+            }
+        }
+
+        batchView.byPath.put(path, Optional.of(fileRecord));
+        return fileRecord;
+    }
+
+    /**
+     * Records one processQueue batch has already changed but the PersistenceWriter hasn't committed yet.
+     * Records moved in this batch still show their old path in the database, so they are also kept
+     * out of move detection to avoid pairing the same record twice. Records whose search index entry
+     * no longer matches the file are dropped from the index when they are written.
+     */
+    private static final class BatchView {
+        final Map<Path, Optional<FileRecord>> byPath = new HashMap<>();
+        final Set<Long> movedIds = new HashSet<>();
+        final Set<Long> staleIndexIds = new HashSet<>();
+
+        // If this batch already holds the record (e.g. it just marked the old path missing),
+        // keep working on that instance so the batch never writes two versions of one row.
+        FileRecord sameInstance(FileRecord fileRecord) {
+            return byPath.values().stream()
+                    .flatMap(Optional::stream)
+                    .filter(r -> r.getId() != null && r.getId().equals(fileRecord.getId()))
+                    .findFirst()
+                    .orElse(fileRecord);
+        }
+    }
+
+    /**
+     * Hands the batch's results to the PersistenceWriter as one command, which stores every record and
+     * removes the queue items they answer in the same transaction, so a task is only dequeued once its
+     * result is in the catalog. The records that already exist are loaded into that transaction's
+     * persistence context up front with one query, so merging them doesn't cost a SELECT each, and the
+     * inserts/updates go out as JDBC batches. Records in staleIndexIds lose their content_fts row in the
+     * same transaction, so search never lists a removed file or text the file no longer holds.
+     * If the batch fails, each record is written again in a command of its own, which the writer
+     * isolates, so only the items whose write fails are requeued.
+     *
+     * @param results       Each item's new catalog state (null means there is nothing to store).
+     * @param staleIndexIds Ids of records to drop from the search index.
+     * @return Each item's write, completed once it has committed.
+     */
+    private Map<ScanQueueItem, CompletableFuture<Void>> writeBatch(Map<ScanQueueItem, FileRecord> results, Set<Long> staleIndexIds) {
+        // The same record shows up twice when its path was queued twice; it's written once, for both items.
+        Map<FileRecord, List<ScanQueueItem>> itemsByRecord = new IdentityHashMap<>();
+        List<FileRecord> records = new ArrayList<>(); // in processing order
+        List<ScanQueueItem> nothingToStore = new ArrayList<>();
+        results.forEach((item, fileRecord) -> {
+            if (fileRecord == null) {
+                nothingToStore.add(item);
+            } else {
+                itemsByRecord.computeIfAbsent(fileRecord, r -> {
+                    records.add(r);
+                    return new ArrayList<>();
+                }).add(item);
+            }
+        });
+        // A retried insert starts over from the id the record had here, see PersistenceWriter.
+        Map<FileRecord, Long> ids = new IdentityHashMap<>();
+        records.forEach(fileRecord -> ids.put(fileRecord, fileRecord.getId()));
+
+        List<Long> existingIds = records.stream().map(ids::get).filter(Objects::nonNull).toList();
+        CompletableFuture<Void> together = persistenceWriter.submit("file batch of " + results.size(), () -> {
+            if (!existingIds.isEmpty()) {
+                fileRecordRepository.findAllById(existingIds);
+            }
+            for (FileRecord fileRecord : records) {
+                store(fileRecord, ids.get(fileRecord), staleIndexIds, itemsByRecord.get(fileRecord));
+            }
+            if (!nothingToStore.isEmpty()) {
+                scanQueueItemRepository.deleteAllInBatch(nothingToStore);
+            }
+        });
+        Map<ScanQueueItem, CompletableFuture<Void>> writes = new LinkedHashMap<>();
+        try {
+            together.join();
+            results.keySet().forEach(item -> writes.put(item, together));
+            return writes;
+        } catch (CompletionException e) {
+            log.warn("Catalog batch of {} items failed ({}), storing them one by one.", results.size(), e.getCause().getMessage());
+        }
+
+        for (FileRecord fileRecord : records) {
+            List<ScanQueueItem> answered = itemsByRecord.get(fileRecord);
+            CompletableFuture<Void> write = persistenceWriter.submit("file task " + answered.get(0).getPath(),
+                    () -> store(fileRecord, ids.get(fileRecord), staleIndexIds, answered));
+            answered.forEach(item -> writes.put(item, write));
+        }
+        if (!nothingToStore.isEmpty()) {
+            CompletableFuture<Void> dequeue = persistenceWriter.submit("dequeue", () -> scanQueueItemRepository.deleteAllInBatch(nothingToStore));
+            nothingToStore.forEach(item -> writes.put(item, dequeue));
+        }
+        return writes;
+    }
+
+    /**
+     * Runs on the writer: saves one record, drops its stale search entry and dequeues the items it answers.
+     */
+    private void store(FileRecord fileRecord, Long id, Set<Long> staleIndexIds, List<ScanQueueItem> answered) {
+        fileRecord.setId(id);
         fileRecordRepository.save(fileRecord);
+        if (staleIndexIds.contains(id)) {
+            contentSearchRepository.delete(id);
+        }
+        scanQueueItemRepository.deleteAllInBatch(answered); // Tasks succeeded, remove from queue.
     }
 
+    /**
+     * Puts a task back on the queue for a later attempt. If even that fails, its row is still in the
+     * queue as it was and the next run simply picks it up again.
+     */
     private void requeueFailedTask(ScanQueueItem item) {
         item.setAttempts(item.getAttempts() + 1);
         item.setNotBeforeUnix(Instant.now().getEpochSecond() + 300); // Try again in 5 minutes
-        scanQueueItemRepository.save(item);
+        try {
+            persistenceWriter.enqueue(item).join();
+        } catch (CompletionException e) {
+            log.error("Failed to requeue file task for path: {}", item.getPath(), e.getCause());
+        }
     }
 
     // --- Helper methods from the original QueueWorker ---
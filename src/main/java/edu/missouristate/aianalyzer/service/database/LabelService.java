@@ -5,51 +5,103 @@ import edu.missouristate.aianalyzer.model.database.LabelHistory;
 import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
 import edu.missouristate.aianalyzer.repository.database.LabelHistoryRepository; // You will create this repository next
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 /*
     After ProcessFile.java gets a result from the AI, it needs a way to permanently store that result
     This service will be responsible for updating the ai_safety and ai_response columns a FileRecord entity
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LabelService {
 
+    private static final int MAX_AI_RESPONSE_CHARS = 1024; // the length of FileRecord.aiResponse
+
     private final FileRecordRepository fileRecordRepository;
     private final LabelHistoryRepository labelHistoryRepository; // Add this dependency
+    private final PersistenceWriter persistenceWriter;
+    private final DirectoryService directoryService;
 
     /**
      * Applies a label (like an AI classification) to a file record and saves a history of the event.
+     * The update runs on the PersistenceWriter, batched together with other pending writes.
      * @param path The full path of the file.
      * @param label The label to apply (e.g., "Safe", "Malicious").
      * @param confidence A score representing the confidence in the label.
      * @param source The origin of the label (e.g., "Gemini-AI").
+     * @return A future that completes once the label has been committed; a failed write is also logged here.
+     * @throws IllegalArgumentException if the file isn't in the database.
      */
-    @Transactional // This annotation handles database transactions for us automatically.
-    public void applyLabel(String path, String label, Double confidence, String source) {
-        long now = Instant.now().getEpochSecond();
-
+    public CompletableFuture<Void> applyLabel(String path, String label, Double confidence, String source) {
         // 1. Find the file record in the database.
-        FileRecord fileRecord = fileRecordRepository.findByPath(path)
+        long fileId = findFileId(path);
+        return logged(persistenceWriter.submit("apply label " + path, () -> {
+            long now = Instant.now().getEpochSecond();
+
+            // 2. Update the main file record with the new label information.
+            FileRecord fileRecord = reload(fileId, path);
+            fileRecord.setTypeLabel(label);
+            fileRecord.setTypeLabelConfidence(confidence);
+            fileRecord.setTypeLabelSource(source);
+            fileRecord.setTypeLabelUpdatedUnix(now);
+            fileRecordRepository.save(fileRecord); // Save the changes.
+
+            // 3. Create a new history entry to log this event.
+            LabelHistory history = new LabelHistory();
+            history.setFileId(fileId);
+            history.setLabel(label);
+            history.setConfidence(confidence);
+            history.setSource(source);
+            history.setCreatedUnix(now);
+            labelHistoryRepository.save(history); // Save the new history record.
+        }), "label", path);
+    }
+
+    /**
+     * Stores the AI's summary of a file in its ai_response column, on the PersistenceWriter.
+     * @param path The full path of the file.
+     * @param response The AI's answer; anything past the column's 1024 characters is cut off.
+     * @return A future that completes once the summary has been committed; a failed write is also logged here.
+     * @throws IllegalArgumentException if the file isn't in the database.
+     */
+    public CompletableFuture<Void> applyAiResponse(String path, String response) {
+        long fileId = findFileId(path);
+        String text = response.strip();
+        String stored = text.length() > MAX_AI_RESPONSE_CHARS ? text.substring(0, MAX_AI_RESPONSE_CHARS) : text;
+        return logged(persistenceWriter.submit("apply AI response " + path, () -> {
+            FileRecord fileRecord = reload(fileId, path);
+            fileRecord.setAiResponse(stored);
+            fileRecordRepository.save(fileRecord);
+        }), "AI response", path);
+    }
+
+    // --- Helper Methods ---
+
+    private long findFileId(String path) {
+        return directoryService.findFile(Paths.get(path))
+                .orElseThrow(() -> new IllegalArgumentException("No such file in database: " + path))
+                .getId();
+    }
+
+    /**
+     * Reads the record on the writer, inside the command, so every attempt starts from the committed row.
+     */
+    private FileRecord reload(long fileId, String path) {
+        return fileRecordRepository.findById(fileId)
                 .orElseThrow(() -> new IllegalArgumentException("No such file in database: " + path));
+    }
 
-        // 2. Update the main file record with the new label information.
-        fileRecord.setTypeLabel(label);
-        fileRecord.setTypeLabelConfidence(confidence);
-        fileRecord.setTypeLabelSource(source);
-        fileRecord.setTypeLabelUpdatedUnix(now);
-        fileRecordRepository.save(fileRecord); // Save the changes.
-
-        // 3. Create a new history entry to log this event.
-        LabelHistory history = new LabelHistory();
-        history.setPath(path);
-        history.setLabel(label);
-        history.setConfidence(confidence);
-        history.setSource(source);
-        history.setCreatedUnix(now);
-        labelHistoryRepository.save(history); // Save the new history record.
+    private static CompletableFuture<Void> logged(CompletableFuture<Void> write, String what, String path) {
+        return write.whenComplete((ignored, e) -> {
+            if (e != null) {
+                log.warn("Could not store {} of {}: {}", what, path, e.getMessage());
+            }
+        });
     }
 }
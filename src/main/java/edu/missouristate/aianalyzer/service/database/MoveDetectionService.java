@@ -0,0 +1,118 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/*
+    A move or rename reaches us as a DELETE of the old path plus a CREATE of the new one.
+    This service pairs those two halves back up so the existing FileRecord (and its AI results)
+    is carried over to the new path instead of being re-hashed and re-labeled from scratch.
+ */
+@Slf4j
+@Service
+public class MoveDetectionService {
+
+    private final FileRecordRepository fileRecordRepository;
+    private final DirectoryService directoryService;
+    private final long windowSeconds;
+
+    public MoveDetectionService(FileRecordRepository fileRecordRepository,
+                                DirectoryService directoryService,
+                                @Value("${scan.move-detection.window-seconds:900}") long windowSeconds) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.directoryService = directoryService;
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * Looks for the record a newly-seen file was moved from, using only cheap metadata:
+     * the OS file key (inode) first, then an unambiguous size + mtime match.
+     *
+     * @param path  The new location of the file.
+     * @param attrs The file's attributes, already read by the caller.
+     * @param claimedIds Ids of records already paired with another path but not yet saved.
+     * @return The record of the vanished file this one replaces, or empty if it looks genuinely new.
+     */
+    public Optional<FileRecord> matchByIdentity(Path path, BasicFileAttributes attrs, Set<Long> claimedIds) {
+        Object fileKey = attrs.fileKey();
+
+        // 1. Same inode and same size: this is the same file under a different name.
+        if (fileKey != null) {
+            Optional<FileRecord> byKey = fileRecordRepository.findAllByFileKey(fileKey.toString()).stream()
+                    .filter(r -> r.getSizeBytes() == attrs.size())
+                    .filter(r -> !claimedIds.contains(r.getId()) && hasVanished(r, path))
+                    .findFirst();
+            if (byKey.isPresent()) {
+                return byKey;
+            }
+        }
+
+        // 2. Platforms without a file key (e.g. Windows) still keep size and mtime across a move.
+        //    Only trust this when exactly one vanished file matches; otherwise fall back to hashing.
+        long mtimeUnix = attrs.lastModifiedTime().toMillis() / 1000;
+        List<FileRecord> bySizeAndTime = fileRecordRepository.findAllBySizeBytesAndMtimeUnix(attrs.size(), mtimeUnix).stream()
+                .filter(r -> !claimedIds.contains(r.getId()) && hasVanished(r, path))
+                .toList();
+        return bySizeAndTime.size() == 1 ? Optional.of(bySizeAndTime.get(0)) : Optional.empty();
+    }
+
+    /**
+     * Fallback for when the metadata match was missing or ambiguous: pairs the new file with a
+     * vanished record that has the same size and content hash.
+     *
+     * @param path        The new location of the file.
+     * @param sizeBytes   The file's size in bytes.
+     * @param contentHash The file's content hash.
+     * @param claimedIds  Ids of records already paired with another path but not yet saved.
+     * @return The most recently scanned matching record, or empty if there is none.
+     */
+    public Optional<FileRecord> matchByContent(Path path, long sizeBytes, String contentHash, Set<Long> claimedIds) {
+        if (contentHash == null) {
+            return Optional.empty();
+        }
+        return fileRecordRepository.findAllBySizeBytesAndContentHash(sizeBytes, contentHash).stream()
+                .filter(r -> !claimedIds.contains(r.getId()) && hasVanished(r, path))
+                .max(Comparator.comparingLong(FileRecord::getLastScannedUnix));
+    }
+
+    /**
+     * Moves an existing record to its new path in place, keeping its id, labels and AI results.
+     * Label history is keyed by the record's id, so it follows along. Saving the record
+     * itself is left to the caller.
+     *
+     * @param fileRecord The record of the file before it moved.
+     * @param newPath    The file's new location.
+     */
+    public void applyMove(FileRecord fileRecord, Path newPath) {
+        Path oldPath = directoryService.pathOf(fileRecord);
+        directoryService.place(fileRecord, newPath);
+        log.debug("Detected move {} -> {}", oldPath, newPath);
+    }
+
+    /**
+     * A record is a valid move source if its file is gone from disk: either it was already marked
+     * missing within the pairing window, or its DELETE event simply hasn't been processed yet.
+     */
+    private boolean hasVanished(FileRecord fileRecord, Path newPath) {
+        Path oldPath = directoryService.pathOf(fileRecord);
+        if (newPath.equals(oldPath)) {
+            return false;
+        }
+        if ("missing".equals(fileRecord.getKind())) {
+            return fileRecord.getLastScannedUnix() >= Instant.now().getEpochSecond() - windowSeconds;
+        }
+        return !Files.exists(oldPath);
+    }
+}
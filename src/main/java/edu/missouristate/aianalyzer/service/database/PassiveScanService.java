@@ -1,7 +1,6 @@
 package edu.missouristate.aianalyzer.service.database;
 
 import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
-import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,7 +27,8 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 @Service
 public class PassiveScanService {
 
-    private final ScanQueueItemRepository scanQueueItemRepository;
+    private final PersistenceWriter persistenceWriter;
+    private final ScanExclusions scanExclusions;
     private final List<Path> roots;
     private WatchService watcher;
 
@@ -41,9 +41,11 @@ public class PassiveScanService {
     );
 
     @Autowired
-    public PassiveScanService(ScanQueueItemRepository scanQueueItemRepository,
+    public PassiveScanService(PersistenceWriter persistenceWriter,
+                              ScanExclusions scanExclusions,
                               @Value("${scan.roots}") List<String> scanRoots) {
-        this.scanQueueItemRepository = scanQueueItemRepository;
+        this.persistenceWriter = persistenceWriter;
+        this.scanExclusions = scanExclusions;
         // Convert the String paths from application.properties into Path objects.
         this.roots = scanRoots.stream().map(Paths::get).toList();
     }
@@ -97,13 +99,20 @@ public class PassiveScanService {
                         continue;
                     }
                     Path changedFile = dir.resolve((Path) event.context());
-                    if (Files.isRegularFile(changedFile) && isAllowedByExtension(changedFile)) {
+                    // Deletes must reach the queue too, otherwise moves and renames can't be paired up.
+                    boolean deleted = event.kind() == StandardWatchEventKinds.ENTRY_DELETE;
+                    if ((deleted || Files.isRegularFile(changedFile)) && isAllowedByExtension(changedFile)
+                            && !scanExclusions.isExcluded(changedFile)) {
                         System.out.println("Detected change: " + event.kind().name() + " on " + changedFile);
                         itemsToQueue.add(createQueueItem(changedFile));
                     }
                 }
-                if (!itemsToQueue.isEmpty()) {
-                    scanQueueItemRepository.saveAll(itemsToQueue);
+                // The writer commits them together; a retried attempt starts again from these fresh items.
+                for (ScanQueueItem item : itemsToQueue) {
+                    persistenceWriter.enqueue(item).exceptionally(e -> {
+                        System.err.println("Could not enqueue watcher event for " + item.getPath() + ": " + e.getMessage());
+                        return null;
+                    });
                 }
                 key.reset();
             }
@@ -148,7 +157,7 @@ public class PassiveScanService {
         Files.walkFileTree(start, new SimpleFileVisitor<>() {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                if (EXCLUDE_DIRS.contains(dir.getFileName().toString().toLowerCase())) {
+                if (EXCLUDE_DIRS.contains(dir.getFileName().toString().toLowerCase()) || scanExclusions.isExcluded(dir)) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
                 dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
@@ -0,0 +1,248 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.model.database.ErrorLog;
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.model.database.LabelHistory;
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import edu.missouristate.aianalyzer.repository.database.ErrorLogRepository;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import edu.missouristate.aianalyzer.repository.database.LabelHistoryRepository;
+import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+    The single owner of every SQLite write.
+    Scanners, watchers, the queue consumer, LabelService and ErrorLogService all hand their mutations
+    to this component instead of opening their own transactions. One background thread drains the
+    submitted commands and applies them in large transactions (up to maxBatch commands, or whatever
+    arrived within lingerMs), turning thousands of tiny commits into a few big ones.
+
+    A batch that fails is rolled back and split in halves until the failing command is alone, so one
+    bad write fails only its own caller and costs a handful of extra transactions, not one per command.
+    A command can therefore run more than once. Each attempt gets a fresh persistence context, and
+    commands look up what they change inside the mutation, or (the typed commands) start again from
+    the state the caller handed in. This is the only place writes are retried.
+ */
+@Slf4j
+@Component
+public class PersistenceWriter {
+
+    private final TransactionTemplate transactionTemplate;
+    private final FileRecordRepository fileRecordRepository;
+    private final LabelHistoryRepository labelHistoryRepository;
+    private final ErrorLogRepository errorLogRepository;
+    private final ScanQueueItemRepository scanQueueItemRepository;
+
+    private final int maxBatch;
+    private final long lingerMs;
+
+    private final BlockingQueue<Command<?>> commands = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public PersistenceWriter(PlatformTransactionManager transactionManager,
+                             FileRecordRepository fileRecordRepository,
+                             LabelHistoryRepository labelHistoryRepository,
+                             ErrorLogRepository errorLogRepository,
+                             ScanQueueItemRepository scanQueueItemRepository,
+                             CatalogMigration catalogMigration, // no writes before an old catalog is migrated
+                             @Value("${persistence.writer.max-batch:500}") int maxBatch,
+                             @Value("${persistence.writer.linger-ms:50}") long lingerMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.fileRecordRepository = fileRecordRepository;
+        this.labelHistoryRepository = labelHistoryRepository;
+        this.errorLogRepository = errorLogRepository;
+        this.scanQueueItemRepository = scanQueueItemRepository;
+        this.maxBatch = maxBatch;
+        this.lingerMs = lingerMs;
+    }
+
+    // A queued mutation plus the future its caller is holding.
+    private record Command<T>(String name, Supplier<T> mutation, CompletableFuture<T> result) {
+        void complete(Object value) {
+            @SuppressWarnings("unchecked") T typed = (T) value;
+            result.complete(typed);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::runLoop, "SQLite-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops accepting new batches once the queue is empty and waits for the last one to commit,
+     * so everything submitted before shutdown is flushed while the datasource is still open.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!commands.isEmpty()) {
+            log.warn("Persistence writer stopped with {} writes still queued.", commands.size());
+        }
+    }
+
+    /**
+     * Queues an arbitrary mutation. It runs on the writer thread inside a shared transaction,
+     * so it may freely use repositories, which join that transaction. If that transaction is rolled
+     * back because of another command, the mutation runs again in a smaller one, so it should read the
+     * rows it changes itself rather than reuse entities an earlier attempt may have modified.
+     *
+     * @param name     A short description used in logs if the mutation fails.
+     * @param mutation The work to perform.
+     * @return A future completed once the transaction containing the mutation has committed.
+     */
+    public <T> CompletableFuture<T> submit(String name, Supplier<T> mutation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        commands.add(new Command<>(name, mutation, result));
+        return result;
+    }
+
+    /**
+     * Same as {@link #submit(String, Supplier)} for mutations that produce no value.
+     */
+    public CompletableFuture<Void> submit(String name, Runnable mutation) {
+        return submit(name, () -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    // --- Typed commands for the common mutations ---
+    // An attempt that is rolled back leaves the id it assigned on the entity. Every attempt puts back
+    // the id the caller handed in, so a retried insert is inserted again instead of merged.
+
+    public CompletableFuture<FileRecord> upsertFileRecord(FileRecord fileRecord) {
+        Long id = fileRecord.getId();
+        return submit("upsert file " + fileRecord.getName(), () -> {
+            fileRecord.setId(id);
+            return fileRecordRepository.save(fileRecord);
+        });
+    }
+
+    public CompletableFuture<LabelHistory> addLabelHistory(LabelHistory history) {
+        Long id = history.getId();
+        return submit("label history " + history.getFileId(), () -> {
+            history.setId(id);
+            return labelHistoryRepository.save(history);
+        });
+    }
+
+    public CompletableFuture<ErrorLog> logError(ErrorLog error) {
+        Long id = error.getId();
+        return submit("error log " + error.getComponent(), () -> {
+            error.setId(id);
+            return errorLogRepository.save(error);
+        });
+    }
+
+    public CompletableFuture<ScanQueueItem> enqueue(ScanQueueItem item) {
+        Long id = item.getId();
+        return submit("enqueue " + item.getPath(), () -> {
+            item.setId(id);
+            return scanQueueItemRepository.save(item);
+        });
+    }
+
+    // --- Writer loop ---
+
+    private void runLoop() {
+        // Keep going after shutdown() until the queue has been drained.
+        while (running || !commands.isEmpty()) {
+            try {
+                List<Command<?>> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    applyBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error in persistence writer loop", e);
+            }
+        }
+    }
+
+    /**
+     * Waits briefly for the first command, then keeps collecting until the batch is full or the
+     * linger window since that first command has passed.
+     */
+    private List<Command<?>> nextBatch() throws InterruptedException {
+        List<Command<?>> batch = new ArrayList<>();
+        Command<?> first = commands.poll(200, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                commands.drainTo(batch, maxBatch - batch.size());
+                break;
+            }
+            Command<?> next = commands.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * Applies a whole batch in one transaction. If anything in it fails, the batch is rolled back
+     * and each half is applied on its own, recursively, until the failing command is alone and
+     * only its caller sees the error.
+     */
+    private void applyBatch(List<Command<?>> batch) {
+        List<Object> results = new ArrayList<>(batch.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Command<?> command : batch) {
+                    results.add(command.mutation().get());
+                }
+            });
+        } catch (Exception batchFailure) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), batchFailure);
+                return;
+            }
+            log.debug("Batch of {} writes failed ({}), splitting it.", batch.size(), batchFailure.getMessage());
+            int half = batch.size() / 2;
+            applyBatch(batch.subList(0, half));
+            applyBatch(batch.subList(half, batch.size()));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i));
+        }
+    }
+
+    private void fail(Command<?> command, Exception e) {
+        log.warn("Write '{}' failed: {}", command.name(), e.getMessage());
+        command.result().completeExceptionally(e);
+    }
+}
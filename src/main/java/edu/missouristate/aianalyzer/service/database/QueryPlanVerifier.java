@@ -0,0 +1,151 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.repository.database.ContentSearchRepository;
+import edu.missouristate.aianalyzer.repository.database.DirectoryRepository;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+    Runs EXPLAIN QUERY PLAN over the catalog queries the app issues and reports any that would read a
+    large table row by row (or sort the scan queue) instead of using an index. On a 5M-file catalog
+    such a query turns a millisecond lookup into a multi-second stall, and it is easy to introduce
+    by adding a query or dropping an index without noticing.
+
+    The statements below mirror the repository methods; the native ones are the repositories' own SQL.
+    Mode 'warn' logs problems at startup, 'fail' refuses to start, 'off' skips the check.
+ */
+@Slf4j
+@Component
+public class QueryPlanVerifier {
+
+    // Tables expected to grow with the catalog; a full scan of these is always a bug.
+    private static final Set<String> LARGE_TABLES = Set.of("files", "directories", "label_history", "scan_queue", "image_meta", "dir_rollups");
+
+    private static final Pattern SCAN = Pattern.compile("^SCAN (\\w+)");
+    private static final Pattern ALIAS = Pattern.compile("\\b(?:from|join)\\s+(\\w+)\\s+(\\w+)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PARAMETER = Pattern.compile("\\?|:\\w+");
+
+    /**
+     * @param name      Which repository method the statement stands for.
+     * @param sql       The statement, with '?' or ':name' parameters.
+     * @param noSorting Whether the statement's ORDER BY must be satisfied by an index.
+     */
+    public record CheckedQuery(String name, String sql, boolean noSorting) {
+    }
+
+    static final List<CheckedQuery> QUERIES = List.of(
+            new CheckedQuery("ScanQueueItemRepository.findAllByNotBeforeUnixLessThanEqualOrderByNotBeforeUnix",
+                    "select * from scan_queue where not_before_unix <= ? order by not_before_unix limit ?", true),
+            new CheckedQuery("FileRecordRepository.findByDirIdAndName",
+                    "select * from files where dir_id = ? and name = ?", false),
+            new CheckedQuery("FileRecordRepository.findAllByDirIdAndNameIn",
+                    "select * from files where dir_id = ? and name in (?, ?)", false),
+            new CheckedQuery("FileRecordRepository.findAllByFileKey",
+                    "select * from files where file_key = ?", false),
+            new CheckedQuery("FileRecordRepository.findAllBySizeBytesAndMtimeUnix",
+                    "select * from files where size_bytes = ? and mtime_unix = ?", false),
+            new CheckedQuery("FileRecordRepository.findAllBySizeBytesAndContentHash",
+                    "select * from files where size_bytes = ? and content_hash = ?", false),
+            new CheckedQuery("FileRecordRepository.findAllInSubtree", FileRecordRepository.SUBTREE_QUERY, false),
+            new CheckedQuery("files by type label",
+                    "select * from files where type_label = ?", false),
+            new CheckedQuery("totals per kind",
+                    "select kind, count(*), sum(size_bytes) from files group by kind", false),
+            new CheckedQuery("totals per type label",
+                    "select type_label, count(*), sum(size_bytes) from files group by type_label", false),
+            new CheckedQuery("duplicate content",
+                    "select content_hash, count(*) from files where content_hash is not null group by content_hash having count(*) > 1", false),
+            new CheckedQuery("DirectoryRepository.findByParentIdAndName",
+                    "select * from directories where parent_id = ? and name = ?", false),
+            new CheckedQuery("DirectoryRepository.findByParentIdAndName (roots)",
+                    "select * from directories where parent_id is null and name = ?", false),
+            new CheckedQuery("DirectoryRepository.findPathNames", DirectoryRepository.PATH_NAMES_QUERY, false),
+            new CheckedQuery("DirectoryRollupRepository.findById",
+                    "select * from dir_rollups where dir_id = ?", false),
+            new CheckedQuery("ContentSearchRepository.searchRanked", ContentSearchRepository.RANKED_QUERY, false),
+            new CheckedQuery("ContentSearchRepository.searchNewest", ContentSearchRepository.NEWEST_QUERY, false),
+            new CheckedQuery("label history of a file",
+                    "select * from label_history where file_id = ? order by created_unix", true)
+    );
+
+    private final JdbcTemplate readerJdbcTemplate;
+    private final String mode;
+
+    public QueryPlanVerifier(@Qualifier("readerJdbcTemplate") JdbcTemplate readerJdbcTemplate,
+                             @Value("${sqlite.query-plan-check:warn}") String mode) {
+        this.readerJdbcTemplate = readerJdbcTemplate;
+        this.mode = mode;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup() {
+        if ("off".equalsIgnoreCase(mode)) {
+            return;
+        }
+        List<String> problems = verify();
+        if (problems.isEmpty()) {
+            log.debug("All {} catalog queries use indexes.", QUERIES.size());
+            return;
+        }
+        problems.forEach(p -> log.warn("Query plan problem: {}", p));
+        if ("fail".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException(problems.size() + " catalog queries would scan large tables: " + problems);
+        }
+    }
+
+    /**
+     * Explains every checked query against the current schema.
+     *
+     * @return One message per offending plan step; empty when every query uses an index.
+     */
+    public List<String> verify() {
+        List<String> problems = new ArrayList<>();
+        for (CheckedQuery query : QUERIES) {
+            problems.addAll(check(query));
+        }
+        return problems;
+    }
+
+    // --- Helper Methods ---
+
+    private List<String> check(CheckedQuery query) {
+        // EXPLAIN only needs the statement's shape, so any literal will do for the parameters.
+        String sql = PARAMETER.matcher(query.sql()).replaceAll("1");
+        List<String> problems = new ArrayList<>();
+        for (Map<String, Object> step : readerJdbcTemplate.queryForList("explain query plan " + sql)) {
+            String detail = String.valueOf(step.get("detail"));
+            Matcher scan = SCAN.matcher(detail);
+            if (scan.find() && !detail.contains("INDEX") && LARGE_TABLES.contains(tableFor(scan.group(1), query.sql()))) {
+                problems.add(query.name() + ": " + detail);
+            }
+            if (query.noSorting() && detail.startsWith("USE TEMP B-TREE")) {
+                problems.add(query.name() + ": " + detail);
+            }
+        }
+        return problems;
+    }
+
+    // Plans name a table by its alias when it has one ("SCAN f"); map that back to the table.
+    private static String tableFor(String nameInPlan, String sql) {
+        Matcher alias = ALIAS.matcher(sql);
+        while (alias.find()) {
+            if (alias.group(2).equalsIgnoreCase(nameInPlan)) {
+                return alias.group(1).toLowerCase();
+            }
+        }
+        return nameInPlan.toLowerCase();
+    }
+}
@@ -0,0 +1,62 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.service.ai.ScratchSpace;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    The paths the app writes itself: its scratch space (see ScratchSpace), its caches (the extracted-text
+    cache, the list of uploaded objects and the extraction quarantine, wherever they are configured) and
+    anything else listed in scan.excluded-paths, such as its logs. The active scan and the passive watchers
+    skip them, so the app never queues its own output for processing, however the scan roots are set up.
+ */
+@Service
+public class ScanExclusions {
+
+    private final List<Path> excluded = new ArrayList<>();
+
+    public ScanExclusions(ScratchSpace scratchSpace,
+                          @Value("${extraction.cache.dir:cache/extracted-text}") String extractionCacheDir,
+                          @Value("${gcs.uploaded-cache:cache/uploaded-objects.txt}") String uploadedCache,
+                          @Value("${extraction.quarantine-file:cache/extraction-quarantine.txt}") String quarantineFile,
+                          @Value("${scan.excluded-paths:logs}") List<String> excludedPaths) {
+        excluded.add(scratchSpace.root());
+        excluded.add(normalize(extractionCacheDir));
+        excluded.add(normalize(uploadedCache));
+        excluded.add(normalize(quarantineFile));
+        for (String path : excludedPaths) {
+            if (!path.isBlank()) {
+                excluded.add(normalize(path.trim()));
+            }
+        }
+    }
+
+    /**
+     * @param path A file or directory found while scanning.
+     * @return Whether it is, or is under, a path the app writes itself.
+     */
+    public boolean isExcluded(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        for (Path root : excluded) {
+            if (absolute.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<Path> excluded() {
+        return List.copyOf(excluded);
+    }
+
+    // --- Helper Methods ---
+
+    private static Path normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+}
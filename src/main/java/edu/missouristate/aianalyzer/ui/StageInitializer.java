@@ -59,8 +59,14 @@ public class StageInitializer implements ApplicationListener<StageReadyEvent> {
         Button settingsButton = new Button("Settings");
 
         // --- Button Actions ---
-        drivesButton.setOnAction(e -> root.setCenter(driveView));
-        metricsButton.setOnAction(e -> root.setCenter(metricsView));
+        drivesButton.setOnAction(e -> {
+            driveView.refresh();
+            root.setCenter(driveView);
+        });
+        metricsButton.setOnAction(e -> {
+            metricsView.refresh();
+            root.setCenter(metricsView);
+        });
         suggestionsButton.setOnAction(e -> root.setCenter(suggestionsView));
         settingsButton.setOnAction(e -> root.setCenter(settingsView));
 
@@ -73,6 +79,7 @@ public class StageInitializer implements ApplicationListener<StageReadyEvent> {
         // --- Put It All Together ---
         root.setTop(navigationBar);
         root.setCenter(driveView);
+        driveView.refresh();
 
         themeService.applyTheme("msu-maroon");
 
@@ -1,18 +1,25 @@
 package edu.missouristate.aianalyzer.ui.service;
 
+import edu.missouristate.aianalyzer.model.database.DirectoryRollup;
+import edu.missouristate.aianalyzer.service.database.DirectoryRollupService;
 import org.springframework.stereotype.Service;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 /**
  * A service for interacting with the user's file system.
- * Provides methods for scanning directories and calculating sizes.
+ * Provides methods for listing directories, calculating sizes and formatting them.
  * Operations can be slow and should be run on background threads.
  */
 @Service
@@ -20,6 +27,12 @@ public class FileSystemService {
 
     private static final String[] SIZE_UNITS = {"B", "KB", "MB", "GB", "TB"};
 
+    private final DirectoryRollupService directoryRollupService;
+
+    public FileSystemService(DirectoryRollupService directoryRollupService) {
+        this.directoryRollupService = directoryRollupService;
+    }
+
     /**
      * Gets the subdirectories and files for a given path.
      * This should be run on a background thread. It safely handles null paths,
@@ -48,38 +61,68 @@ public class FileSystemService {
     }
 
     /**
-     * Calculates the total size of a directory recursively.
-     * This is a very slow operation and MUST be run on a background thread.
-     * It will safely skip any sub-directories it cannot access due to permissions.
+     * Calculates the total size of a directory.
+     * Directories the scanner has cataloged are answered from their rollup in the database (which counts
+     * the cataloged files below them). A drive that isn't cataloged reports the space used on it, and
+     * anything else falls back to walking the directory, which is a very slow operation, so this MUST
+     * still be run on a background thread.
      *
      * @param directory The file or directory to calculate the size of.
      * @return The total size in bytes. Returns 0 if the file/directory doesn't exist.
      */
-    public long calculateDirectorySize(File directory) {
-        if (directory == null || !directory.exists()) {
+    public long calculateDirectorySize(Path directory) {
+        if (directory == null || !Files.exists(directory)) {
             return 0;
         }
-
-        // Base case: if it's a file, return its length.
-        if (directory.isFile()) {
-            return directory.length();
+        Path absolute = directory.toAbsolutePath().normalize();
+        if (Files.isDirectory(absolute)) {
+            Optional<DirectoryRollup> rollup = directoryRollupService.find(absolute);
+            if (rollup.isPresent()) {
+                return rollup.get().getTotalBytes();
+            }
+            if (absolute.getParent() == null) {
+                return usedSpace(absolute);
+            }
         }
+        return walkDirectorySize(absolute);
+    }
 
-        // Recursive step: if it's a directory, sum the size of its children.
-        long size = 0;
-        File[] children = directory.listFiles();
+    /**
+     * Calculates the total size of a directory recursively, straight from the disk.
+     * Symbolic links are not followed (they can cause infinite loops), and anything
+     * that can't be read due to permissions is skipped.
+     */
+    private long walkDirectorySize(Path directory) {
+        long[] size = {0};
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile()) {
+                        size[0] += attributes.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
 
-        // Handle cases where we can't read the directory
-        if (children != null) {
-            for (File child : children) {
-                // Symbolic links can cause infinite loops. A simple check helps prevent this.
-                if (Files.isSymbolicLink(child.toPath())) {
-                    continue; // Skip symbolic links
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
                 }
-                size += calculateDirectorySize(child);
-            }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not read directory: " + directory);
+        }
+        return size[0];
+    }
+
+    // Walking a whole drive would take minutes; the file system already knows how much of it is in use.
+    private long usedSpace(Path root) {
+        try {
+            FileStore store = Files.getFileStore(root);
+            return store.getTotalSpace() - store.getUnallocatedSpace();
+        } catch (IOException e) {
+            return walkDirectorySize(root);
         }
-        return size;
     }
 
     /**
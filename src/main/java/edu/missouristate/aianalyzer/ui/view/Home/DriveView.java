@@ -1,24 +1,50 @@
 package edu.missouristate.aianalyzer.ui.view.Home;
 
+import edu.missouristate.aianalyzer.service.ai.ProcessFileService;
+import edu.missouristate.aianalyzer.service.database.CatalogStatsService;
+import edu.missouristate.aianalyzer.service.database.DirectoryService;
+import edu.missouristate.aianalyzer.service.database.LabelService;
 import edu.missouristate.aianalyzer.ui.service.FileSystemService;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+@Slf4j
 @Component
 public class DriveView extends SplitPane {
 
+    private static final Set<String> ARCHIVE_EXTENSIONS = Set.of("zip", "rar", "7z", "tar", "gz");
+
     private final FileSystemService fileSystemService;
+    private final CatalogStatsService catalogStatsService;
+    // Shows (or streams) the AI summary of the file selected in the tree.
+    private final SummaryPane summaryPane;
+
+    // Category card subtitles that come from the catalog statistics (see refresh()).
+    private final Label photosSubtitle = new Label("Loading...");
+    private final Label videosSubtitle = new Label("Loading...");
+    private final Label archivesSubtitle = new Label("Loading...");
+    private final Label documentsSubtitle = new Label("Loading...");
+    private final Label unusedSubtitle = new Label("Loading...");
+    private final Label unclassifiedSubtitle = new Label("Loading...");
 
     @Autowired
-    public DriveView(FileSystemService fileSystemService) {
+    public DriveView(FileSystemService fileSystemService, CatalogStatsService catalogStatsService,
+                     ProcessFileService processFileService, LabelService labelService, DirectoryService directoryService) {
         this.fileSystemService = fileSystemService;
+        this.catalogStatsService = catalogStatsService;
+        this.summaryPane = new SummaryPane(processFileService, labelService, directoryService);
 
         // Set up the two main panels: the drive list on the left, categories on the right.
         VBox driveTreePanel = createDriveTreePanel();
@@ -65,6 +91,8 @@ public class DriveView extends SplitPane {
             @Override
             protected void updateItem(File file, boolean empty) {
                 super.updateItem(file, empty);
+                // A reused cell may still be showing another folder's size.
+                textProperty().unbind();
                 if (empty || file == null) {
                     setText(null);
                 } else {
@@ -87,13 +115,25 @@ public class DriveView extends SplitPane {
                                     displayName, file.getUsableSpace() / 1_000_000_000.0);
                         }
 
-                        setText(textToShow);
+                        // Folders and drives add their size once it has been calculated in the background.
+                        if (getTreeItem() instanceof FileTreeItem item && !item.isLeaf()) {
+                            String name = textToShow;
+                            textProperty().bind(Bindings.createStringBinding(() -> item.sizeProperty().get() == null
+                                    ? name
+                                    : name + " - " + FileSystemService.formatSize(item.sizeProperty().get()), item.sizeProperty()));
+                        } else {
+                            setText(textToShow);
+                        }
                     }
                 }
             }
         });
 
-        panel.getChildren().addAll(header, treeView);
+        // Selecting a file shows its summary in the pane under the tree.
+        treeView.getSelectionModel().selectedItemProperty().addListener((observable, previous, selected) ->
+                summaryPane.show(selected == null ? null : selected.getValue()));
+
+        panel.getChildren().addAll(header, treeView, summaryPane);
         return panel;
     }
 
@@ -115,26 +155,54 @@ public class DriveView extends SplitPane {
         categoryGrid.setPadding(new Insets(10, 0, 0, 0));
         VBox.setVgrow(categoryGrid, Priority.ALWAYS);
 
-        // For now, just add some placeholder cards to see how it looks.
+        // Cards the catalog statistics can answer get live numbers, the rest are still placeholders.
         categoryGrid.getChildren().addAll(
-                createCategoryCard("Photos", "24,561 files"),
-                createCategoryCard("Videos", "283 GB"),
-                createCategoryCard("Archives", "1.2 GB of ZIP/RAR"),
-                createCategoryCard("Documents", "345 documents"),
-                createCategoryCard("Duplicated", "4.1 GB waste"),
-                createCategoryCard("Unused", "Oldest file: 2012"),
-                createCategoryCard("System", "Ready for cleanup"),
-                createCategoryCard("Games", "25 games found"),
-                createCategoryCard("Temp/Cache", "Clearable Cache"),
-                createCategoryCard("Unclassified", "Needs AI review")
+                createCategoryCard("Photos", photosSubtitle),
+                createCategoryCard("Videos", videosSubtitle),
+                createCategoryCard("Archives", archivesSubtitle),
+                createCategoryCard("Documents", documentsSubtitle),
+                createCategoryCard("Duplicated", new Label("4.1 GB waste")),
+                createCategoryCard("Unused", unusedSubtitle),
+                createCategoryCard("System", new Label("Ready for cleanup")),
+                createCategoryCard("Games", new Label("25 games found")),
+                createCategoryCard("Temp/Cache", new Label("Clearable Cache")),
+                createCategoryCard("Unclassified", unclassifiedSubtitle)
         );
 
         panel.getChildren().addAll(header, categoryGrid);
         return panel;
     }
 
+    // Reloads the category numbers in the background; they are read from small aggregate tables, not the catalog.
+    public void refresh() {
+        CompletableFuture.supplyAsync(catalogStatsService::snapshot)
+                .thenAccept(snapshot -> Platform.runLater(() -> showCategories(snapshot)))
+                .exceptionally(error -> {
+                    log.warn("Could not load catalog statistics", error);
+                    return null;
+                });
+    }
+
+    private void showCategories(CatalogStatsService.Snapshot snapshot) {
+        photosSubtitle.setText(String.format("%,d files", snapshot.bucket(CatalogStatsService.KIND, "image").fileCount()));
+        videosSubtitle.setText(FileSystemService.formatSize(snapshot.bucket(CatalogStatsService.KIND, "video").totalBytes()));
+        long archiveBytes = snapshot.dimension(CatalogStatsService.EXT).stream()
+                .filter(s -> ARCHIVE_EXTENSIONS.contains(s.bucket()))
+                .mapToLong(CatalogStatsService.Stat::totalBytes)
+                .sum();
+        archivesSubtitle.setText(FileSystemService.formatSize(archiveBytes) + " of ZIP/RAR");
+        documentsSubtitle.setText(String.format("%,d documents", snapshot.bucket(CatalogStatsService.KIND, "doc").fileCount()));
+        unusedSubtitle.setText(snapshot.dimension(CatalogStatsService.YEAR).stream()
+                .map(CatalogStatsService.Stat::bucket)
+                .min(String::compareTo)
+                .map(year -> "Oldest file: " + year)
+                .orElse("No files cataloged yet"));
+        long unclassified = snapshot.bucket(CatalogStatsService.LABEL, CatalogStatsService.UNCLASSIFIED).fileCount();
+        unclassifiedSubtitle.setText(String.format("%,d need AI review", unclassified));
+    }
+
     // Helper function to make one of those category cards.
-    private Node createCategoryCard(String title, String subtitle) {
+    private Node createCategoryCard(String title, Label subtitleLabel) {
         VBox cardContent = new VBox(5);
         cardContent.setAlignment(Pos.TOP_LEFT);
         cardContent.setPadding(new Insets(15));
@@ -143,7 +211,6 @@ public class DriveView extends SplitPane {
         Label titleLabel = new Label(title);
         titleLabel.getStyleClass().add("card-title");
 
-        Label subtitleLabel = new Label(subtitle);
         subtitleLabel.getStyleClass().add("card-subtitle");
         VBox.setVgrow(subtitleLabel, Priority.ALWAYS);
 
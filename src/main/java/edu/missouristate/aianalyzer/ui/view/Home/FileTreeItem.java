@@ -2,6 +2,8 @@ package edu.missouristate.aianalyzer.ui.view.Home;
 
 import edu.missouristate.aianalyzer.ui.service.FileSystemService;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.ObservableList;
 import javafx.scene.control.TreeItem;
 
@@ -24,8 +26,19 @@ public class FileTreeItem extends TreeItem<File> {
         return t;
     });
 
+    // Folder sizes get their own thread: a folder the scanner hasn't cataloged is measured by walking it,
+    // and that shouldn't hold up opening other folders.
+    private static final ExecutorService sizeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable);
+        t.setDaemon(true);
+        return t;
+    });
+
     private final FileSystemService fileSystemService;
     private boolean isChildrenLoaded = false;
+    private boolean isSizeRequested = false;
+    // Total size of the folder in bytes, null until it has been calculated.
+    private final ReadOnlyObjectWrapper<Long> size = new ReadOnlyObjectWrapper<>();
 
     public FileTreeItem(File file, FileSystemService fileSystemService) {
         super(file);
@@ -75,6 +88,28 @@ public class FileTreeItem extends TreeItem<File> {
         });
     }
 
+    /**
+     * The folder's total size. Like the children, it's only calculated (in the background) the
+     * first time something asks for it, which is when the folder's row is first shown.
+     *
+     * @return The size in bytes, holding null until it is known and always null for files.
+     */
+    public ReadOnlyObjectProperty<Long> sizeProperty() {
+        if (!isSizeRequested && !isLeaf()) {
+            isSizeRequested = true;
+            sizeExecutor.submit(() -> {
+                try {
+                    long bytes = fileSystemService.calculateDirectorySize(getValue().toPath());
+                    Platform.runLater(() -> size.set(bytes));
+                } catch (Exception e) {
+                    // Same as a failed folder listing: print it and leave the size blank.
+                    e.printStackTrace();
+                }
+            });
+        }
+        return size.getReadOnlyProperty();
+    }
+
     @Override
     public boolean isLeaf() {
         // A 'leaf' is an item that can't be expanded. In our case, that's a file.
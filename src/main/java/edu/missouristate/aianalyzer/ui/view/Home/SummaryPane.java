@@ -0,0 +1,153 @@
+package edu.missouristate.aianalyzer.ui.view.Home;
+
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.service.ai.ProcessFileService;
+import edu.missouristate.aianalyzer.service.database.DirectoryService;
+import edu.missouristate.aianalyzer.service.database.LabelService;
+import javafx.application.Platform;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Shows the AI summary of the file selected in the drive tree. A file the catalog already has a summary for
+// (and that hasn't changed since) shows that one; the model is only asked for files without one, or when
+// "Summarize again" is pressed. A new summary is written into the text area piece by piece as the model
+// produces it, so the first words show up long before the answer is complete. Once it is complete, it's
+// saved to the catalog through the LabelService.
+@Slf4j
+public class SummaryPane extends VBox {
+
+    private final ProcessFileService processFileService;
+    private final LabelService labelService;
+    private final DirectoryService directoryService;
+
+    private final Label status = new Label("Select a file to summarize it.");
+    private final TextArea summary = new TextArea();
+    private final Button summarizeAgain = new Button("Summarize again");
+
+    // Bumped for each file shown, so pieces still arriving for a file that's no longer selected are dropped,
+    // and a file the selection has already moved past is never sent to the model.
+    // Only changed on the JavaFX thread.
+    private volatile long shown;
+
+    public SummaryPane(ProcessFileService processFileService, LabelService labelService, DirectoryService directoryService) {
+        super(5);
+        this.processFileService = processFileService;
+        this.labelService = labelService;
+        this.directoryService = directoryService;
+
+        Label header = new Label("AI Summary");
+        header.getStyleClass().add("header-label");
+        status.getStyleClass().add("card-subtitle");
+
+        summary.setEditable(false);
+        summary.setWrapText(true);
+        summary.setPrefRowCount(4);
+        VBox.setVgrow(summary, Priority.SOMETIMES);
+
+        summarizeAgain.setVisible(false);
+        summarizeAgain.managedProperty().bind(summarizeAgain.visibleProperty());
+
+        getChildren().addAll(header, status, summary, summarizeAgain);
+    }
+
+    // Shows a file's saved summary, or starts summarizing it if it has none; anything still streaming for
+    // the previous file is ignored from now on. Must be called on the JavaFX thread.
+    public void show(File file) {
+        long current = ++shown;
+        summary.clear();
+        summarizeAgain.setVisible(false);
+        if (file == null || !file.isFile()) {
+            status.setText("Select a file to summarize it.");
+            return;
+        }
+        status.setText("Loading " + file.getName() + "...");
+        // The catalog lookup is a database query, so it stays off the JavaFX thread too.
+        CompletableFuture.supplyAsync(() -> savedSummary(file))
+                .whenComplete((saved, error) -> Platform.runLater(() -> {
+                    if (current != shown) {
+                        return;
+                    }
+                    if (error != null) {
+                        log.warn("Couldn't look up the saved summary of {}: {}", file, unwrap(error).getMessage());
+                    }
+                    if (error == null && saved.isPresent()) {
+                        status.setText(file.getName() + " (saved summary)");
+                        summary.setText(saved.get());
+                        summarizeAgain.setOnAction(e -> summarize(file, ++shown));
+                        summarizeAgain.setVisible(true);
+                    } else {
+                        summarize(file, current);
+                    }
+                }));
+    }
+
+    // Streams a new summary from the model. Must be called on the JavaFX thread.
+    private void summarize(File file, long current) {
+        summary.clear();
+        summarizeAgain.setVisible(false);
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String fileType = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        String path = file.getAbsolutePath();
+        status.setText("Summarizing " + name + "...");
+
+        // Reading and preparing the file happens on ProcessFileService's thread; only the
+        // Platform.runLater callbacks below touch the UI.
+        processFileService.streamFileAIResponseAsync(file.toPath(), fileType,
+                        chunk -> Platform.runLater(() -> {
+                            if (current == shown) {
+                                status.setText(name);
+                                summary.appendText(chunk);
+                            }
+                        }),
+                        () -> current == shown)
+                .whenComplete((text, error) -> {
+                    if (error != null && unwrap(error) instanceof CancellationException) {
+                        log.debug("Not summarizing {}: the selection moved on.", path);
+                        return;
+                    }
+                    if (error != null) {
+                        log.warn("Couldn't summarize {}: {}", path, unwrap(error).getMessage());
+                        Platform.runLater(() -> {
+                            if (current == shown) {
+                                status.setText("Couldn't summarize " + name + ": " + unwrap(error).getMessage());
+                            }
+                        });
+                        return;
+                    }
+                    try {
+                        labelService.applyAiResponse(path, text); // logs its own failures
+                    } catch (IllegalArgumentException notCataloged) {
+                        // Files not cataloged yet (say, outside the scanned roots) are summarized but not saved.
+                        log.debug("Summary of {} not saved: {}", path, notCataloged.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * @return The summary stored in the catalog, if the file has one and hasn't changed since it was cataloged.
+     */
+    private Optional<String> savedSummary(File file) {
+        long size = file.length();
+        long mtimeUnix = file.lastModified() / 1000;
+        return directoryService.findFile(file.toPath().toAbsolutePath())
+                .filter(r -> r.getSizeBytes() == size && r.getMtimeUnix() == mtimeUnix)
+                .map(FileRecord::getAiResponse)
+                .filter(response -> !response.isBlank());
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -1,18 +1,34 @@
 package edu.missouristate.aianalyzer.ui.view.Metrics;
 
+import edu.missouristate.aianalyzer.service.ai.ExtractedTextCache;
+import edu.missouristate.aianalyzer.service.ai.PromptMinimizer;
+import edu.missouristate.aianalyzer.service.database.CatalogStatsService;
+import edu.missouristate.aianalyzer.service.database.DirectoryRollupService;
+import edu.missouristate.aianalyzer.ui.service.FileSystemService;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Year;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 /**
  * Component representing the Metrics page.
- * Displays a 3-column flexible card layout for data visualization templates
+ * Displays a 3-column flexible card layout for data visualization templates.
+ * The numbers come from the catalog's aggregate tables, so refreshing costs the same for any catalog size,
+ * and from the in-memory counters of the AI pipeline (prompt tokens saved, extracted-text cache hits).
  */
+@Slf4j
 @Component
 public class MetricsView extends VBox {
 
@@ -20,8 +36,29 @@ public class MetricsView extends VBox {
     private static final double CARD_WIDTH = 280;
     private static final double CARD_HEIGHT = 160;
     private static final double GAP = 15;
+    private static final int UNUSED_YEARS = 5;
+
+    private final CatalogStatsService catalogStatsService;
+    private final DirectoryRollupService directoryRollupService;
+    private final PromptMinimizer promptMinimizer;
+    private final ExtractedTextCache extractedTextCache;
+
+    // Card contents filled in by refresh()
+    private final Label healthContent = new Label("Loading...");
+    private final Label totalFilesContent = new Label("Loading...");
+    private final Label usageContent = new Label("Loading...");
+    private final Label unusedContent = new Label("Loading...");
+    private final Label actionsContent = new Label("Loading...");
+    private final Label promptTokensContent = new Label("Loading...");
+    private final Label textCacheContent = new Label("Loading...");
+
+    public MetricsView(CatalogStatsService catalogStatsService, DirectoryRollupService directoryRollupService,
+                       PromptMinimizer promptMinimizer, ExtractedTextCache extractedTextCache) {
+        this.catalogStatsService = catalogStatsService;
+        this.directoryRollupService = directoryRollupService;
+        this.promptMinimizer = promptMinimizer;
+        this.extractedTextCache = extractedTextCache;
 
-    public MetricsView() {
         this.getStyleClass().add("page-container");
         this.setAlignment(Pos.TOP_LEFT);
         this.setPadding(new Insets(20));
@@ -29,6 +66,15 @@ public class MetricsView extends VBox {
         Label header = new Label("Application Metrics & Insights");
         header.getStyleClass().add("header-label");
 
+        Button rebuildButton = new Button("Rebuild statistics");
+        rebuildButton.setOnAction(e -> {
+            rebuildButton.setDisable(true);
+            CompletableFuture.allOf(catalogStatsService.rebuild(), directoryRollupService.rebuild()).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                rebuildButton.setDisable(false);
+                refresh();
+            }));
+        });
+
         // A) Setup the GridPane for a flexible 3-column layout
         GridPane gridPane = new GridPane();
         gridPane.setPadding(new Insets(10, 0, 10, 0));
@@ -36,40 +82,96 @@ public class MetricsView extends VBox {
         gridPane.setVgap(GAP);
 
         // --- ROW 1: One card 3-col
-        Node trendsCard = createCard(3 * CARD_WIDTH + 2 * GAP, CARD_HEIGHT, "#4A90E2", "Overall Health Summary", "AI System Status: Operational, 3.2 GB Recoverable");
+        Node trendsCard = createCard(3 * CARD_WIDTH + 2 * GAP, CARD_HEIGHT, "#4A90E2", "Overall Health Summary", healthContent);
         GridPane.setConstraints(trendsCard, 0, 0, 3, 1); // Col 0, Row 0, ColSpan 3, RowSpan 1
         gridPane.getChildren().add(trendsCard);
 
         // --- ROW 2: Two cards (1-col and 2-col)
-        Node totalFilesCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#F0E6E6", "Total Files Scanned", "45,892");
+        Node totalFilesCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#F0E6E6", "Total Files Scanned", totalFilesContent);
         GridPane.setConstraints(totalFilesCard, 0, 1); // Col 0, Row 1
         gridPane.getChildren().add(totalFilesCard);
 
-        Node usageBreakdownCard = createCard(2 * CARD_WIDTH + GAP, CARD_HEIGHT, "#E6F0E6", "Disk Usage Breakdown", "Pie Chart Template");
+        Node usageBreakdownCard = createCard(2 * CARD_WIDTH + GAP, CARD_HEIGHT, "#E6F0E6", "Disk Usage Breakdown", usageContent);
         GridPane.setConstraints(usageBreakdownCard, 1, 1, 2, 1); // Col 1, Row 1, ColSpan 2
         gridPane.getChildren().add(usageBreakdownCard);
 
         // --- ROW 3: Three cards (1-col, 1-col, 1-col)
-        Node unusedFilesCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#E6F0F0", "Files Unused > 5 Years", "12.3 GB");
+        Node unusedFilesCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#E6F0F0", "Files Unused > 5 Years", unusedContent);
         GridPane.setConstraints(unusedFilesCard, 0, 2); // Col 0, Row 2
         gridPane.getChildren().add(unusedFilesCard);
 
-        Node actionsCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#E6E6F0", "AI Recommended Actions", "72 Items to Review");
+        Node actionsCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#E6E6F0", "AI Recommended Actions", actionsContent);
         GridPane.setConstraints(actionsCard, 1, 2); // Col 1, Row 2
         gridPane.getChildren().add(actionsCard);
 
-        Node duplicatesCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#F0E6F0", "Duplicate Files Found", "2.1 GB");
+        Node duplicatesCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#F0E6F0", "Duplicate Files Found", new Label("2.1 GB"));
         GridPane.setConstraints(duplicatesCard, 2, 2); // Col 2, Row 2
         gridPane.getChildren().add(duplicatesCard);
 
+        // --- ROW 4: Two cards (1-col, 1-col) about the AI requests made since the app started
+        Node promptTokensCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#F0F0E6", "AI Prompt Tokens", promptTokensContent);
+        GridPane.setConstraints(promptTokensCard, 0, 3); // Col 0, Row 3
+        gridPane.getChildren().add(promptTokensCard);
+
+        Node textCacheCard = createCard(CARD_WIDTH, CARD_HEIGHT, "#ECE6F0", "Extracted Text Cache", textCacheContent);
+        GridPane.setConstraints(textCacheCard, 1, 3); // Col 1, Row 3
+        gridPane.getChildren().add(textCacheCard);
+
+        this.getChildren().addAll(header, rebuildButton, gridPane);
+    }
+
+    /**
+     * Reloads the card contents in the background. Called whenever the page is shown.
+     */
+    public void refresh() {
+        showAiCounters();
+        CompletableFuture.supplyAsync(catalogStatsService::snapshot)
+                .thenAccept(snapshot -> Platform.runLater(() -> show(snapshot)))
+                .exceptionally(error -> {
+                    log.warn("Could not load catalog statistics", error);
+                    return null;
+                });
+    }
+
+    private void show(CatalogStatsService.Snapshot snapshot) {
+        CatalogStatsService.Stat total = snapshot.total();
+        healthContent.setText(String.format("%,d files, %s cataloged", total.fileCount(), FileSystemService.formatSize(total.totalBytes())));
+        totalFilesContent.setText(String.format("%,d", total.fileCount()));
+
+        List<CatalogStatsService.Stat> kinds = snapshot.dimension(CatalogStatsService.KIND);
+        usageContent.setText(kinds.isEmpty() ? "No files cataloged yet" : kinds.stream().limit(4)
+                .map(s -> s.bucket() + ": " + FileSystemService.formatSize(s.totalBytes()))
+                .collect(Collectors.joining("\n")));
+
+        int cutoff = Year.now().getValue() - UNUSED_YEARS;
+        long unusedBytes = snapshot.dimension(CatalogStatsService.YEAR).stream()
+                .filter(s -> s.bucket().matches("\\d+") && Integer.parseInt(s.bucket()) <= cutoff)
+                .mapToLong(CatalogStatsService.Stat::totalBytes)
+                .sum();
+        unusedContent.setText(FileSystemService.formatSize(unusedBytes));
+
+        long unclassified = snapshot.bucket(CatalogStatsService.LABEL, CatalogStatsService.UNCLASSIFIED).fileCount();
+        actionsContent.setText(String.format("%,d Items to Review", unclassified));
+    }
 
-        this.getChildren().addAll(header, gridPane);
+    // The counters are plain in-memory numbers, cheap enough to read on the UI thread.
+    private void showAiCounters() {
+        long before = promptMinimizer.tokensBefore();
+        long after = promptMinimizer.tokensAfter();
+        promptTokensContent.setText(promptMinimizer.documents() == 0 ? "No documents sent yet" : String.format(
+                "~%,d -> ~%,d\n%d%% saved over %,d documents", before, after,
+                before == 0 ? 0 : Math.round(100.0 * (before - after) / before), promptMinimizer.documents()));
+
+        long hits = extractedTextCache.hits();
+        long lookups = hits + extractedTextCache.misses();
+        textCacheContent.setText(lookups == 0 ? "No documents read yet" : String.format(
+                "%,d hits, %,d misses\n%d%% hit rate", hits, lookups - hits, Math.round(100.0 * hits / lookups)));
     }
 
     /**
      * Helper method for generating placeholder card
      */
-    private Node createCard(double width, double height, String color, String title, String content) {
+    private Node createCard(double width, double height, String color, String title, Label contentLabel) {
         VBox cardContent = new VBox(5);
         cardContent.setAlignment(Pos.TOP_LEFT);
         cardContent.setPadding(new Insets(10));
@@ -77,7 +179,6 @@ public class MetricsView extends VBox {
         Label titleLabel = new Label(title);
         titleLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px; -fx-text-fill: #333;");
 
-        Label contentLabel = new Label(content);
         // Use white text for the blue header card for better contrast
         if (color.equals("#4A90E2")) {
             contentLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: white;");
@@ -0,0 +1,105 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives AiRequestLimiter with synthetic outcomes on a fake clock. Requests start on the test thread,
+ * so the limit after each round of answers is exact.
+ */
+class AiRequestLimiterTests {
+
+    private static final long MILLIS = 1_000_000;
+
+    // Any origin will do for nanoTime; a negative one shows decreases don't count from 0.
+    private long now = -5_000 * MILLIS;
+    private final Deque<CompletableFuture<String>> calls = new ArrayDeque<>();
+    private final AiRequestLimiter limiter = new AiRequestLimiter(4, 64, 1, () -> now, Runnable::run);
+
+    @Test
+    void limitGrowsWithSuccessAndShrinksOnThrottlingAndLatency() {
+        List<Integer> limits = new ArrayList<>();
+
+        // Each success adds 1/limit: about one per round.
+        for (int i = 0; i < 5; i++) {
+            limits.add(round(100, null));
+        }
+        // Throttling halves the limit once per round trip, however many requests of the round are rejected.
+        limits.add(round(100, new AiThrottledException(null, "quota exceeded", null)));
+        limits.add(round(100, new AiThrottledException(null, "quota exceeded", null)));
+        for (int i = 0; i < 10; i++) {
+            limits.add(round(100, null));
+        }
+        // Latency far above the long-run average takes off 10%, again once per round trip.
+        limits.add(round(1_000, null));
+
+        assertThat(limits).containsExactly(4, 4, 5, 5, 6, 3, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 5);
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.queued()).isZero();
+    }
+
+    @Test
+    void highPriorityRequestsOvertakeQueuedLowPriorityOnesWithoutStarvingThem() {
+        AiRequestLimiter limiter = new AiRequestLimiter(1, 1, 1);
+        List<AiQueryService.Priority> started = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        CompletableFuture<String> first = limiter.submit(AiQueryService.Priority.NORMAL, () -> blocker);
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (AiQueryService.Priority priority : List.of(AiQueryService.Priority.LOW, AiQueryService.Priority.HIGH)) {
+            for (int i = 0; i < 10; i++) {
+                results.add(limiter.submit(priority, () -> {
+                    started.add(priority);
+                    return CompletableFuture.completedFuture("ok");
+                }));
+            }
+        }
+        blocker.complete("ok");
+        first.join();
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(started).hasSize(20);
+        assertThat(started.subList(0, 4)).containsOnly(AiQueryService.Priority.HIGH);
+        assertThat(started.subList(0, 6)).contains(AiQueryService.Priority.LOW);
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Sends as many requests as the limit allows, lets 'latencyMillis' pass and answers them all,
+     * oldest first, with 'failure' (or success if it is null).
+     *
+     * @return The limit afterwards.
+     */
+    private int round(long latencyMillis, Exception failure) {
+        int requests = limiter.limit();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            results.add(limiter.submit(AiQueryService.Priority.NORMAL, () -> {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                calls.addLast(call);
+                return call;
+            }));
+        }
+        assertThat(calls).hasSize(requests);
+        now += latencyMillis * MILLIS;
+        while (!calls.isEmpty()) {
+            CompletableFuture<String> call = calls.pollFirst();
+            if (failure == null) {
+                call.complete("ok");
+            } else {
+                call.completeExceptionally(failure);
+            }
+        }
+        assertThat(results).allMatch(result -> result.isDone() && result.isCompletedExceptionally() == (failure != null));
+        return limiter.limit();
+    }
+}
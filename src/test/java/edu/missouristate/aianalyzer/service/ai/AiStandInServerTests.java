@@ -0,0 +1,69 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs AiQueryService through HttpAiBackend against AiStandInServer, the way a load test would,
+ * with the stand-in serving fewer requests at once than the client first tries to send.
+ */
+class AiStandInServerTests {
+
+    private static final int REQUESTS = 100;
+
+    @Test
+    void everyRequestIsAnsweredDeterministicallyDespiteThrottling() throws Exception {
+        AiStandInServer.Settings settings = AiStandInServer.Settings.parse(
+                "--port=0", "--latency=fixed", "--latency-ms=20", "--capacity=4", "--retry-after-ms=50");
+        try (AiStandInServer standIn = AiStandInServer.start(settings)) {
+            AiQueryService aiQueryService = new AiQueryService(new HttpAiBackend(standIn.url(), 10), 16, 64, 20);
+
+            List<CompletableFuture<String>> summaries = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                summaries.add(aiQueryService.activeResponseFromFileAsync("file " + (i % 10)));
+            }
+            Map<String, String> batch = aiQueryService.activeResponsesFromFilesAsync(
+                    Map.of("f1", "first file", "f2", "second file"), AiQueryService.Priority.NORMAL).join();
+            String category = aiQueryService.respondWithImageCategoryAsync("gs://bucket/photo.jpg", "image/jpeg").join();
+            CompletableFuture.allOf(summaries.toArray(CompletableFuture[]::new)).join();
+
+            assertThat(summaries.get(0).join()).startsWith("Stand-in summary ");
+            for (int i = 10; i < REQUESTS; i++) {
+                assertThat(summaries.get(i).join()).isEqualTo(summaries.get(i % 10).join());
+            }
+            assertThat(batch).containsOnlyKeys("f1", "f2");
+            assertThat(category).isIn("single", "two", "group", "miscellaneous");
+        }
+    }
+
+    @Test
+    void streamedAnswerArrivesPieceByPieceWellBeforeItIsComplete() throws Exception {
+        AiStandInServer.Settings settings = AiStandInServer.Settings.parse(
+                "--port=0", "--latency=fixed", "--latency-ms=400", "--first-chunk-fraction=0.25");
+        try (AiStandInServer standIn = AiStandInServer.start(settings)) {
+            AiQueryService aiQueryService = new AiQueryService(new HttpAiBackend(standIn.url(), 10), 4, 4, 1);
+            String whole = aiQueryService.activeResponseFromFileAsync("some file").join();
+
+            List<String> chunks = new ArrayList<>();
+            AtomicLong firstChunkNanos = new AtomicLong();
+            long start = System.nanoTime();
+            String streamed = aiQueryService.streamResponseFromFileAsync("some file", AiQueryService.Priority.HIGH, chunk -> {
+                firstChunkNanos.compareAndSet(0, System.nanoTime());
+                chunks.add(chunk);
+            }).join();
+            long totalNanos = System.nanoTime() - start;
+
+            assertThat(streamed).isEqualTo(whole);
+            assertThat(String.join("", chunks)).isEqualTo(whole);
+            assertThat(chunks).hasSizeGreaterThan(1);
+            assertThat(firstChunkNanos.get() - start).isLessThan(totalNanos / 2);
+        }
+    }
+}
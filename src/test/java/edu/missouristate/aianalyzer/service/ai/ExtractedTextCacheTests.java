@@ -0,0 +1,100 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.service.database.DirectoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the cache on plain text files, extracted in-process, with nothing cataloged (so every key is
+ * hashed from the file), and checks when it hits and when it has to extract again.
+ */
+class ExtractedTextCacheTests {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog. ".repeat(40);
+
+    @TempDir
+    Path dir;
+
+    private final DirectoryService directoryService = Mockito.mock(DirectoryService.class);
+    private final List<ExtractedTextCache> caches = new ArrayList<>();
+
+    @AfterEach
+    void closeCaches() throws IOException {
+        for (ExtractedTextCache cache : caches) {
+            cache.close();
+        }
+    }
+
+    @Test
+    void entriesSurviveARestartAndAChangedSlotCountReindexesThem() throws IOException {
+        Path file = Files.writeString(dir.resolve("notes.txt"), TEXT);
+        ExtractedTextCache first = cache(100);
+        assertThat(first.read(file, "txt")).isEqualTo(TEXT);
+        first.close();
+        caches.remove(first);
+
+        ExtractedTextCache restarted = cache(100);
+        assertThat(restarted.read(file, "txt")).isEqualTo(TEXT);
+        assertThat(restarted.hits()).isEqualTo(1);
+        restarted.close();
+        caches.remove(restarted);
+
+        // A new max-entries resizes index.bin, which starts empty and is filled again from the entry files.
+        ExtractedTextCache resized = cache(1_000);
+        assertThat(resized.read(file, "txt")).isEqualTo(TEXT);
+        assertThat(resized.hits()).isEqualTo(1);
+        assertThat(resized.misses()).isZero();
+    }
+
+    @Test
+    void anUnreadableEntryIsExtractedAgain() throws IOException {
+        Path file = Files.writeString(dir.resolve("notes.txt"), TEXT);
+        ExtractedTextCache cache = cache(100);
+        cache.read(file, "txt");
+
+        Path entry = entryFiles().get(0);
+        byte[] compressed = Files.readAllBytes(entry);
+        Files.write(entry, Arrays.copyOf(compressed, compressed.length / 2)); // truncated
+        assertThat(cache.read(file, "txt")).isEqualTo(TEXT);
+        assertThat(cache.misses()).isEqualTo(2);
+
+        Files.writeString(entry, "not deflate data");
+        assertThat(cache.read(file, "txt")).isEqualTo(TEXT);
+        assertThat(cache.misses()).isEqualTo(3);
+
+        // Each extraction stored a good entry again.
+        assertThat(cache.read(file, "txt")).isEqualTo(TEXT);
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(entryFiles()).hasSize(1);
+    }
+
+    // --- Helper Methods ---
+
+    private ExtractedTextCache cache(int maxEntries) throws IOException {
+        ExtractionWorkerPool pool = new ExtractionWorkerPool(false, 1, 32, 60, 200, dir.resolve("quarantine.txt").toString(),
+                ExtractionWorkerMain.class.getName(), null);
+        ExtractedTextCache cache = new ExtractedTextCache(directoryService, pool, dir.resolve("cache").toString(),
+                1024 * 1024, maxEntries, 400_000);
+        cache.open();
+        caches.add(cache);
+        return cache;
+    }
+
+    private List<Path> entryFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(dir.resolve("cache"))) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".z")).toList();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exercises the memory-mapped table directly: entry bookkeeping, LRU eviction, and what survives
+ * closing and reopening the file.
+ */
+class ExtractedTextIndexTests {
+
+    private static final int SLOTS = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void entriesArePutTouchedRemovedAndEvictedLeastRecentlyUsedFirst() throws IOException {
+        try (ExtractedTextIndex index = ExtractedTextIndex.open(dir.resolve("index.bin"), SLOTS)) {
+            assertThat(index.isEmpty()).isTrue();
+            index.put(digest("a"), 100, 1_000);
+            index.put(digest("b"), 200, 2_000);
+            index.put(digest("c"), 300, 3_000);
+            index.put(digest("b"), 250, 2_500); // replaces the first b
+            assertThat(index.totalBytes()).isEqualTo(650);
+
+            assertThat(index.touch(digest("a"), 4_000)).isTrue(); // a is now the most recently used
+            assertThat(index.touch(digest("unknown"), 4_000)).isFalse();
+            index.remove(digest("c"));
+            index.remove(digest("c"));
+            assertThat(index.touch(digest("c"), 5_000)).isFalse();
+            assertThat(index.totalBytes()).isEqualTo(350);
+            index.put(digest("d"), 50, 6_000);
+
+            assertThat(index.evict(200, SLOTS)).extracting(ExtractedTextIndex.Entry::compressedLength).containsExactly(250);
+            assertThat(index.totalBytes()).isEqualTo(150);
+            assertThat(index.evict(Long.MAX_VALUE, 1)).extracting(ExtractedTextIndex.Entry::lastAccessMillis).containsExactly(4_000L);
+            assertThat(index.touch(digest("d"), 7_000)).isTrue();
+            assertThat(index.touch(digest("a"), 7_000)).isFalse();
+        }
+    }
+
+    @Test
+    void entriesStayFindableWhileTheTableFillsUp() throws IOException {
+        try (ExtractedTextIndex index = ExtractedTextIndex.open(dir.resolve("index.bin"), SLOTS)) {
+            int entries = 0;
+            while (index.hasRoom()) {
+                index.put(digest("file-" + entries), 10, entries);
+                entries++;
+            }
+            assertThat(entries).isEqualTo(SLOTS * 3 / 4);
+
+            // Removing leaves deleted markers in the probe chains, which lookups have to step over.
+            for (int i = 0; i < entries; i += 2) {
+                index.remove(digest("file-" + i));
+            }
+            for (int i = 0; i < entries; i++) {
+                assertThat(index.touch(digest("file-" + i), 100)).as("file-" + i).isEqualTo(i % 2 == 1);
+            }
+            assertThat(index.hasRoom()).isTrue();
+        }
+    }
+
+    @Test
+    void aReopenedIndexKeepsItsEntriesUnlessTheSlotCountChanged() throws IOException {
+        Path file = dir.resolve("index.bin");
+        try (ExtractedTextIndex index = ExtractedTextIndex.open(file, SLOTS)) {
+            index.put(digest("old"), 100, 1_000);
+            index.put(digest("new"), 200, 2_000);
+        }
+
+        try (ExtractedTextIndex reopened = ExtractedTextIndex.open(file, SLOTS)) {
+            assertThat(reopened.isEmpty()).isFalse();
+            assertThat(reopened.totalBytes()).isEqualTo(300);
+            assertThat(reopened.evict(250, 1)).extracting(ExtractedTextIndex.Entry::compressedLength).containsExactly(100);
+            assertThat(reopened.touch(digest("new"), 3_000)).isTrue();
+        }
+
+        // A table sized for another extraction.cache.max-entries starts out empty; ExtractedTextCache then re-indexes.
+        try (ExtractedTextIndex resized = ExtractedTextIndex.open(file, SLOTS * 2)) {
+            assertThat(resized.isEmpty()).isTrue();
+            assertThat(resized.totalBytes()).isZero();
+            assertThat(resized.touch(digest("new"), 4_000)).isFalse();
+        }
+        assertThat(Files.size(file)).isEqualTo(16 + SLOTS * 2 * 48L);
+    }
+
+    // --- Helper Methods ---
+
+    private static byte[] digest(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
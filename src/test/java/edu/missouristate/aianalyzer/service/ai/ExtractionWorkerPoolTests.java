@@ -0,0 +1,130 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the pool against StubWorkerMain, a worker that hangs or runs out of memory on request,
+ * so the watchdog, crash handling and quarantine can be checked without a malformed document.
+ */
+class ExtractionWorkerPoolTests {
+
+    @TempDir
+    Path dir;
+
+    private final List<ExtractionWorkerPool> pools = new ArrayList<>();
+
+    @AfterEach
+    void stopWorkers() {
+        pools.forEach(ExtractionWorkerPool::shutdown);
+    }
+
+    @Test
+    void aHungTaskTimesOutAndItsWorkerIsReplaced() throws IOException {
+        ExtractionWorkerPool pool = pool();
+
+        assertThatThrownBy(() -> pool.extract(file("hung.txt", "hang"), "txt", 100))
+                .isInstanceOf(IOException.class).hasMessageContaining("timed out");
+        assertThat(pool.extract(file("fine.txt", "some text"), "txt", 100)).isEqualTo("some text");
+    }
+
+    @Test
+    void aWorkerThatRunsOutOfMemoryIsReplaced() throws IOException {
+        ExtractionWorkerPool pool = pool();
+
+        assertThatThrownBy(() -> pool.extract(file("huge.txt", "oom"), "txt", 100))
+                .isInstanceOf(IOException.class).hasMessageContaining("exited with code 3");
+        assertThat(pool.extract(file("fine.txt", "some text"), "txt", 100)).isEqualTo("some text");
+    }
+
+    @Test
+    void aFileThatKillsTwoWorkersIsQuarantinedAcrossRestarts() throws IOException {
+        ExtractionWorkerPool pool = pool();
+        Path huge = file("huge.txt", "oom");
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> pool.extract(huge, "txt", 100)).hasMessageContaining("exited");
+        }
+        assertThatThrownBy(() -> pool.extract(huge, "txt", 100)).hasMessageContaining("quarantined");
+
+        ExtractionWorkerPool restarted = pool();
+        restarted.loadQuarantine();
+        assertThatThrownBy(() -> restarted.extract(huge, "txt", 100)).hasMessageContaining("quarantined");
+        assertThat(restarted.extract(file("fine.txt", "some text"), "txt", 100)).isEqualTo("some text");
+    }
+
+    // --- Helper Methods ---
+
+    private ExtractionWorkerPool pool() {
+        ExtractionWorkerPool pool = new ExtractionWorkerPool(true, 1, 32, 1, 200,
+                dir.resolve("quarantine.txt").toString(), StubWorkerMain.class.getName(), null);
+        pools.add(pool);
+        return pool;
+    }
+
+    private Path file(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    /**
+     * Speaks the ExtractionWorkerMain protocol, but answers with the file's content, except that a file
+     * saying "hang" never gets an answer and one saying "oom" fills the heap (the pool starts workers
+     * with -XX:+ExitOnOutOfMemoryError, so the process exits with code 3).
+     */
+    static final class StubWorkerMain {
+
+        public static void main(String[] args) throws Exception {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+            out.writeInt(ExtractionWorkerMain.READY_MAGIC);
+            out.flush();
+            while (true) {
+                try {
+                    if (in.readByte() != ExtractionWorkerMain.OP_EXTRACT) {
+                        return;
+                    }
+                } catch (EOFException e) {
+                    return;
+                }
+                String content = Files.readString(Paths.get(in.readUTF()));
+                in.readUTF();
+                in.readInt();
+                if (content.equals("hang")) {
+                    Thread.sleep(Long.MAX_VALUE);
+                }
+                if (content.equals("oom")) {
+                    List<long[]> hoard = new ArrayList<>();
+                    while (true) {
+                        hoard.add(new long[1 << 20]);
+                    }
+                }
+                byte[] text = content.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(ExtractionWorkerMain.STATUS_OK);
+                out.writeBoolean(true);
+                out.writeInt(text.length);
+                out.write(text);
+                out.flush();
+            }
+        }
+    }
+}
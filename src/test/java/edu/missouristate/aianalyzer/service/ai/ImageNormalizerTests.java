@@ -0,0 +1,178 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.service.ai.ImageNormalizer.NormalizedImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Normalizes images written by the test and decodes the results, checking they come out as opaque,
+ * upright JPEGs within ai.image.max-dimension and small enough to send inline.
+ */
+class ImageNormalizerTests {
+
+    private static final int MAX_DIMENSION = 1024;
+    private static final int MAX_INLINE_BYTES = 4 * 1024 * 1024; // ai.image.max-inline-bytes default
+
+    private final ImageNormalizer normalizer = new ImageNormalizer(MAX_DIMENSION, 0.85f);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void aLargePngWithTransparencyBecomesASmallOpaqueJpeg() throws IOException {
+        BufferedImage png = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = png.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(2000, 0, 2000, 3000); // the left half stays transparent
+        g.dispose();
+        Path file = dir.resolve("large.png");
+        ImageIO.write(png, "png", file.toFile());
+
+        NormalizedImage normalized = normalizer.normalize(file).orElseThrow();
+
+        BufferedImage jpeg = decodeJpeg(normalized.jpeg());
+        assertThat(normalized.width()).isEqualTo(MAX_DIMENSION).isEqualTo(jpeg.getWidth());
+        assertThat(normalized.height()).isEqualTo(768).isEqualTo(jpeg.getHeight());
+        assertThat(normalized.sourceBytes()).isEqualTo(Files.size(file));
+        assertThat(normalized.jpeg().length).isLessThan(MAX_INLINE_BYTES);
+        assertThat(jpeg.getColorModel().hasAlpha()).isFalse();
+        assertThat(near(jpeg.getRGB(100, 384), Color.WHITE)).isTrue();
+        assertThat(near(jpeg.getRGB(900, 384), Color.BLUE)).isTrue();
+
+        // The pooled buffer is reused; nothing of the first image may leak into the second.
+        assertThat(normalizer.normalize(file).orElseThrow().jpeg()).isEqualTo(normalized.jpeg());
+    }
+
+    @Test
+    void aPalettedGifIsFlattenedIntoRgb() throws IOException {
+        BufferedImage gif = new BufferedImage(1500, 2500, BufferedImage.TYPE_BYTE_INDEXED);
+        Graphics2D g = gif.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 1500, 2500);
+        g.dispose();
+        Path file = dir.resolve("paletted.gif");
+        ImageIO.write(gif, "gif", file.toFile());
+
+        NormalizedImage normalized = normalizer.normalize(file).orElseThrow();
+
+        BufferedImage jpeg = decodeJpeg(normalized.jpeg());
+        assertThat(Math.max(jpeg.getWidth(), jpeg.getHeight())).isLessThanOrEqualTo(MAX_DIMENSION);
+        assertThat(jpeg.getHeight()).isEqualTo(MAX_DIMENSION);
+        assertThat(normalized.jpeg().length).isLessThan(MAX_INLINE_BYTES);
+        assertThat(jpeg.getColorModel().hasAlpha()).isFalse();
+        assertThat(near(jpeg.getRGB(300, 500), Color.RED)).isTrue();
+    }
+
+    @Test
+    void aPhotoTakenSidewaysIsTurnedUpright() throws IOException {
+        // Stored 200 wide with red on the left; EXIF orientation 6 says to rotate it clockwise to view it.
+        BufferedImage photo = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = photo.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 100, 100);
+        g.setColor(Color.BLUE);
+        g.fillRect(100, 0, 100, 100);
+        g.dispose();
+        Path file = dir.resolve("sideways.jpg");
+        Files.write(file, withExifOrientation(encodeJpeg(photo), 6));
+
+        NormalizedImage normalized = normalizer.normalize(file).orElseThrow();
+
+        BufferedImage jpeg = decodeJpeg(normalized.jpeg());
+        assertThat(jpeg.getWidth()).isEqualTo(100);
+        assertThat(jpeg.getHeight()).isEqualTo(200);
+        assertThat(near(jpeg.getRGB(50, 50), Color.RED)).isTrue();
+        assertThat(near(jpeg.getRGB(50, 150), Color.BLUE)).isTrue();
+    }
+
+    @Test
+    void filesImageIoCannotDecodeAreLeftToTheCaller() throws IOException {
+        Path notAnImage = Files.writeString(dir.resolve("photo.heic"), "not an image at all");
+        byte[] png = Files.readAllBytes(pngOf(dir.resolve("whole.png")));
+        Path truncated = Files.write(dir.resolve("truncated.png"), Arrays.copyOf(png, 60));
+
+        assertThat(normalizer.normalize(notAnImage)).isEqualTo(Optional.empty());
+        assertThat(normalizer.normalize(truncated)).isEqualTo(Optional.empty());
+    }
+
+    // --- Helper Methods ---
+
+    private static Path pngOf(Path file) throws IOException {
+        BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 300; x++) {
+            image.setRGB(x, x, 0xFFFFFF);
+        }
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    /**
+     * Decodes the bytes, failing unless they're a JPEG.
+     */
+    private static BufferedImage decodeJpeg(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            ImageReader reader = readers.next();
+            assertThat(reader.getFormatName()).isEqualToIgnoringCase("jpeg");
+            try {
+                reader.setInput(in);
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Inserts an EXIF (APP1) segment holding only an orientation tag after the JFIF (APP0) segment.
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        ByteBuffer exif = ByteBuffer.allocate(4 + 6 + 8 + 2 + 12 + 4);
+        exif.putShort((short) 0xFFE1).putShort((short) (exif.capacity() - 2));
+        exif.put("Exif\0\0".getBytes());
+        exif.put("MM".getBytes()).putShort((short) 42).putInt(8);                        // TIFF header, IFD0 at 8
+        exif.putShort((short) 1);                                                      // one entry
+        exif.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        exif.putInt(0);                                                                // no next IFD
+        int app0End = 4 + ((jpeg[4] & 0xFF) << 8 | jpeg[5] & 0xFF);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, app0End);
+        out.write(exif.array(), 0, exif.capacity());
+        out.write(jpeg, app0End, jpeg.length - app0End);
+        return out.toByteArray();
+    }
+
+    /**
+     * JPEG is lossy, so colours are compared with some tolerance.
+     */
+    private static boolean near(int rgb, Color expected) {
+        Color actual = new Color(rgb);
+        return Math.abs(actual.getRed() - expected.getRed()) < 40
+                && Math.abs(actual.getGreen() - expected.getGreen()) < 40
+                && Math.abs(actual.getBlue() - expected.getBlue()) < 40;
+    }
+}
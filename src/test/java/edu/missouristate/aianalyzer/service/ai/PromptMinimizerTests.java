@@ -0,0 +1,37 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks what whitespace cleaning keeps: every tab of a table's cells, but only one of a run in prose.
+ */
+class PromptMinimizerTests {
+
+    private final PromptMinimizer minimizer = new PromptMinimizer(
+            new ExtractionWorkerPool(false, 1, 32, 60, 200, "extraction-quarantine.txt", ExtractionWorkerMain.class.getName(), null),
+            "default:16000");
+
+    @Test
+    void tablesKeepEveryTabSoColumnsStayAligned() {
+        String sheet = XlsxTextExtractor.sheetHeading("Stock") + "\n"
+                + "Item\tQty\tNote\n"
+                + "\t5\tno name\n"
+                + "Widget\t\t\tspare   part  \n";
+
+        String prompt = minimizer.minimize(sheet, "xlsx");
+
+        assertThat(prompt).contains("\nItem\tQty\tNote\n", "\n\t5\tno name\n", "\nWidget\t\t\tspare part");
+        assertThat(minimizer.documents()).isEqualTo(1);
+        assertThat(minimizer.tokensAfter()).isPositive();
+    }
+
+    @Test
+    void proseCollapsesWhitespace() {
+        String prompt = minimizer.minimize("\t\tIndented\t\tline   with  gaps\t\n\n\n\nnext", "txt");
+
+        assertThat(prompt).isEqualTo("Indented\tline with gaps\n\nnext");
+        assertThat(minimizer.tokensBefore()).isGreaterThanOrEqualTo(minimizer.tokensAfter());
+    }
+}
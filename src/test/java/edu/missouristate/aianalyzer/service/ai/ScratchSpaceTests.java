@@ -0,0 +1,96 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.service.database.ScanExclusions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScratchSpaceTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void leftoversOfDeadRunsAreRemovedAndFilesAreDeletedWhenClosed() throws IOException {
+        Path dead = Files.createDirectories(dir.resolve("run-" + Long.MAX_VALUE));
+        Files.writeString(dead.resolve("1.jpg"), "left behind by a crash");
+        Path live = Files.createDirectories(dir.resolve("run-" + ProcessHandle.current().parent().orElseThrow().pid()));
+
+        ScratchSpace scratch = new ScratchSpace(dir.toString(), 1024, 0);
+        scratch.open();
+        assertThat(dead).doesNotExist();
+        assertThat(live).exists();
+
+        Path written;
+        try (ScratchSpace.ScratchFile file = scratch.create(".jpg", 0)) {
+            written = file.path();
+            Files.write(written, new byte[100]);
+            assertThat(written.getFileName().toString()).endsWith(".jpg");
+            assertThat(scratch.usedBytes()).isEqualTo(100);
+        }
+        assertThat(written).doesNotExist();
+        assertThat(scratch.usedBytes()).isZero();
+
+        scratch.close();
+        assertThat(written.getParent()).doesNotExist();
+    }
+
+    @Test
+    void aFullScratchSpaceRefusesNewFilesUntilSomeAreClosed() throws IOException {
+        ScratchSpace scratch = new ScratchSpace(dir.toString(), 1024, 0);
+        scratch.open();
+        ScratchSpace.ScratchFile big = scratch.create(".tmp", 0);
+        Files.write(big.path(), new byte[2048]);
+
+        assertThatThrownBy(() -> scratch.create(".tmp", 0)).isInstanceOf(IOException.class).hasMessageContaining("full");
+        big.close();
+        try (ScratchSpace.ScratchFile next = scratch.create(".tmp", 0)) {
+            assertThat(next.path().getParent()).isEqualTo(big.path().getParent());
+        }
+        scratch.close();
+    }
+
+    @Test
+    void spaceIsReservedWhenAFileIsCreatedNotWhenItIsWritten() throws IOException {
+        ScratchSpace scratch = new ScratchSpace(dir.toString(), 1024, 0);
+        scratch.open();
+        ScratchSpace.ScratchFile first = scratch.create(".jpg", 600);
+        assertThat(scratch.usedBytes()).isEqualTo(600);
+
+        assertThatThrownBy(() -> scratch.create(".jpg", 600)).isInstanceOf(IOException.class).hasMessageContaining("full");
+        try (ScratchSpace.ScratchFile small = scratch.create(".jpg", 400)) {
+            Files.write(small.path(), new byte[500]); // outgrew its estimate
+            assertThat(scratch.usedBytes()).isEqualTo(1100);
+        }
+        first.close();
+
+        // Alone, a file may reserve more than the whole cap.
+        try (ScratchSpace.ScratchFile huge = scratch.create(".jpg", 4096)) {
+            assertThat(scratch.usedBytes()).isEqualTo(4096);
+        }
+        scratch.close();
+    }
+
+    @Test
+    void scannersSkipScratchFilesAndTheAppsOwnFiles() {
+        ScratchSpace scratch = new ScratchSpace(dir.resolve("scratch").toString(), 1024, 0);
+        ScanExclusions exclusions = new ScanExclusions(scratch, dir.resolve("app/text-cache").toString(),
+                dir.resolve("app/uploaded.txt").toString(), "quarantine.txt", List.of(" logs"));
+
+        assertThat(exclusions.isExcluded(dir.resolve("scratch/run-1/3.jpg"))).isTrue();
+        assertThat(exclusions.isExcluded(dir.resolve("app/text-cache/ab/entry.z"))).isTrue();
+        assertThat(exclusions.isExcluded(dir.resolve("app/uploaded.txt"))).isTrue();
+        assertThat(exclusions.isExcluded(Path.of("quarantine.txt"))).isTrue();
+        assertThat(exclusions.isExcluded(Path.of("logs"))).isTrue();
+        assertThat(exclusions.isExcluded(dir.resolve("app/notes.txt"))).isFalse();
+        assertThat(exclusions.isExcluded(dir.resolve("photos/3.jpg"))).isFalse();
+        assertThat(exclusions.isExcluded(Path.of("cache/a.txt"))).isFalse();
+    }
+}
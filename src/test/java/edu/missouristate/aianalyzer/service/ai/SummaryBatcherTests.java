@@ -0,0 +1,95 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import edu.missouristate.aianalyzer.service.ai.AiQueryService.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs SummaryBatcher against a stubbed AiQueryService whose batch answer each test chooses. Batches
+ * hold two files, so the second summarize() call sends them.
+ */
+class SummaryBatcherTests {
+
+    private final StubAiQueryService ai = new StubAiQueryService();
+    private final SummaryBatcher batcher = new SummaryBatcher(ai, true, 2, 32_000, 16_000, 60_000);
+
+    @AfterEach
+    void stopTimer() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void smallFilesShareOneRequest() {
+        ai.batchAnswer = CompletableFuture.completedFuture(Map.of("f1", " first summary ", "f2", "second summary"));
+
+        CompletableFuture<String> first = batcher.summarize("first file", Priority.NORMAL);
+        CompletableFuture<String> second = batcher.summarize("second file", Priority.NORMAL);
+
+        assertThat(first.join()).isEqualTo("first summary");
+        assertThat(second.join()).isEqualTo("second summary");
+        assertThat(ai.batches).containsExactly(Map.of("f1", "first file", "f2", "second file"));
+        assertThat(ai.singles).isEmpty();
+    }
+
+    @Test
+    void filesTheAnswerLeavesOutOrLeavesBlankGetARequestOfTheirOwn() {
+        ai.batchAnswer = CompletableFuture.completedFuture(Map.of("f1", " "));
+
+        CompletableFuture<String> first = batcher.summarize("first file", Priority.NORMAL);
+        CompletableFuture<String> second = batcher.summarize("second file", Priority.NORMAL);
+
+        assertThat(first.join()).isEqualTo("single: first file");
+        assertThat(second.join()).isEqualTo("single: second file");
+        assertThat(ai.singles).containsExactlyInAnyOrder("first file", "second file");
+    }
+
+    @Test
+    void aThrottledBatchFailsEveryFileWithoutSendingThemOneByOne() {
+        AiThrottledException throttled = new AiThrottledException(null, "quota exceeded", null);
+        ai.batchAnswer = CompletableFuture.failedFuture(new CompletionException(throttled));
+
+        CompletableFuture<String> first = batcher.summarize("first file", Priority.NORMAL);
+        CompletableFuture<String> second = batcher.summarize("second file", Priority.NORMAL);
+
+        for (CompletableFuture<String> result : List.of(first, second)) {
+            assertThatThrownBy(result::join).isInstanceOf(CompletionException.class).hasCause(throttled);
+        }
+        assertThat(ai.singles).isEmpty();
+    }
+
+    /**
+     * Answers batches with 'batchAnswer' and single files with "single: " and their text, recording both.
+     */
+    private static final class StubAiQueryService extends AiQueryService {
+
+        private final List<Map<String, String>> batches = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> singles = Collections.synchronizedList(new ArrayList<>());
+        private CompletableFuture<Map<String, String>> batchAnswer;
+
+        StubAiQueryService() {
+            super(null, 1, 1, 1);
+        }
+
+        @Override
+        public CompletableFuture<Map<String, String>> activeResponsesFromFilesAsync(Map<String, String> files, Priority priority) {
+            batches.add(Map.copyOf(files));
+            return batchAnswer;
+        }
+
+        @Override
+        public CompletableFuture<String> activeResponseFromFileAsync(String content, Priority priority) {
+            singles.add(content);
+            return CompletableFuture.completedFuture("single: " + content);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package edu.missouristate.aianalyzer.service.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.missouristate.aianalyzer.config.StorageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs UploadFileService against a local stand-in for the Cloud Storage JSON API, covering the requests
+ * the client library makes for a metadata lookup and a multipart upload with a does-not-exist precondition.
+ */
+class UploadFileServiceTests {
+
+    private static final String BUCKET = "test-bucket";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final AtomicInteger metadataRequests = new AtomicInteger();
+    private final AtomicInteger uploads = new AtomicInteger();
+    // Makes lookups miss objects that exist, as when another machine uploads between the lookup and the upload.
+    private volatile boolean lookupsMissEverything;
+    private HttpServer server;
+    private ExecutorService serverThreads;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void startEmulator() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/storage/v1/b/" + BUCKET + "/o/", exchange -> {
+            metadataRequests.incrementAndGet();
+            String name = decode(exchange.getRequestURI().getRawPath().substring(("/storage/v1/b/" + BUCKET + "/o/").length()));
+            byte[] content = lookupsMissEverything ? null : objects.get(name);
+            respond(exchange, content == null ? 404 : 200, content == null ? error(404) : metadata(name, content));
+        });
+        server.createContext("/upload/storage/v1/b/" + BUCKET + "/o", exchange -> {
+            // A gzipped multipart/related body: the object's JSON metadata, then its content
+            String boundary = exchange.getRequestHeaders().getFirst("Content-Type").replaceAll(".*boundary=\"?([^\";]+)\"?.*", "$1");
+            byte[] request;
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                request = in.readAllBytes();
+            }
+            String[] parts = new String(request, StandardCharsets.ISO_8859_1).split(Pattern.quote("\r\n--" + boundary));
+            String name = JSON.readTree(body(parts[0])).path("name").textValue();
+            byte[] content = body(parts[1]).getBytes(StandardCharsets.ISO_8859_1);
+            if (objects.putIfAbsent(name, content) != null) {
+                respond(exchange, 412, error(412));
+                return;
+            }
+            uploads.incrementAndGet();
+            respond(exchange, 200, metadata(name, content));
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopEmulator() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void identicalContentIsUploadedOnceAndRememberedAcrossRestarts() throws IOException {
+        byte[] photo = bytes("the same photo");
+        Path knownHashes = dir.resolve("cache/uploaded.txt");
+
+        UploadFileService first = service(knownHashes);
+        first.loadKnownHashes();
+        List<CompletableFuture<String>> uris = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            uris.add(first.uploadAsync(i < 5 ? photo.clone() : bytes("another photo"), "image/jpeg"));
+        }
+        CompletableFuture.allOf(uris.toArray(CompletableFuture[]::new)).join();
+        first.close();
+
+        assertThat(uploads.get()).isEqualTo(2);
+        assertThat(objects).hasSize(2);
+        assertThat(uris.subList(0, 5)).allSatisfy(uri -> assertThat(uri.join()).isEqualTo(uris.get(0).join()));
+        assertThat(uris.get(0).join()).startsWith("gs://" + BUCKET + "/" + UploadFileService.OBJECT_PREFIX);
+        assertThat(objects.get(name(uris.get(0).join()))).isEqualTo(photo);
+        assertThat(uris.get(5).join()).isNotEqualTo(uris.get(0).join());
+
+        // After a restart, content known to be uploaded isn't even looked up.
+        int lookups = metadataRequests.get();
+        UploadFileService second = service(knownHashes);
+        second.loadKnownHashes();
+        assertThat(second.uploadAsync(photo, "image/jpeg").join()).isEqualTo(uris.get(0).join());
+        second.close();
+        assertThat(metadataRequests.get()).isEqualTo(lookups);
+        assertThat(uploads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void contentAlreadyInTheBucketIsFoundWithoutUploadingIt() {
+        byte[] scan = bytes("uploaded from another machine");
+        UploadFileService uploader = service(dir.resolve("uploaded.txt"));
+        String uri = uploader.uploadAsync(scan, "image/png").join();
+        uploads.set(0);
+
+        UploadFileService elsewhere = service(dir.resolve("elsewhere.txt"));
+        assertThat(elsewhere.uploadAsync(scan, "image/png").join()).isEqualTo(uri);
+        assertThat(uploads.get()).isZero();
+        assertThat(elsewhere.skipped()).isEqualTo(1);
+        uploader.close();
+        elsewhere.close();
+    }
+
+    @Test
+    void anUploadRefusedBecauseTheObjectExistsCountsAsUploaded() throws IOException {
+        byte[] scan = bytes("uploaded from another machine");
+        UploadFileService uploader = service(dir.resolve("uploaded.txt"));
+        String uri = uploader.uploadAsync(scan, "image/png").join();
+        uploads.set(0);
+
+        // The lookup says the object isn't there, so the upload is sent and answered 412.
+        lookupsMissEverything = true;
+        Path knownHashes = dir.resolve("elsewhere.txt");
+        UploadFileService elsewhere = service(knownHashes);
+        assertThat(elsewhere.uploadAsync(scan, "image/png").join()).isEqualTo(uri);
+        assertThat(uploads.get()).isZero();
+        assertThat(elsewhere.skipped()).isEqualTo(1);
+        assertThat(Files.readAllLines(knownHashes)).containsExactly(uri.substring(uri.lastIndexOf('/') + 1));
+        uploader.close();
+        elsewhere.close();
+    }
+
+    @Test
+    void aForgottenObjectIsLookedUpAndUploadedAgain() throws IOException {
+        byte[] photo = bytes("a photo the bucket lost");
+        Path knownHashes = dir.resolve("uploaded.txt");
+        UploadFileService uploader = service(knownHashes);
+        String uri = uploader.uploadAsync(photo, "image/jpeg").join();
+        objects.clear();
+
+        uploader.forget(uri);
+        assertThat(Files.readAllLines(knownHashes)).isEmpty();
+        int lookups = metadataRequests.get();
+        assertThat(uploader.uploadAsync(photo, "image/jpeg").join()).isEqualTo(uri);
+        uploader.close();
+
+        assertThat(metadataRequests.get()).isEqualTo(lookups + 1);
+        assertThat(uploads.get()).isEqualTo(2);
+        assertThat(objects.get(name(uri))).isEqualTo(photo);
+        assertThat(Files.readAllLines(knownHashes)).hasSize(1);
+    }
+
+    // --- Helper Methods ---
+
+    private UploadFileService service(Path knownHashes) {
+        return new UploadFileService(new StorageClient().googleCloudStorage("test-project", url()),
+                BUCKET, knownHashes.toString(), 3);
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static String name(String uri) {
+        return uri.substring(("gs://" + BUCKET + "/").length());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return What follows the headers of one part of a multipart body.
+     */
+    private static String body(String part) {
+        return part.substring(part.indexOf("\r\n\r\n") + 4);
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String metadata(String name, byte[] content) {
+        return "{\"bucket\": \"" + BUCKET + "\", \"name\": \"" + name + "\", \"size\": \"" + content.length
+                + "\", \"generation\": \"1\"}";
+    }
+
+    private static String error(int code) {
+        return "{\"error\": {\"code\": " + code + ", \"message\": \"stand-in " + code + "\"}}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.config.DataSourceConfig;
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives catalog writes through the PersistenceWriter and checks after each step that the aggregates
+ * CatalogStatsListener maintained incrementally (catalog_stats and dir_rollups) are exactly what a
+ * rebuild from the files table gives. The files only exist in the catalog, so the paths are made up.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DataSourceConfig.class, CatalogMigration.class, PersistenceWriter.class, DirectoryService.class,
+        CatalogStatsListener.class, CatalogStatsService.class, DirectoryRollupService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogAggregatesTests {
+
+    private static final long YEAR_2019 = 1_560_000_000L;
+    private static final long YEAR_2023 = 1_690_000_000L;
+
+    @DynamicPropertySource
+    static void sqliteFile(DynamicPropertyRegistry registry) throws IOException {
+        Path db = Files.createTempFile("aianalyzer-aggregates-", ".db");
+        db.toFile().deleteOnExit();
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + db);
+        registry.add("scan.roots", () -> "/volume-a,/volume-b");
+    }
+
+    @Autowired
+    private PersistenceWriter persistenceWriter;
+
+    @Autowired
+    private DirectoryService directoryService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private CatalogStatsService catalogStatsService;
+
+    @Autowired
+    private DirectoryRollupService directoryRollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void incrementalAggregatesMatchARebuild() {
+        long beach = insert("/volume-a/photos/beach.jpg", "image", "jpg", null, 2_000, YEAR_2019);
+        long sunset = insert("/volume-a/photos/2023/sunset.png", "image", "png", "Photo", 3_000, YEAR_2023);
+        long tax = insert("/volume-b/docs/tax.pdf", "doc", "pdf", "Invoice", 500, YEAR_2023);
+        long notes = insert("/volume-b/notes", "doc", "", null, 40, YEAR_2019);
+        long clip = insert("/volume-a/clip.mp4", "video", "mp4", null, 90_000, YEAR_2023);
+        assertMatchesRebuild();
+        assertThat(catalogStatsService.snapshot().total()).isEqualTo(new CatalogStatsService.Stat("all", 5, 95_540));
+        assertThat(directoryRollupService.find(Paths.get("/volume-a")).orElseThrow().getTotalBytes()).isEqualTo(95_000);
+        assertThat(directoryRollupService.find(Paths.get("/"))).as("above the scan roots").isEmpty();
+
+        // Kind, extension, label and year changes; two in one transaction to the same record.
+        update(beach, r -> {
+            r.setTypeLabel("Photo");
+            r.setMtimeUnix(YEAR_2023);
+        });
+        update(notes, r -> {
+            r.setKind("text");
+            r.setExt("txt");
+            r.setSizeBytes(45);
+        });
+        persistenceWriter.submit("two changes", () -> {
+            fileRecordRepository.findById(sunset).orElseThrow().setTypeLabel("Screenshot");
+            fileRecordRepository.flush();
+            fileRecordRepository.findById(sunset).orElseThrow().setTypeLabel(null);
+        }).join();
+        assertMatchesRebuild();
+
+        // A move to another top-level directory.
+        long archive = directoryService.resolve(Paths.get("/volume-b/archive"));
+        update(tax, r -> {
+            r.setDirId(archive);
+            r.setName("tax-2023.pdf");
+        });
+        assertMatchesRebuild();
+
+        // Missing files stop counting, and count again once found.
+        update(clip, r -> r.setKind("missing"));
+        assertMatchesRebuild();
+        update(clip, r -> r.setKind("video"));
+        update(beach, r -> r.setKind("missing"));
+        assertMatchesRebuild();
+
+        persistenceWriter.submit("delete", () -> fileRecordRepository.deleteById(tax)).join();
+        persistenceWriter.submit("delete", () -> fileRecordRepository.deleteById(beach)).join();
+        assertMatchesRebuild();
+        assertThat(catalogStatsService.snapshot().total()).isEqualTo(new CatalogStatsService.Stat("all", 3, 93_045));
+        assertThat(directoryRollupService.find(Paths.get("/volume-a/photos")).orElseThrow().getFileCount()).isEqualTo(1);
+        assertThat(directoryRollupService.find(Paths.get("/volume-b")).orElseThrow().getTotalBytes()).isEqualTo(45);
+    }
+
+    // --- Helper Methods ---
+
+    private long insert(String path, String kind, String ext, String label, long sizeBytes, long mtimeUnix) {
+        FileRecord fileRecord = new FileRecord();
+        directoryService.place(fileRecord, Paths.get(path));
+        fileRecord.setKind(kind);
+        fileRecord.setExt(ext);
+        fileRecord.setTypeLabel(label);
+        fileRecord.setSizeBytes(sizeBytes);
+        fileRecord.setMtimeUnix(mtimeUnix);
+        fileRecord.setLastScannedUnix(mtimeUnix);
+        return persistenceWriter.upsertFileRecord(fileRecord).join().getId();
+    }
+
+    private void update(long id, Consumer<FileRecord> change) {
+        persistenceWriter.submit("update " + id, () -> change.accept(fileRecordRepository.findById(id).orElseThrow())).join();
+    }
+
+    /**
+     * Rebuilding replaces the incremental numbers, so later steps start from the rebuilt ones.
+     * Buckets that dropped to nothing linger as zero rows; a rebuild doesn't write those.
+     */
+    private void assertMatchesRebuild() {
+        List<Map<String, Object>> incrementalStats = catalogStats();
+        List<Map<String, Object>> incrementalRollups = dirRollups();
+        catalogStatsService.rebuild().join();
+        directoryRollupService.rebuild().join();
+        assertThat(incrementalStats).isNotEmpty().isEqualTo(catalogStats());
+        assertThat(incrementalRollups).isNotEmpty().isEqualTo(dirRollups());
+    }
+
+    private List<Map<String, Object>> catalogStats() {
+        return jdbcTemplate.queryForList("select dimension, bucket, file_count, total_bytes from catalog_stats "
+                + "where file_count <> 0 or total_bytes <> 0 order by dimension, bucket");
+    }
+
+    // Newest mtimes are left out: deltas only ever raise them (see DirectoryRollup).
+    private List<Map<String, Object>> dirRollups() {
+        return jdbcTemplate.queryForList("select dir_id, total_bytes, file_count from dir_rollups "
+                + "where file_count <> 0 or total_bytes <> 0 order by dir_id");
+    }
+}
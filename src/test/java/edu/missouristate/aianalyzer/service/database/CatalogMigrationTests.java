@@ -0,0 +1,130 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.config.DataSourceConfig;
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the persistence layer on a catalog in the old layout, where files carried their full and
+ * parent paths and label_history and image_meta were keyed by path, and checks what the start-up
+ * migration leaves behind.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DataSourceConfig.class, CatalogMigration.class, CatalogMigration.LegacyTableDetacher.class,
+        CatalogMigration.DetachBeforeSchemaUpdate.class, DirectoryService.class, PersistenceWriter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogMigrationTests {
+
+    @DynamicPropertySource
+    static void oldCatalog(DynamicPropertyRegistry registry) throws IOException, SQLException {
+        Path db = Files.createTempFile("aianalyzer-v1-", ".db");
+        db.toFile().deleteOnExit();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db);
+             Statement sql = connection.createStatement()) {
+            // The tables as Hibernate created them for the path-keyed entities.
+            sql.execute("create table files (id integer, path varchar(255) not null unique, parent_path varchar(255), "
+                    + "size_bytes bigint not null, mtime_unix bigint not null, ctime_unix bigint, last_scanned_unix bigint not null, "
+                    + "content_hash varchar(255), kind varchar(255), type_label varchar(255), type_label_confidence float, "
+                    + "type_label_source varchar(255), type_label_updated_unix bigint, ext varchar(255), ai_safety varchar(255), "
+                    + "ai_response varchar(1024), primary key (id))");
+            sql.execute("create index ix_files_filekey on files (path)");
+            sql.execute("create table label_history (id integer, path varchar(255), label varchar(255), confidence float, "
+                    + "source varchar(255), created_unix bigint not null, primary key (id))");
+            sql.execute("create table image_meta (path varchar(255) not null, width integer, height integer, exif_taken_unix bigint, "
+                    + "camera_make varchar(255), camera_model varchar(255), primary key (path))");
+
+            sql.execute("insert into files (id, path, parent_path, size_bytes, mtime_unix, last_scanned_unix, kind, ext, type_label) values "
+                    + "(7, '/home/me/photos/2024/beach.jpg', '/home/me/photos/2024', 2000, 1700000000, 1700000100, 'image', 'jpg', 'Photo'), "
+                    + "(8, '/home/me/photos/2024/sunset.jpg', '/home/me/photos/2024', 3000, 1700000000, 1700000100, 'image', 'jpg', null), "
+                    + "(9, '/home/me/docs/tax.pdf', '/home/me/docs', 500, 1600000000, 1700000100, 'doc', 'pdf', 'Invoice'), "
+                    + "(10, '/top.txt', '/', 10, 1500000000, 1700000100, 'doc', 'txt', null), "
+                    + "(11, 'orphan.txt', '', 1, 1500000000, 1700000100, 'doc', 'txt', null)");
+            sql.execute("insert into label_history (id, path, label, confidence, source, created_unix) values "
+                    + "(1, '/home/me/photos/2024/beach.jpg', 'Photo', 0.9, 'ai', 1700000200), "
+                    + "(2, '/home/me/docs/tax.pdf', 'Invoice', 0.8, 'ai', 1700000300), "
+                    + "(3, '/gone/forever.txt', 'Note', 0.5, 'ai', 1700000400)");
+            sql.execute("insert into image_meta (path, width, height, camera_make) values "
+                    + "('/home/me/photos/2024/beach.jpg', 4000, 3000, 'Canon'), "
+                    + "('/home/me/photos/2024/sunset.jpg', 1920, 1080, null)");
+        }
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + db);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private DirectoryService directoryService;
+
+    @Test
+    void theOldLayoutIsMigratedOnStartUp() {
+        assertThat(CatalogMigration.tableExists(jdbcTemplate, "files_v1")).isFalse();
+        assertThat(CatalogMigration.tableExists(jdbcTemplate, "image_meta_v1")).isFalse();
+        assertThat(CatalogMigration.tableExists(jdbcTemplate, "dir_map")).isFalse();
+
+        // One row per directory, each below its parent; the root has no parent.
+        assertThat(jdbcTemplate.queryForList("select name from directories where parent_id is null", String.class)).containsExactly("/");
+        assertThat(jdbcTemplate.queryForList("select name from directories order by name", String.class))
+                .containsExactly("/", "2024", "docs", "home", "me", "photos");
+
+        // Every file with a parent keeps its id and row data under its directory and name.
+        Map<Long, FileRecord> files = fileRecordRepository.findAll().stream()
+                .collect(Collectors.toMap(FileRecord::getId, Function.identity()));
+        assertThat(files).containsOnlyKeys(7L, 8L, 9L, 10L);
+        assertThat(directoryService.pathOf(files.get(7L))).isEqualTo(Paths.get("/home/me/photos/2024/beach.jpg"));
+        assertThat(directoryService.pathOf(files.get(8L))).isEqualTo(Paths.get("/home/me/photos/2024/sunset.jpg"));
+        assertThat(directoryService.pathOf(files.get(9L))).isEqualTo(Paths.get("/home/me/docs/tax.pdf"));
+        assertThat(files.get(10L).getName()).isEqualTo("top.txt");
+        assertThat(directoryService.pathOf(files.get(10L))).isEqualTo(Paths.get("/top.txt"));
+        assertThat(files.get(7L).getDirId()).isEqualTo(files.get(8L).getDirId());
+        assertThat(files.get(7L).getTypeLabel()).isEqualTo("Photo");
+        assertThat(files.get(9L).getSizeBytes()).isEqualTo(500);
+
+        // History and image metadata now point at the file ids; history of a file no longer cataloged is kept unattached.
+        assertThat(jdbcTemplate.queryForMap("select file_id, label from label_history where id = 1"))
+                .containsEntry("file_id", 7).containsEntry("label", "Photo");
+        assertThat(jdbcTemplate.queryForObject("select file_id from label_history where id = 2", Long.class)).isEqualTo(9L);
+        assertThat(jdbcTemplate.queryForObject("select file_id from label_history where id = 3", Long.class)).isNull();
+        assertThat(jdbcTemplate.queryForList("select file_id, width, camera_make from image_meta order by file_id"))
+                .containsExactly(row(7, 4000, "Canon"), row(8, 1920, null));
+    }
+
+    // --- Helper Methods ---
+
+    private static Map<String, Object> row(int fileId, int width, String cameraMake) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("file_id", fileId);
+        row.put("width", width);
+        row.put("camera_make", cameraMake);
+        return row;
+    }
+}
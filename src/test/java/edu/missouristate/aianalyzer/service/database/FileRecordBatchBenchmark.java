@@ -0,0 +1,152 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.config.DataSourceConfig;
+import edu.missouristate.aianalyzer.model.database.FileRecord;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Times the DB work of one queue batch the old way (a lookup per item, then an INSERT per new row
+ * with its generated key read back, as IDENTITY ids do) against the batched way FileProcessingService
+ * uses now. Each batch is half updates of existing records and half new records.
+ * Not part of the build: the class name isn't picked up by Surefire, and it only runs with
+ * -Dbenchmark=true, e.g. {@code ./mvnw test -Dtest=FileRecordBatchBenchmark -Dbenchmark=true}.
+ * FileRecordBatchTests checks the statement counts behind the difference.
+ */
+@Slf4j
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DataSourceConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FileRecordBatchBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+    private static final int ROUNDS = 20;
+
+    @DynamicPropertySource
+    static void sqliteFile(DynamicPropertyRegistry registry) throws IOException {
+        Path db = Files.createTempFile("aianalyzer-bench-", ".db");
+        db.toFile().deleteOnExit();
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + db);
+    }
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long baselineIds;
+
+    @Test
+    void perItemAgainstBatched() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        long perItemNanos = 0;
+        long batchedNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long perItemDir = 2L * round + 1;
+            long batchedDir = 2L * round + 2;
+            List<String> perItemNames = seedBatch(perItemDir);
+            List<String> batchedNames = seedBatch(batchedDir);
+
+            // Before: one transaction, a lookup per item, and an INSERT per new row that reads its key back.
+            long start = System.nanoTime();
+            tx.executeWithoutResult(status -> {
+                for (String name : perItemNames) {
+                    fileRecordRepository.findByDirIdAndName(perItemDir, name).ifPresentOrElse(fileRecord -> {
+                        fileRecord.setLastScannedUnix(System.currentTimeMillis());
+                        fileRecordRepository.save(fileRecord);
+                    }, () -> insertWithGeneratedKey(perItemDir, name));
+                }
+            });
+            perItemNanos += System.nanoTime() - start;
+
+            // After: one lookup for the batch, then one transaction that preloads and saves in JDBC batches.
+            start = System.nanoTime();
+            Map<String, FileRecord> known = fileRecordRepository.findAllByDirIdAndNameIn(batchedDir, batchedNames).stream()
+                    .collect(Collectors.toMap(FileRecord::getName, Function.identity()));
+            List<FileRecord> records = new ArrayList<>();
+            for (String name : batchedNames) {
+                FileRecord fileRecord = known.getOrDefault(name, newRecord(batchedDir, name));
+                fileRecord.setLastScannedUnix(System.currentTimeMillis());
+                records.add(fileRecord);
+            }
+            tx.executeWithoutResult(status -> {
+                fileRecordRepository.findAllById(records.stream().map(FileRecord::getId).filter(Objects::nonNull).toList());
+                fileRecordRepository.saveAll(records);
+            });
+            batchedNanos += System.nanoTime() - start;
+        }
+
+        log.info("DB time per batch of {} items: per-item {} ms, batched {} ms", BATCH_SIZE,
+                String.format("%.1f", perItemNanos / 1_000_000.0 / ROUNDS), String.format("%.1f", batchedNanos / 1_000_000.0 / ROUNDS));
+    }
+
+    /**
+     * Inserts the first half of a batch so it has existing records to update; returns all its file names.
+     */
+    private List<String> seedBatch(long dirId) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            names.add("file-" + i + ".txt");
+        }
+        fileRecordRepository.saveAll(names.subList(0, BATCH_SIZE / 2).stream().map(name -> newRecord(dirId, name)).toList());
+        return names;
+    }
+
+    /**
+     * What Hibernate does for an IDENTITY id: run the INSERT right away and read the generated key.
+     * The ids count down from -1 so they never meet the ones WriterIdGenerator hands out.
+     */
+    private void insertWithGeneratedKey(long dirId, String name) {
+        jdbcTemplate.update(connection -> {
+            PreparedStatement insert = connection.prepareStatement(
+                    "insert into files (id, dir_id, name, kind, size_bytes, mtime_unix, last_scanned_unix) values (?, ?, ?, 'doc', 0, 0, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            insert.setLong(1, --baselineIds);
+            insert.setLong(2, dirId);
+            insert.setString(3, name);
+            insert.setLong(4, System.currentTimeMillis());
+            return insert;
+        }, new GeneratedKeyHolder());
+    }
+
+    private FileRecord newRecord(long dirId, String name) {
+        FileRecord fileRecord = new FileRecord();
+        fileRecord.setDirId(dirId);
+        fileRecord.setName(name);
+        fileRecord.setKind("doc");
+        return fileRecord;
+    }
+}
@@ -0,0 +1,124 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.config.DataSourceConfig;
+import edu.missouristate.aianalyzer.model.database.ScanQueueItem;
+import edu.missouristate.aianalyzer.repository.database.ContentSearchRepository;
+import edu.missouristate.aianalyzer.repository.database.FileRecordRepository;
+import edu.missouristate.aianalyzer.repository.database.ScanQueueItemRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the statements FileProcessingService.processQueue costs for a batch of half updates and half
+ * new files: one lookup per directory, one preload of the existing rows, then one JDBC batch per kind
+ * of write, all in the same transaction. Timings are in FileRecordBatchBenchmark.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DataSourceConfig.class, CatalogMigration.class, PersistenceWriter.class, FileProcessingService.class,
+        DirectoryService.class, MoveDetectionService.class, ContentSearchRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FileRecordBatchTests {
+
+    private static final int BATCH_SIZE = 50;
+
+    @DynamicPropertySource
+    static void sqliteFile(DynamicPropertyRegistry registry) throws IOException {
+        Path db = Files.createTempFile("aianalyzer-batch-", ".db");
+        db.toFile().deleteOnExit();
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + db);
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector", StatementCounter.class::getName);
+        // A short linger would split the batch if it were still sent as several commands.
+        registry.add("persistence.writer.linger-ms", () -> "0");
+    }
+
+    /**
+     * Sees every statement Hibernate prepares; a JDBC batch is prepared once, however many rows it holds.
+     */
+    public static class StatementCounter implements StatementInspector {
+
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+            return sql;
+        }
+
+        static long count(String regex) {
+            return statements.stream().filter(sql -> sql.matches(regex)).count();
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    private FileProcessingService fileProcessingService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private ScanQueueItemRepository scanQueueItemRepository;
+
+    @Test
+    void aQueueBatchOfUpdatesAndInsertsCostsOneWriteStatementOfEachKind() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            files.add(Files.writeString(dir.resolve("file-" + i + ".txt"), "content of file " + i));
+        }
+        queue(files.subList(0, BATCH_SIZE / 2));
+        fileProcessingService.processQueue();
+        assertThat(fileRecordRepository.count()).isEqualTo(BATCH_SIZE / 2);
+
+        // The cataloged half changed on disk, the other half is new.
+        for (Path file : files.subList(0, BATCH_SIZE / 2)) {
+            Files.writeString(file, "edited " + file.getFileName());
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+        }
+        queue(files);
+        StatementCounter.statements.clear();
+        fileProcessingService.processQueue();
+
+        assertThat(StatementCounter.count("select .* from files \\w+ where \\w+\\.dir_id=\\? and \\w+\\.name in .*"))
+                .as("lookup").isEqualTo(1);
+        assertThat(StatementCounter.count("select .* from files \\w+ where \\w+\\.id in .*")).as("preload").isEqualTo(1);
+        assertThat(StatementCounter.count("select .* from files \\w+ where \\w+\\.id=\\?")).as("merge lookups").isZero();
+        assertThat(StatementCounter.count("insert into files .*")).isEqualTo(1);
+        assertThat(StatementCounter.count("update files .*")).isEqualTo(1);
+        assertThat(fileRecordRepository.count()).isEqualTo(BATCH_SIZE);
+        assertThat(scanQueueItemRepository.count()).isZero();
+    }
+
+    // --- Helper Methods ---
+
+    private void queue(List<Path> files) {
+        scanQueueItemRepository.saveAll(files.stream().map(file -> {
+            ScanQueueItem item = new ScanQueueItem();
+            item.setPath(file.toString());
+            item.setKind("file");
+            return item;
+        }).toList());
+    }
+}
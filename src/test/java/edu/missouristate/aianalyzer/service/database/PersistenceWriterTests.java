@@ -0,0 +1,78 @@
+package edu.missouristate.aianalyzer.service.database;
+
+import edu.missouristate.aianalyzer.config.DataSourceConfig;
+import edu.missouristate.aianalyzer.model.database.ErrorLog;
+import edu.missouristate.aianalyzer.repository.database.ErrorLogRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A failing write inside a batch fails only its own caller, and the inserts rolled back with it
+ * are inserted again rather than merged as rows that were never committed.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DataSourceConfig.class, CatalogMigration.class, PersistenceWriter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PersistenceWriterTests {
+
+    @DynamicPropertySource
+    static void sqliteFile(DynamicPropertyRegistry registry) throws IOException {
+        Path db = Files.createTempFile("aianalyzer-writer-", ".db");
+        db.toFile().deleteOnExit();
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + db);
+        registry.add("persistence.writer.linger-ms", () -> "500"); // everything below lands in one batch
+    }
+
+    @Autowired
+    private PersistenceWriter persistenceWriter;
+
+    @Autowired
+    private ErrorLogRepository errorLogRepository;
+
+    @Test
+    void aFailingWriteIsIsolatedByHalvingItsBatch() {
+        AtomicInteger badAttempts = new AtomicInteger();
+        CompletableFuture<ErrorLog> first = persistenceWriter.logError(error("first"));
+        CompletableFuture<ErrorLog> second = persistenceWriter.logError(error("second"));
+        CompletableFuture<ErrorLog> third = persistenceWriter.logError(error("third"));
+        CompletableFuture<Void> bad = persistenceWriter.submit("bad", () -> {
+            badAttempts.incrementAndGet();
+            throw new IllegalStateException("bad write");
+        });
+
+        assertThatThrownBy(bad::join).isInstanceOf(CompletionException.class).hasRootCauseMessage("bad write");
+        List<ErrorLog> stored = List.of(first.join(), second.join(), third.join());
+
+        // [1 2 3 bad] -> [1 2] + [3 bad] -> [3] + [bad]
+        assertThat(badAttempts).hasValue(3);
+        assertThat(errorLogRepository.findAll()).extracting(ErrorLog::getComponent)
+                .containsExactlyInAnyOrder("first", "second", "third");
+        assertThat(stored).extracting(ErrorLog::getId).doesNotContainNull().doesNotHaveDuplicates();
+    }
+
+    private static ErrorLog error(String component) {
+        ErrorLog error = new ErrorLog();
+        error.setComponent(component);
+        error.setMessage("test");
+        return error;
+    }
+}